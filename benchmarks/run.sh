@@ -0,0 +1,20 @@
+#!/bin/sh
+# Build the app and the JMH benchmarks, run them with the GC profiler (allocation rate)
+# and write the results as JSON. Extra arguments go to JMH, e.g.
+#   ./run.sh CsvPretty                         only the CsvPretty benchmarks
+#   ./run.sh CsvParse -p rows=10000,1000000    skip the 10M-row files
+#   ./run.sh CsvParallelParse -p threads=1,2,4,8   thread scaling (only meaningful with that many cores;
+#                                              the baseline keeps threads = 1 only)
+#   ./run.sh DeckAnalytics -p parallelism=1,2,4    same for the analytics scan (baseline: parallelism = 1)
+# Compare a run with the committed baseline before changing a hot path; refresh the baseline
+# (copy the result over baselines/baseline.json) when a change is meant to move the numbers.
+# Every benchmark runs 3 forks; only a difference larger than scoreError counts. Do not shorten
+# runs (-f 1, fewer iterations) that are compared with the baseline.
+set -e
+cd "$(dirname "$0")"
+mvn -B -q -f ../pom.xml install -DskipTests
+mvn -B -q package
+mkdir -p results
+out="results/$(date +%Y%m%d-%H%M%S).json"
+java -jar target/benchmarks.jar -prof gc -rf json -rff "$out" "$@"
+echo "Results: benchmarks/$out"
@@ -0,0 +1,65 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import util.CardIndex;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cards tab's search box: queries against the in-memory index of a deck of one million cards
+ * (words drawn with a skewed frequency, so there are common and rare terms as in real text).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 3, jvmArgs = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CardIndexBenchmark {
+    private static final int CARDS = 1_000_000;
+    private static final int VOCABULARY = 50_000;
+
+    /** exact: one rare word; prefix: two letters; twoTerms: common AND rare word; fuzzy: rare word with a typo */
+    @Param({"exact", "prefix", "twoTerms", "fuzzy"})
+    public String query;
+
+    private CardIndex index;
+    private String q;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(11);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            StringBuilder sb = new StringBuilder();
+            int len = 4 + rnd.nextInt(7);
+            for (int k = 0; k < len; k++) sb.append((char) ('a' + rnd.nextInt(26)));
+            words[i] = sb.toString();
+        }
+        CardIndex.Builder b = new CardIndex.Builder(Runtime.getRuntime().availableProcessors());
+        for (int id = 1; id <= CARDS; id++) b.addCard(id, text(rnd, words, 6), text(rnd, words, 12));
+        index = b.finish();
+        String rare = words[VOCABULARY / 2];
+        switch (query) {
+            case "exact": q = rare; break;
+            case "prefix": q = words[1].substring(0, 2); break;
+            case "twoTerms": q = words[0] + " " + words[3000]; break;
+            default: q = rare.substring(0, 2) + "x" + rare.substring(3); break;
+        }
+    }
+
+    private static String text(SplittableRandom rnd, String[] words, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            int w = (int) Math.min(words.length - 1, Math.abs(rnd.nextGaussian()) * words.length / 6);
+            sb.append(words[w]).append(' ');
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public CardIndex.Hits search() {
+        return index.search(q, 200);
+    }
+}
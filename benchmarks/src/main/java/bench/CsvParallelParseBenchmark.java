@@ -0,0 +1,54 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.CsvExporter;
+import util.CsvImporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CsvImporter.parseFileParallel (MappedCsvReader) on the same generated files as CsvParseBenchmark.
+ * By default one worker thread: compare it with CsvParseBenchmark for the single-core cost of the mapped
+ * reader (that is what the baseline records). For scaling, run with -p threads=1,2,4,8 on a host with
+ * that many physical cores; on fewer, the extra threads only time-slice and the numbers mean nothing.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(3)
+@State(Scope.Benchmark)
+public class CsvParallelParseBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({CsvExporter.F_STAT})
+    public String file;
+
+    @Param({"1"})
+    public int threads;
+
+    private File csv;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        CsvParseBenchmark.checkParses(file);
+        csv = CsvParseBenchmark.generated(file, rows);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long parse(Blackhole bh) throws IOException {
+        return CsvImporter.parseFileParallel(csv, pool, bh::consume);
+    }
+}
@@ -0,0 +1,111 @@
+package bench;
+
+import org.apache.commons.csv.CSVPrinter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.CsvExporter;
+import util.CsvImporter;
+import util.CsvPretty;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end parsing of the three export files, as the import does it (CsvImporter.parseFile, no database).
+ * Files are generated once per size in ${java.io.tmpdir}/srsfx-bench/&lt;rows&gt; and reused by later runs;
+ * the 10M set needs about 1.5 GB of disk.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(3)
+@State(Scope.Benchmark)
+public class CsvParseBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({CsvExporter.F_CARDS, CsvExporter.F_PLAN, CsvExporter.F_STAT})
+    public String file;
+
+    private File csv;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        checkParses(file);
+        csv = generated(file, rows);
+    }
+
+    @Benchmark
+    public long parse(Blackhole bh) throws IOException {
+        return CsvImporter.parseFile(csv, bh::consume);
+    }
+
+    /**
+     * Fail the trial unless a small generated file of this kind parses completely: rows the parser rejects are
+     * skipped silently, so a mismatch with the import's format would otherwise be timed as a very fast parse.
+     */
+    static void checkParses(String name) throws IOException {
+        int sample = 1000;
+        long parsed = CsvImporter.parseFile(generated(name, sample), row -> { });
+        if (parsed != sample) {
+            throw new IllegalStateException(name + ": only " + parsed + " of " + sample + " generated rows parse");
+        }
+    }
+
+    /** The generated file, created on first use */
+    static File generated(String name, int rows) throws IOException {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "srsfx-bench/" + rows);
+        File csv = new File(dir, name);
+        if (!csv.isFile()) {
+            dir.mkdirs();
+            File tmp = new File(dir, name + ".tmp");
+            write(tmp, name, rows);
+            if (!tmp.renameTo(csv)) throw new IOException("Cannot create " + csv);
+        }
+        return csv;
+    }
+
+    /** Rows in the exporter's formats (CsvExporter.cardRow / planRow / statRow) */
+    static void write(File out, String name, int rows) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(rows);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+        int cards = Math.max(1, rows / 10);
+        switch (name) {
+            case CsvExporter.F_CARDS:
+                try (CSVPrinter p = CsvPretty.openWriter(out, 1 << 20, CsvExporter.CARD_HEADERS)) {
+                    for (int id = 1; id <= rows; id++) {
+                        p.printRecord(id, "Question " + id + ", what is " + rnd.nextInt(1000) + "?",
+                                "Answer " + id + "\\nsecond line", CsvPretty.fmtTs(base.toLocalDate().plusDays(id % 500)));
+                    }
+                }
+                break;
+            case CsvExporter.F_PLAN:
+                try (CSVPrinter p = CsvPretty.openWriter(out, 1 << 20, CsvExporter.PLAN_HEADERS)) {
+                    for (int id = 1; id <= rows; id++) {
+                        boolean reviewed = rnd.nextInt(4) != 0;
+                        p.printRecord(id, id, CsvPretty.fmtTs(base.toLocalDate().plusDays(rnd.nextInt(400))),
+                                reviewed ? CsvPretty.fmtTs(base.toLocalDate().plusDays(rnd.nextInt(300))) : "",
+                                reviewed ? rnd.nextInt(6) : "", 1 + rnd.nextInt(120), rnd.nextInt(8),
+                                String.format(Locale.ROOT, "%.2f", 1.3 + rnd.nextDouble() * 1.7));
+                    }
+                }
+                break;
+            case CsvExporter.F_STAT:
+                try (CSVPrinter p = CsvPretty.openWriter(out, 1 << 20, CsvExporter.STAT_HEADERS)) {
+                    for (int id = 1; id <= rows; id++) {
+                        p.printRecord(id, 1 + rnd.nextInt(cards), CsvPretty.fmtTs(base.plusSeconds(id * 37L)),
+                                500 + rnd.nextInt(30_000), rnd.nextBoolean(), rnd.nextInt(6),
+                                rnd.nextInt(20) == 0 ? "note " + id : "");
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import util.CsvPretty;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/** Per-field CSV conversions; parseLdt is measured for each accepted input form */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class CsvPrettyBenchmark {
+    private final String[] bools = {"true", "false", "1", "0", "yes", "No", " TRUE ", "x"};
+    private final LocalDateTime ldt = LocalDateTime.of(2025, 3, 14, 9, 26, 53);
+    private final LocalDate ld = LocalDate.of(2025, 3, 14);
+    private int i;
+
+    @State(Scope.Thread)
+    public static class Input {
+        /** export format, ISO date-time, plain date, empty */
+        @Param({"2025-03-14 09:26:53", "2025-03-14T09:26:53", "2025-03-14", ""})
+        public String timestamp;
+    }
+
+    @Benchmark
+    public LocalDateTime parseLdt(Input in) {
+        return CsvPretty.parseLdt(in.timestamp);
+    }
+
+    @Benchmark
+    public String fmtTsDateTime() {
+        return CsvPretty.fmtTs(ldt);
+    }
+
+    @Benchmark
+    public String fmtTsDate() {
+        return CsvPretty.fmtTs(ld);
+    }
+
+    @Benchmark
+    public Boolean toBool() {
+        return CsvPretty.toBool(bools[i++ & 7]);
+    }
+}
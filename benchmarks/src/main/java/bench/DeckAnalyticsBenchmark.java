@@ -0,0 +1,70 @@
+package bench;
+
+import model.DeckAnalytics;
+import model.PlanStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CPU side of the analytics dashboard's daily scan: DeckAnalytics over an in-memory review log
+ * (ordered by card, then time, as the DB delivers it), without the JDBC cost.
+ * By default one range scan at a time, which is what the baseline records. For scaling, run with
+ * -p parallelism=1,2,4 on a host with that many physical cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(3)
+@State(Scope.Benchmark)
+public class DeckAnalyticsBenchmark {
+    private static final long TODAY = 20_000;
+    private static final int CARDS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private int[] card, day, ms, rating;
+    private int[] cardStart;   // reviews of card c: cardStart[c] .. cardStart[c + 1] - 1
+    private PlanStore plans;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(11);
+        card = new int[rows];
+        day = new int[rows];
+        ms = new int[rows];
+        rating = new int[rows];
+        long[] keys = new long[rows];
+        for (int i = 0; i < rows; i++) keys[i] = ((long) rnd.nextInt(CARDS) << 32) | (TODAY - rnd.nextInt(3 * 365));
+        Arrays.sort(keys);
+        cardStart = new int[CARDS + 1];
+        for (int i = 0; i < rows; i++) {
+            card[i] = (int) (keys[i] >>> 32);
+            day[i] = (int) keys[i];
+            ms[i] = rnd.nextInt(60_000);
+            rating[i] = rnd.nextInt(6);
+            cardStart[card[i] + 1]++;
+        }
+        for (int c = 0; c < CARDS; c++) cardStart[c + 1] += cardStart[c];
+        plans = new PlanStore(CARDS);
+        for (int c = 0; c < CARDS; c++) plans.add(c, c, (int) TODAY, PlanStore.NONE, 0, 1, 0, 1.3 + rnd.nextInt(20) * 0.1);
+    }
+
+    @Benchmark
+    public DeckAnalytics.Snapshot scan() {
+        return DeckAnalytics.compute(plans, TODAY, parallelism, (from, to, acc) -> {
+            int lo = Math.max(0, from), hi = Math.min(CARDS, to);
+            for (int i = cardStart[Math.min(lo, CARDS)]; i < cardStart[Math.max(lo, hi)]; i++) {
+                acc.addReview(card[i], day[i], ms[i], rating[i]);
+            }
+            return true;
+        }).snapshot();
+    }
+}
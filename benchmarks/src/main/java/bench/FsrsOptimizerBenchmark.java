@@ -0,0 +1,50 @@
+package bench;
+
+import model.FsrsOptimizer;
+import model.FsrsScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FSRS weight fitting (app.FsrsFit) on a synthetic history drawn from known weights, 12 reviews per card:
+ * one loss-and-gradient pass, and a whole fit from the default weights (the same 300-iteration cap as FsrsFit).
+ * Passes run on the common fork/join pool, so on a multi-core host they scale with its parallelism.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class FsrsOptimizerBenchmark {
+    private static final int MAX_ITERATIONS = 300;
+
+    @Param({"100000", "1000000"})
+    public int reviews;
+
+    private FsrsOptimizer.History history;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        double[] truth = FsrsScheduler.DEFAULT_WEIGHTS.clone();
+        truth[2] = 6.0;   // same offsets as FsrsFit --bench, so the fit has something to find
+        truth[8] = 1.2;
+        truth[11] = 1.5;
+        history = FsrsOptimizer.History.synthetic(reviews, 12, truth, 42);
+    }
+
+    @Benchmark
+    public double[] gradientPass() {
+        return FsrsOptimizer.lossAndGradient(history, FsrsScheduler.DEFAULT_WEIGHTS);
+    }
+
+    /** Deterministic: the same history and start always take the same number of iterations */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public FsrsOptimizer.Result fit() {
+        return FsrsOptimizer.fit(history, FsrsScheduler.DEFAULT_WEIGHTS, MAX_ITERATIONS);
+    }
+}
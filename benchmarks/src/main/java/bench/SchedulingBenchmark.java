@@ -0,0 +1,78 @@
+package bench;
+
+import model.FsrsScheduler;
+import model.PlanStore;
+import model.ReviewPlan;
+import model.SM2;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** One rating -> next interval, over a fixed mix of plan states (reset before every call, so nothing drifts) */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class SchedulingBenchmark {
+    private static final int N = 1024;
+
+    private final int[] rating = new int[N];
+    private final int[] repeats = new int[N];
+    private final int[] interval = new int[N];
+    private final double[] ease = new double[N];
+    private final LocalDate[] reviewedOn = new LocalDate[N];
+    private final ReviewPlan plan = new ReviewPlan();
+    private final FsrsScheduler fsrs = new FsrsScheduler(FsrsScheduler.DEFAULT_WEIGHTS, 0.9);
+    private PlanStore store;
+    private int today;
+    private int i;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(7);
+        LocalDate today = LocalDate.now();
+        for (int k = 0; k < N; k++) {
+            rating[k] = rnd.nextInt(6);
+            repeats[k] = rnd.nextInt(8);
+            interval[k] = 1 + rnd.nextInt(200);
+            ease[k] = 1.3 + rnd.nextDouble() * 1.7;
+            reviewedOn[k] = rnd.nextInt(10) == 0 ? null : today.minusDays(interval[k]);
+        }
+        this.today = PlanStore.epochDay(today);
+        store = new PlanStore(N);
+        for (int k = 0; k < N; k++) store.add(k + 1, k + 1, this.today, PlanStore.NONE, PlanStore.NONE, 0, 0, 0);
+    }
+
+    private ReviewPlan next() {
+        int k = i++ & (N - 1);
+        plan.setRating(rating[k]);
+        plan.setRepeats(repeats[k]);
+        plan.setIntervalDays(interval[k]);
+        plan.setEaseFactor(ease[k]);
+        plan.setReviewedOn(reviewedOn[k]);
+        return plan;
+    }
+
+    @Benchmark
+    public ReviewPlan sm2CalculateNext() {
+        return SM2.calculateNext(next());
+    }
+
+    /** Same mix through the primitive batch kernel, reported per plan */
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public PlanStore sm2Batch() {
+        for (int k = 0; k < N; k++) store.setState(k, interval[k], repeats[k], ease[k]);
+        SM2.calculateNext(store, 0, N, rating, today);
+        return store;
+    }
+
+    @Benchmark
+    public ReviewPlan fsrsNext() {
+        return fsrs.next(next());
+    }
+}
@@ -0,0 +1,69 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import util.CsvExporter;
+import util.CsvImporter;
+import util.SnapshotReader;
+import util.SnapshotWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a binary snapshot of review_statistic (SnapshotReader, as the restore does it) against
+ * CsvParseBenchmark's parse of the same rows from review_statistic.csv. The snapshot is built once
+ * from the generated CSV file and kept next to it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(3)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private File snapshot;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        File csv = CsvParseBenchmark.generated(CsvExporter.F_STAT, rows);
+        snapshot = new File(csv.getParentFile(), "review_statistic.srsnap");
+        if (snapshot.isFile()) return;
+        File tmp = new File(csv.getParentFile(), "review_statistic.srsnap.tmp");
+        try (SnapshotWriter w = SnapshotWriter.open(tmp)) {
+            w.beginTable("card");
+            w.beginTable("review_plan");
+            w.beginTable("review_statistic");
+            CsvImporter.parseFileParallel(csv, ForkJoinPool.commonPool(), row -> {
+                try {
+                    w.addRow(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        if (!tmp.renameTo(snapshot)) throw new IOException("Cannot create " + snapshot);
+    }
+
+    @Benchmark
+    public long read(Blackhole bh) throws IOException {
+        long n = 0;
+        try (SnapshotReader in = SnapshotReader.open(snapshot)) {
+            while (in.nextTable() != null) {
+                List<Object[]> block;
+                while ((block = in.nextBlock()) != null) {
+                    for (Object[] row : block) bh.consume(row);
+                    n += block.size();
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import util.StatsUtil;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class StatsUtilBenchmark {
+    private final int[] durations = new int[256];
+    private int i;
+
+    @State(Scope.Thread)
+    public static class Series {
+        /** Series length: one card's history (100) up to a long trend line */
+        @Param({"100", "10000"})
+        public int size;
+
+        @Param({"2", "7"})
+        public int window;
+
+        double[] values;
+
+        @Setup
+        public void setup() {
+            SplittableRandom rnd = new SplittableRandom(11);
+            values = new double[size];
+            for (int k = 0; k < size; k++) values[k] = rnd.nextDouble() * 5;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(11);
+        for (int k = 0; k < durations.length; k++) durations[k] = rnd.nextInt(3_600_000);
+    }
+
+    @Benchmark
+    public double[] movingAverage(Series s) {
+        return StatsUtil.movingAverage(s.values, s.window);
+    }
+
+    @Benchmark
+    public String prettyDuration() {
+        return StatsUtil.prettyDuration(durations[i++ & 255]);
+    }
+}
@@ -0,0 +1,46 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import util.TrendSeries;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stats view's trend lines: downsampling a whole history to the chart's point budget
+ * (with the moving average) and extending it by one rating.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class TrendSeriesBenchmark {
+    /** Reviews of one card: a typical history up to a pathological one */
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private double[] history;
+    private TrendSeries series;
+    private int i;
+
+    @Setup
+    public void setup() {
+        SplittableRandom rnd = new SplittableRandom(11);
+        history = new double[size];
+        for (int k = 0; k < size; k++) history[k] = rnd.nextInt(6);
+        series = TrendSeries.of(history, 2, 300);
+    }
+
+    @Benchmark
+    public TrendSeries downsample() {
+        return TrendSeries.of(history, 2, 300);
+    }
+
+    /** One new rating on an open chart; the series keeps growing over the run */
+    @Benchmark
+    public int append() {
+        return series.add(history[i++ % size]);
+    }
+}
@@ -1,9 +1,13 @@
+-- Current schema for reference. Databases are created and upgraded by the migrations in
+-- src/main/resources/db/migration (util.SchemaMigrator runs them at startup).
+
 CREATE TABLE `card` (
   `id` int unsigned NOT NULL AUTO_INCREMENT,
   `question` text NOT NULL,
   `answer` mediumtext NOT NULL,
   `created_at` date NOT NULL,
-  PRIMARY KEY (`id`)
+  PRIMARY KEY (`id`),
+  KEY `idx_card_created` (`created_at`)
 ) ENGINE=InnoDB AUTO_INCREMENT=22 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 
 CREATE TABLE `review_plan` (
@@ -16,7 +20,7 @@ CREATE TABLE `review_plan` (
   `repeats` int NOT NULL DEFAULT '0',
   `ease_factor` double NOT NULL DEFAULT '2.5',
   PRIMARY KEY (`id`),
-  KEY `idx_planned_on` (`planned_on`),
+  KEY `idx_plan_due` (`planned_on`,`id`,`card_id`,`reviewed_on`,`rating`,`interval_days`,`repeats`,`ease_factor`),
   KEY `fk_plan_card` (`card_id`),
   CONSTRAINT `fk_plan_card` FOREIGN KEY (`card_id`) REFERENCES `card` (`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=22 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
@@ -30,6 +34,37 @@ CREATE TABLE `review_statistic` (
   `rating` tinyint NOT NULL,
   `notes` text,
   PRIMARY KEY (`id`),
-  KEY `idx_stat_card` (`card_id`),
+  KEY `idx_stat_card_time` (`card_id`,`reviewed_at`,`rating`,`duration_ms`,`correct`),
   CONSTRAINT `fk_stat_card` FOREIGN KEY (`card_id`) REFERENCES `card` (`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB AUTO_INCREMENT=21 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- running per-card totals, maintained together with every review_statistic insert;
+-- recompute with ReviewStatisticDAO.rebuildCardStats() after bulk imports
+CREATE TABLE `card_stats` (
+  `card_id` int unsigned NOT NULL,
+  `review_count` int NOT NULL DEFAULT '0',
+  `sum_duration_ms` bigint NOT NULL DEFAULT '0',
+  `sum_rating` bigint NOT NULL DEFAULT '0',
+  `correct_count` int NOT NULL DEFAULT '0',
+  `first_reviewed_at` datetime DEFAULT NULL,
+  `last_reviewed_at` datetime DEFAULT NULL,
+  PRIMARY KEY (`card_id`),
+  CONSTRAINT `fk_cstats_card` FOREIGN KEY (`card_id`) REFERENCES `card` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- highest write-behind journal entry applied per journal (dao.ReviewWriteBehind), updated with the rows
+CREATE TABLE `review_journal_applied` (
+  `journal_id` char(36) NOT NULL,
+  `seq` bigint NOT NULL,
+  PRIMARY KEY (`journal_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=ascii;
+
+-- applied migrations (util.SchemaMigrator)
+CREATE TABLE `schema_version` (
+  `version` int NOT NULL,
+  `script` varchar(200) NOT NULL,
+  `checksum` bigint NOT NULL,
+  `installed_on` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `execution_ms` bigint NOT NULL,
+  PRIMARY KEY (`version`)
+) ENGINE=InnoDB;
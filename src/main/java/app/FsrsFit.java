@@ -0,0 +1,82 @@
+package app;
+
+import dao.Repositories;
+import model.FsrsOptimizer;
+import model.FsrsScheduler;
+import model.Schedulers;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line FSRS fitting.
+ * <pre>
+ *   app.FsrsFit [retention]     fit to the configured storage's review history, save ~/.srsfx/fsrs.properties
+ *   app.FsrsFit --bench [n]     fit to n synthetic reviews (default 1,000,000) and report the timings
+ * </pre>
+ * Use the fitted weights with -Dsrsfx.scheduler=fsrs.
+ */
+public final class FsrsFit {
+    private static final int MAX_ITERATIONS = 300;
+
+    private FsrsFit() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--bench")) {
+            bench(args.length > 1 ? Integer.parseInt(args[1].replace("_", "")) : 1_000_000);
+            return;
+        }
+        double retention = args.length > 0 ? Double.parseDouble(args[0]) : Schedulers.loadFsrs().getRetention();
+
+        long start = System.currentTimeMillis();
+        FsrsOptimizer.History h = new FsrsOptimizer.History();
+        if (Repositories.stats().forEachReview(h::addReview) < 0) {
+            System.err.println("Could not read the review history");
+            System.exit(1);
+        }
+        System.out.printf("Loaded %,d reviews of %,d cards in %d ms%n", h.reviews(), h.cards(), System.currentTimeMillis() - start);
+
+        FsrsOptimizer.Result r = FsrsOptimizer.fit(h, Schedulers.loadFsrs().getWeights(), MAX_ITERATIONS);
+        report(r);
+        if (r.getReviews() == 0) {
+            System.err.println("Not enough history to fit (cards need at least two reviews on different days)");
+            System.exit(1);
+        }
+        Schedulers.saveFsrs(r.getWeights(), retention, String.format(Locale.ROOT,
+                "FSRS weights fitted on %d reviews, log loss %.4f", r.getReviews(), r.getLoss()));
+        System.out.println("Saved " + Schedulers.fsrsFile());
+        Repositories.shutdown();
+    }
+
+    private static void bench(int reviews) {
+        double[] truth = FsrsScheduler.DEFAULT_WEIGHTS.clone();
+        truth[2] = 6.0;   // move a few weights away from the starting point
+        truth[8] = 1.2;
+        truth[11] = 1.5;
+
+        long start = System.currentTimeMillis();
+        FsrsOptimizer.History h = FsrsOptimizer.History.synthetic(reviews, 12, truth, 42);
+        System.out.printf("Generated %,d reviews of %,d cards in %d ms (%d worker threads)%n",
+                h.reviews(), h.cards(), System.currentTimeMillis() - start, ForkJoinPool.getCommonPoolParallelism());
+
+        double[] w = FsrsScheduler.DEFAULT_WEIGHTS;
+        FsrsOptimizer.lossAndGradient(h, w); // warm up the JIT
+        long t0 = System.nanoTime();
+        int passes = 5;
+        for (int i = 0; i < passes; i++) FsrsOptimizer.lossAndGradient(h, w);
+        double perPass = (System.nanoTime() - t0) / 1e6 / passes;
+        System.out.printf(Locale.ROOT, "Gradient pass: %.1f ms (%.1f M reviews/s)%n", perPass, h.reviews() / perPass / 1000);
+
+        FsrsOptimizer.Result r = FsrsOptimizer.fit(h, w, MAX_ITERATIONS);
+        report(r);
+        System.out.printf(Locale.ROOT, "Loss with the true weights: %.5f%n", FsrsOptimizer.lossAndGradient(h, truth)[0]);
+    }
+
+    private static void report(FsrsOptimizer.Result r) {
+        System.out.printf(Locale.ROOT, "Fit: %d iterations in %d ms, log loss %.5f -> %.5f over %,d reviews%n",
+                r.getIterations(), r.getElapsedMs(), r.getInitialLoss(), r.getLoss(), r.getReviews());
+        StringBuilder sb = new StringBuilder();
+        for (double v : r.getWeights()) sb.append(String.format(Locale.ROOT, "%.4f ", v));
+        System.out.println("Weights: " + sb.toString().trim());
+    }
+}
@@ -1,14 +1,22 @@
 package app;
 
+import dao.CardSearch;
+import dao.Repositories;
+import dao.ReviewWriteBehind;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
+import util.DbExecutor;
 
+import java.io.IOException;
 import java.util.Objects;
 
 public class MainApp extends Application {
@@ -21,20 +29,69 @@ public class MainApp extends Application {
         alert.showAndWait();
     }
 @Override
-public void start(Stage stage) throws Exception {
-    var fxml = Objects.requireNonNull(
-            getClass().getResource("/view/main.fxml"),
-            "Cannot find /view/main.fxml (please place it in src/main/resources/view)"
-    );
-    Scene scene = new Scene(new FXMLLoader(fxml).load());
+public void start(Stage stage) {
     var iconUrl = getClass().getResource("/logo.png");
     if (iconUrl != null) stage.getIcons().add(new Image(iconUrl.toExternalForm()));
-
     stage.setTitle("Spaced Repetition Study Cards FX");
-    stage.sizeToScene();
-    stage.setScene(scene);
+    Label opening = new Label("Opening database…");
+    opening.setPadding(new Insets(20));
+    stage.setScene(new Scene(opening));
     stage.show();
+
+    // schema migrations (ALTERs on large tables) or the embedded log replay must not block the FX thread;
+    // the views can only be loaded afterwards, their controllers fetch the repositories when created
+    Thread opener = new Thread(() -> {
+        Throwable error = null;
+        try {
+            Repositories.open();
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        Throwable failure = error;
+        Platform.runLater(() -> {
+            if (failure != null) startupFailed(failure);
+            else showMain(stage);
+        });
+    }, "storage-open");
+    opener.setDaemon(true);
+    opener.start();
+}
+
+private void showMain(Stage stage) {
+    try {
+        var fxml = Objects.requireNonNull(
+                getClass().getResource("/view/main.fxml"),
+                "Cannot find /view/main.fxml (please place it in src/main/resources/view)"
+        );
+        stage.setScene(new Scene(new FXMLLoader(fxml).load()));
+        stage.sizeToScene();
+    } catch (IOException e) {
+        startupFailed(e);
+        return;
+    }
+
+    // connect + prepare the review statements while the user is still looking at the first tab,
+    // then load or build the card search index
+    DbExecutor.runAsync(Repositories::warmUp).thenRun(() -> CardSearch.get().start());
+}
+
+private static void startupFailed(Throwable t) {
+    t.printStackTrace();
+    Alert alert = new Alert(Alert.AlertType.ERROR);
+    alert.setTitle("Startup failed");
+    alert.setHeaderText("The database could not be opened");
+    alert.setContentText(t.getMessage());
+    alert.showAndWait();
+    Platform.exit();
 }
 
+    @Override
+    public void stop() {
+        // window closed without exitApp(): still drain the review journal
+        ReviewWriteBehind.shutdownIfStarted(5000);
+        CardSearch.shutdownIfStarted();
+        Repositories.shutdown();
+    }
+
     public static void main(String[] args) { launch(args); }
 }
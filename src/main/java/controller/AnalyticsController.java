@@ -0,0 +1,109 @@
+package controller;
+
+import dao.DeckAnalyticsCache;
+import javafx.fxml.FXML;
+import javafx.scene.chart.AreaChart;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import model.DeckAnalytics;
+import util.DbExecutor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/** Deck-wide analytics: review heatmap, retention by interval, ease factors and study time per day */
+public class AnalyticsController {
+    private static final double CELL = 11;
+    private static final double GAP = 2;
+    // GitHub-style scale: no reviews, then four shares of the busiest day
+    private static final Color[] LEVELS = {
+            Color.web("#ebedf0"), Color.web("#c6e48b"), Color.web("#7bc96f"), Color.web("#239a3b"), Color.web("#196127")
+    };
+
+    @FXML private Button refreshBtn;
+    @FXML private Label status;
+    @FXML private Pane heatmap;
+    @FXML private BarChart<String, Number> retentionChart;
+    @FXML private BarChart<String, Number> easeChart;
+    @FXML private AreaChart<Number, Number> timeChart;
+
+    private boolean loading;
+
+    /** Tab shown (MainController): cheap once today's scan is cached */
+    public void refresh() {
+        if (loading) return;
+        loading = true;
+        refreshBtn.setDisable(true);
+        status.setText("Loading…");
+        DbExecutor.supplyAsync(() -> DeckAnalyticsCache.get().snapshot()).whenComplete((snap, ex) -> {
+            loading = false;
+            refreshBtn.setDisable(false);
+            if (ex != null) {
+                ex.printStackTrace();
+                status.setText("Analytics failed: " + ex.getMessage());
+                return;
+            }
+            show(snap);
+        });
+    }
+
+    @FXML
+    private void onRescan() {
+        DeckAnalyticsCache.get().invalidate();
+        refresh();
+    }
+
+    private void show(DeckAnalytics.Snapshot s) {
+        drawHeatmap(s);
+
+        XYChart.Series<String, Number> retention = new XYChart.Series<>();
+        for (int b = 0; b < DeckAnalytics.INTERVAL_BUCKETS; b++) {
+            if (s.getIntervalReviews(b) == 0) continue;
+            retention.getData().add(new XYChart.Data<>(DeckAnalytics.intervalLabel(b), s.getRetention(b) * 100));
+        }
+        retentionChart.getData().setAll(List.of(retention));
+
+        XYChart.Series<String, Number> ease = new XYChart.Series<>();
+        for (int b = 0; b < DeckAnalytics.EASE_BUCKETS; b++) {
+            ease.getData().add(new XYChart.Data<>(DeckAnalytics.easeLabel(b), s.getEaseCount(b)));
+        }
+        easeChart.getData().setAll(List.of(ease));
+
+        XYChart.Series<Number, Number> minutes = new XYChart.Series<>();
+        for (int d = 0; d < DeckAnalytics.DAYS; d++) {
+            minutes.getData().add(new XYChart.Data<>(d - (DeckAnalytics.DAYS - 1), s.getStudyMs(d) / 60_000.0));
+        }
+        timeChart.getData().setAll(List.of(minutes));
+
+        status.setText(String.format("%,d reviews (%,d first reviews) on %,d cards, %,.1f h studied; scanned in %d ms",
+                s.getTotalReviews(), s.getFirstReviews(), s.getCards(), s.getTotalStudyMs() / 3_600_000.0, s.getScanMs()));
+    }
+
+    /** One column per week (Monday on top), one cell per day */
+    private void drawHeatmap(DeckAnalytics.Snapshot s) {
+        heatmap.getChildren().clear();
+        LocalDate first = LocalDate.ofEpochDay(s.getFirstDay());
+        int offset = first.getDayOfWeek().getValue() - 1;
+        int max = s.getMaxReviewsPerDay();
+        for (int d = 0; d < DeckAnalytics.DAYS; d++) {
+            int cell = d + offset;
+            int count = s.getReviews(d);
+            Rectangle r = new Rectangle(CELL, CELL, LEVELS[level(count, max)]);
+            r.setLayoutX((cell / 7) * (CELL + GAP));
+            r.setLayoutY((cell % 7) * (CELL + GAP));
+            Tooltip.install(r, new Tooltip(first.plusDays(d) + ": " + count + " reviews"));
+            heatmap.getChildren().add(r);
+        }
+    }
+
+    private static int level(int count, int max) {
+        if (count == 0 || max == 0) return 0;
+        return Math.min(LEVELS.length - 1, 1 + (count - 1) * (LEVELS.length - 1) / max);
+    }
+}
@@ -0,0 +1,111 @@
+package controller;
+
+import dao.CardRepository;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+import model.CardSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keyset-paged, bounded window of {@link CardSummary} rows behind the cards TableView.
+ * Pages are fetched as rows near either edge get rendered; rows far away from the
+ * viewport are dropped again, so heap use does not depend on the deck size.
+ */
+class CardPager {
+    static final int PAGE_SIZE = 200;
+    static final int MAX_ROWS = 10 * PAGE_SIZE;
+    private static final int PREFETCH = PAGE_SIZE / 4;
+
+    private final CardRepository cardDAO;
+    private final TableView<CardSummary> table;
+    private final ObservableList<CardSummary> items = FXCollections.observableArrayList();
+
+    private boolean loading = false;
+    private boolean hasOlder = true;   // more rows below the window (smaller ids)
+    private boolean hasNewer = false;  // rows above the window were dropped (larger ids)
+    private int generation = 0;        // bumped by reset() to discard in-flight pages
+
+    CardPager(CardRepository cardDAO, TableView<CardSummary> table) {
+        this.cardDAO = cardDAO;
+        this.table = table;
+    }
+
+    ObservableList<CardSummary> getItems() { return items; }
+
+    /** Drop everything and load the newest page */
+    void reset() {
+        generation++;
+        loading = false;
+        hasOlder = true;
+        hasNewer = false;
+        items.clear();
+        loadOlder();
+    }
+
+    /** Called by the row factory whenever a row gets (re)bound to an index */
+    void onRowShown(int index) {
+        if (index < 0) return;
+        if (index >= items.size() - PREFETCH) loadOlder();
+        else if (index < PREFETCH && hasNewer) loadNewer();
+    }
+
+    /** Remove a row locally (e.g. after delete) without reloading the window */
+    void remove(int cardId) {
+        items.removeIf(c -> c.getId() == cardId);
+    }
+
+    private void loadOlder() {
+        if (loading || !hasOlder) return;
+        loading = true;
+        int gen = generation;
+        int beforeId = items.isEmpty() ? Integer.MAX_VALUE : items.get(items.size() - 1).getId();
+        cardDAO.findPageBeforeAsync(beforeId, PAGE_SIZE).thenAccept(page -> {
+            if (gen != generation) return;
+            loading = false;
+            if (page.size() < PAGE_SIZE) hasOlder = false;
+            items.addAll(page);
+            if (items.size() > MAX_ROWS) {
+                int drop = items.size() - MAX_ROWS;
+                int first = firstVisibleIndex();
+                items.remove(0, drop);
+                hasNewer = true;
+                table.scrollTo(Math.max(0, first - drop));
+            }
+        });
+    }
+
+    private void loadNewer() {
+        if (loading || !hasNewer || items.isEmpty()) return;
+        loading = true;
+        int gen = generation;
+        int afterId = items.get(0).getId();
+        cardDAO.findPageAfterAsync(afterId, PAGE_SIZE).thenAccept(page -> {
+            if (gen != generation) return;
+            loading = false;
+            if (page.size() < PAGE_SIZE) hasNewer = false;
+            List<CardSummary> newestFirst = new ArrayList<>(page);
+            Collections.reverse(newestFirst);
+            int first = firstVisibleIndex();
+            items.addAll(0, newestFirst);
+            if (items.size() > MAX_ROWS) {
+                items.remove(MAX_ROWS, items.size());
+                hasOlder = true;
+            }
+            table.scrollTo(first + newestFirst.size());
+        });
+    }
+
+    private int firstVisibleIndex() {
+        if (table.lookup(".virtual-flow") instanceof VirtualFlow<?> flow) {
+            IndexedCell<?> cell = flow.getFirstVisibleCell();
+            if (cell != null) return cell.getIndex();
+        }
+        return 0;
+    }
+}
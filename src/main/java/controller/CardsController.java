@@ -1,40 +1,53 @@
 package controller;
 
-import dao.CardDAO;
-import dao.ReviewPlanDAO;
+import dao.CardRepository;
+import dao.CardSearch;
+import dao.Repositories;
+import dao.ReviewPlanRepository;
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.input.KeyCode;
 import javafx.stage.Modality;
+import javafx.util.Duration;
 import model.Card;
+import model.CardSummary;
+import util.CardIndex;
 
 import java.io.IOException;
 import java.time.LocalDate;
 
 public class CardsController {
-    private final CardDAO cardDAO = new CardDAO();
-    private final ReviewPlanDAO reviewPlanDAO = new ReviewPlanDAO();
+    private final CardRepository cardDAO = Repositories.cards();
+    private final ReviewPlanRepository reviewPlanDAO = Repositories.plans();
 
-    @FXML private TableView<Card> table;
-    @FXML private TableColumn<Card, Integer> colId;
-    @FXML private TableColumn<Card, String> colQuestion;
-    @FXML private TableColumn<Card, String> colAnswer;
-    @FXML private TableColumn<Card, LocalDate> colCreatedAt;
-    @FXML private TableColumn<Card, Void> colActions;
+    @FXML private TableView<CardSummary> table;
+    @FXML private TableColumn<CardSummary, Integer> colId;
+    @FXML private TableColumn<CardSummary, String> colQuestion;
+    @FXML private TableColumn<CardSummary, LocalDate> colCreatedAt;
+    @FXML private TableColumn<CardSummary, Void> colActions;
+    @FXML private TextArea answerPreview;
     @FXML private Button refreshButton;
     @FXML private Button addButton;
+    @FXML private TextField searchField;
+    @FXML private Label searchStatus;
 
-    private final ObservableList<Card> data = FXCollections.observableArrayList();
+    // keyset-paged window instead of the whole deck
+    private CardPager pager;
+    // newest matches of the search box; shown instead of the pager's window while a query is entered
+    private final ObservableList<CardSummary> results = FXCollections.observableArrayList();
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(150));
+    private int searchGeneration;
 
     @FXML
     public void initialize() {
         // setCellValueFactory defines how to read each field for every row.
         colId.setCellValueFactory(new PropertyValueFactory<>("id"));
         colQuestion.setCellValueFactory(new PropertyValueFactory<>("question"));
-        colAnswer.setCellValueFactory(new PropertyValueFactory<>("answer"));
         colCreatedAt.setCellValueFactory(new PropertyValueFactory<>("createdAt"));
 
         colActions.setCellFactory(col -> new TableCell<>() {
@@ -42,14 +55,19 @@ public class CardsController {
             {
                 btn.setOnAction(e -> {
                     // Access the current row's item via the table reference on the cell.
-                    Card c = getTableView().getItems().get(getIndex());
+                    CardSummary c = getTableView().getItems().get(getIndex());
                     if (c != null) {
                         boolean ok = new Alert(Alert.AlertType.CONFIRMATION,
                                 "Delete card #" + c.getId() + "?", ButtonType.OK, ButtonType.CANCEL)
                                 .showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
                         if (ok) {
                             // FK cascade will remove related plans/stats as well.
-                            if (cardDAO.deleteById(c.getId())) load();
+                            cardDAO.deleteByIdAsync(c.getId()).thenAccept(deleted -> {
+                                if (deleted) {
+                                    pager.remove(c.getId());
+                                    results.removeIf(r -> r.getId() == c.getId());
+                                }
+                            });
                         }
                     }
                 });
@@ -60,14 +78,76 @@ public class CardsController {
             }
         });
 
-        table.setItems(data);
+        pager = new CardPager(cardDAO, table);
+        // rows near the window edges pull in the next page
+        table.setRowFactory(tv -> new TableRow<>() {
+            @Override public void updateIndex(int i) {
+                super.updateIndex(i);
+                if (!isEmpty() && getTableView().getItems() == pager.getItems()) pager.onRowShown(i);
+            }
+        });
+        // answers are MEDIUMTEXT -> only load the one of the selected card
+        table.getSelectionModel().selectedItemProperty().addListener((obs, old, sel) -> showAnswer(sel));
+
+        table.setItems(pager.getItems());
         refreshButton.setOnAction(e -> load());
         addButton.setOnAction(e -> openAddDialog());
+        // search as you type, once the typing pauses
+        searchDelay.setOnFinished(e -> search());
+        searchField.textProperty().addListener((obs, old, text) -> searchDelay.playFromStart());
+        searchField.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ESCAPE) searchField.clear();
+        });
         load();
     }
 
     private void load() {
-        data.setAll(cardDAO.findAll());
+        if (searchField.getText().isBlank()) pager.reset();
+        else search();
+    }
+
+    private void search() {
+        String q = searchField.getText().trim();
+        int gen = ++searchGeneration;
+        if (q.isEmpty()) {
+            searchStatus.setText("");
+            results.clear();
+            table.setItems(pager.getItems());
+            return;
+        }
+        long start = System.nanoTime();
+        CardSearch cardSearch = CardSearch.get();
+        CardIndex.Hits hits = cardSearch.search(q, CardPager.PAGE_SIZE);
+        if (hits == null) {
+            if (cardSearch.isFailed()) {
+                // no retry: the cause is in the log, and an import or merge rebuilds the index
+                searchStatus.setText("Search unavailable: the index could not be built");
+            } else {
+                searchStatus.setText("Search index is loading…");
+                searchDelay.playFromStart(); // try again shortly
+            }
+            return;
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+        cardDAO.findSummariesAsync(hits.getIds()).thenAccept(rows -> {
+            if (gen != searchGeneration) return;
+            results.setAll(rows);
+            table.setItems(results);
+            searchStatus.setText(String.format("%,d matches in %.1f ms%s", hits.getTotal(), ms,
+                    hits.getTotal() > rows.size() ? " (newest " + rows.size() + " shown)" : ""));
+        });
+    }
+
+    private void showAnswer(CardSummary sel) {
+        if (answerPreview == null) return;
+        answerPreview.clear();
+        if (sel == null) return;
+        cardDAO.findByIdAsync(sel.getId()).thenAccept(card -> {
+            CardSummary still = table.getSelectionModel().getSelectedItem();
+            if (card != null && still != null && still.getId() == card.getId()) {
+                answerPreview.setText(card.getAnswer());
+            }
+        });
     }
 
     private void openAddDialog() {
@@ -84,11 +164,9 @@ public class CardsController {
             dlg.showAndWait().ifPresent(bt -> {
                 if (bt.getButtonData() == ButtonBar.ButtonData.OK_DONE) {
                     Card c = ctrl.getResult();
-                    int id = cardDAO.insertCard(c);
-                    if (id > 0) {
-                        reviewPlanDAO.generateFirstPlan(id);
-                        load();
-                    }
+                    cardDAO.insertCardAsync(c).thenAccept(id -> {
+                        if (id > 0) reviewPlanDAO.generateFirstPlanAsync(id).thenRun(this::load);
+                    });
                 }
             });
         } catch (IOException ex) {
@@ -1,52 +1,71 @@
 package controller;
 
-import dao.CardDAO;
+import dao.CardSearch;
+import dao.DeckAnalyticsCache;
+import dao.Repositories;
+import dao.ReviewStatisticRepository;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.stage.DirectoryChooser;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
-import util.CsvPretty;
+import javafx.stage.FileChooser;
+import util.CsvExporter;
+import util.CsvImporter;
+import util.CsvMergeImporter;
 import util.DB;
+import util.DbExecutor;
 
-import javax.sql.DataSource;
 import java.io.File;
-import java.sql.*;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionException;
 
-/** CSV import/export (3 tables -> 3 CSV files) */
+/** CSV import/export (3 tables -> 3 CSV files) and binary snapshots (3 tables -> 1 .srsnap file) */
 public class ImportExportController {
+    @FXML private Button btnExport;
+    @FXML private Button btnImport;
+    @FXML private Button btnMerge;
+    @FXML private Button btnSnapshotExport;
+    @FXML private Button btnSnapshotRestore;
+    @FXML private Button btnCancel;
     @FXML private Label status;
     @FXML private TextArea logArea;
 
-    private final CardDAO cardDAO = new CardDAO();
+    private final ReviewStatisticRepository statDAO = Repositories.stats();
+    private volatile CsvImporter runningImport;
 
-    // ---- table & file names (keep them consistent) ----
-    private static final String T_CARD = "card";
-    private static final String T_PLAN = "review_plan";
-    private static final String T_STAT = "review_statistic"; // <-- singular
-
-    private static final String F_CARDS = "cards.csv";
-    private static final String F_PLAN  = "review_plan.csv";
-    private static final String F_STAT  = "review_statistic.csv"; // <-- singular
+    // ---- file names (keep them consistent with CsvExporter) ----
+    private static final String F_CARDS = CsvExporter.F_CARDS;
+    private static final String F_PLAN  = CsvExporter.F_PLAN;
+    private static final String F_STAT  = CsvExporter.F_STAT; // <-- singular
+    private static final String SNAPSHOT_EXT = ".srsnap";
 
     @FXML
     public void initialize() {
         if (status != null) status.setText("");
+        if (btnCancel != null) btnCancel.setDisable(true);
+        if (Repositories.isEmbedded()) {
+            // CSV and snapshot tools stream over JDBC
+            setBusy(true);
+            if (btnCancel != null) btnCancel.setDisable(true);
+            if (status != null) status.setText("Import/export needs the MySQL backend");
+        }
     }
 
     @FXML
     private void onExport() {
         try {
             // 1) Let user pick a base file name
-            javafx.stage.FileChooser fc = new javafx.stage.FileChooser();
+            FileChooser fc = new FileChooser();
             fc.setTitle("Export: choose a base file name (a folder with 3 CSVs will be created)");
-            fc.getExtensionFilters().add(new javafx.stage.FileChooser.ExtensionFilter("CSV", "*.csv"));
+            fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
             String ts = java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")
                     .format(java.time.LocalDateTime.now());
             fc.setInitialFileName("srs_export_" + ts + ".csv");
@@ -61,70 +80,28 @@ public class ImportExportController {
                 throw new java.io.IOException("Cannot create export folder: " + outDir.getAbsolutePath());
             }
 
-            File fCards = new File(outDir, F_CARDS);
-            File fPlan  = new File(outDir, F_PLAN);
-            File fStats = new File(outDir, F_STAT);
-
-            // 3) Export cards
-            List<model.Card> cards = cardDAO.findAll();
-            try (CSVPrinter p = CsvPretty.openWriter(fCards, "id","question","answer","created_at")) {
-                for (model.Card k : cards) {
-                    p.printRecord(
-                            k.getId(),
-                            CsvPretty.sanitizeText(k.getQuestion()),
-                            CsvPretty.sanitizeText(k.getAnswer()),
-                            fmtAnyDate(k.getCreatedAt())
-                    );
-                }
-            }
-
-            // 4) Export plan & statistic
-            DataSource ds = DB.getDataSource();
-            try (Connection c = ds.getConnection()) {
-                // review_plan
-                try (Statement st = c.createStatement();
-                     ResultSet rs = st.executeQuery(
-                             "SELECT id, card_id, planned_on, reviewed_on, rating, interval_days, repeats, ease_factor " +
-                                     "FROM " + T_PLAN + " ORDER BY id");
-                     CSVPrinter p = CsvPretty.openWriter(fPlan,
-                             "id","card_id","planned_on","reviewed_on","rating","interval_days","repeats","ease_factor")) {
-                    while (rs.next()) {
-                        Integer rating = intObj(rs, "rating");
-                        p.printRecord(
-                                rs.getInt("id"),
-                                rs.getInt("card_id"),
-                                CsvPretty.fmtTs(ts(rs, "planned_on")),
-                                CsvPretty.fmtTs(ts(rs, "reviewed_on")),
-                                rating == null ? "" : rating,
-                                rs.getInt("interval_days"),
-                                rs.getInt("repeats"),
-                                String.format(java.util.Locale.ROOT, "%.2f", rs.getDouble("ease_factor"))
-                        );
-                    }
+            // 3) Stream all three tables concurrently from one consistent snapshot
+            setBusy(true);
+            status.setText("Exporting…");
+            log("Export folder: " + outDir.getAbsolutePath());
+            CsvExporter exporter = new CsvExporter(DB.getDataSource());
+            DbExecutor.supplyAsync(() -> {
+                try {
+                    return exporter.exportAll(outDir, (file, rows, rps, done) -> Platform.runLater(() ->
+                            log(String.format(Locale.ROOT, "%s: %,d rows (%,.0f rows/s)%s",
+                                    file, rows, rps, done ? " done" : ""))));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
                 }
-                // review_statistic (singular)
-                try (Statement st = c.createStatement();
-                     ResultSet rs = st.executeQuery(
-                             "SELECT id, card_id, reviewed_at, duration_ms, correct, rating, notes " +
-                                     "FROM " + T_STAT + " ORDER BY id");
-                     CSVPrinter p = CsvPretty.openWriter(fStats,
-                             "id","card_id","reviewed_at","duration_ms","correct","rating","notes")) {
-                    while (rs.next()) {
-                        p.printRecord(
-                                rs.getInt("id"),
-                                rs.getInt("card_id"),
-                                CsvPretty.fmtTs(ts(rs, "reviewed_at")),
-                                rs.getInt("duration_ms"),
-                                rs.getBoolean("correct"),
-                                rs.getInt("rating"),
-                                CsvPretty.sanitizeText(rs.getString("notes"))
-                        );
-                    }
+            }).whenComplete((rows, ex) -> {
+                setBusy(false);
+                if (ex != null) {
+                    status.setText("Export failed");
+                    showErr("Export failed", ex);
+                    return;
                 }
-            }
-
-            status.setText("Export succeeded (created folder '" + outDir.getName() + "' with 3 CSV files)");
-            log("Export folder: " + outDir.getAbsolutePath());
+                status.setText("Export succeeded (created folder '" + outDir.getName() + "' with 3 CSV files)");
+            });
         } catch (Exception ex) {
             status.setText("Export failed");
             showErr("Export failed", ex);
@@ -155,133 +132,237 @@ public class ImportExportController {
             boolean ok = new Alert(Alert.AlertType.CONFIRMATION,
                     "Import will ERASE all current data and restore from CSV. Continue?")
                     .showAndWait()
-                    .orElse(javafx.scene.control.ButtonType.CANCEL)
-                    == javafx.scene.control.ButtonType.OK;
+                    .orElse(ButtonType.CANCEL)
+                    == ButtonType.OK;
             if (!ok) return;
 
-            DataSource ds = DB.getDataSource();
-            try (Connection c = ds.getConnection()) {
-                c.setAutoCommit(false);
-                try (Statement st = c.createStatement()) {
-                    st.execute("SET FOREIGN_KEY_CHECKS=0");
-                    st.execute("TRUNCATE TABLE " + T_STAT);
-                    st.execute("TRUNCATE TABLE " + T_PLAN);
-                    st.execute("TRUNCATE TABLE " + T_CARD);
-                    st.execute("SET FOREIGN_KEY_CHECKS=1");
+            // parse + write off the FX thread; Cancel stops after the current batch
+            CsvImporter importer = new CsvImporter(DB.getBulkDataSource());
+            runningImport = importer;
+            setBusy(true);
+            status.setText("Importing…");
+            log("Import folder: " + dir.getAbsolutePath());
+            DbExecutor.supplyAsync(() -> {
+                try {
+                    return importer.importAll(dir, (file, rows, pct, rps, done) -> Platform.runLater(() ->
+                            log(String.format(Locale.ROOT, "%s: %,d rows, %.0f%% (%,.0f rows/s)%s",
+                                    file, rows, pct, rps, done ? " done" : ""))));
+                } catch (Exception e) {
+                    throw new CompletionException(e);
                 }
+            }).whenComplete((res, ex) -> importFinished(dir, res, ex));
+        } catch (Exception ex) {
+            status.setText("Import failed");
+            showErr("Import failed", ex);
+        }
+    }
 
-                // cards
-                try (CSVParser parser = CsvPretty.openReader(fCards);
-                     PreparedStatement ps = c.prepareStatement(
-                             "INSERT INTO " + T_CARD + " (id, question, answer, created_at) VALUES (?,?,?,?)")) {
-                    for (CSVRecord r : parser) {
-                        ps.setInt(1, Integer.parseInt(r.get("id")));
-                        ps.setString(2, emptyToNull(unsanitize(r.get("question"))));
-                        ps.setString(3, emptyToNull(unsanitize(r.get("answer"))));
-                        setTsOrNull(ps, 4, r.get("created_at"));
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
-                }
+    private void importFinished(File reportDir, CsvImporter.Result res, Throwable ex) {
+        runningImport = null;
+        setBusy(false);
+        if (ex != null) {
+            status.setText("Import failed, the old data is unchanged");
+            showErr("Import failed", ex);
+            return;
+        }
+        if (res.cancelled) {
+            status.setText("Import cancelled, the old data is unchanged");
+            return;
+        }
+        DeckAnalyticsCache.get().invalidate();
+        CardSearch.get().rebuild();
+        log("card_stats rebuilt for " + res.statCards + " cards");
+        if (res.errorCount > 0) reportErrors(reportDir, res);
+        status.setText(res.errorCount > 0 ? "Import finished with " + res.errorCount + " bad rows"
+                : "Import succeeded");
+    }
+
+    /** All three tables into one binary .srsnap file (much smaller and faster than CSV, not human-readable) */
+    @FXML
+    private void onExportSnapshot() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Export snapshot");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("srsfx snapshot", "*" + SNAPSHOT_EXT));
+        String ts = java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")
+                .format(java.time.LocalDateTime.now());
+        fc.setInitialFileName("srs_snapshot_" + ts + SNAPSHOT_EXT);
+        File picked = fc.showSaveDialog(status.getScene().getWindow());
+        if (picked == null) return;
+        File file = picked.getName().endsWith(SNAPSHOT_EXT) ? picked
+                : new File(picked.getParentFile(), picked.getName() + SNAPSHOT_EXT);
+
+        setBusy(true);
+        status.setText("Exporting snapshot…");
+        log("Snapshot: " + file.getAbsolutePath());
+        CsvExporter exporter = new CsvExporter(DB.getDataSource());
+        DbExecutor.supplyAsync(() -> {
+            try {
+                return exporter.exportSnapshot(file, (name, rows, rps, done) -> Platform.runLater(() ->
+                        log(String.format(Locale.ROOT, "%s: %,d rows (%,.0f rows/s)%s",
+                                name, rows, rps, done ? " done" : ""))));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((rows, ex) -> {
+            setBusy(false);
+            if (ex != null) {
+                status.setText("Snapshot export failed");
+                showErr("Snapshot export failed", ex);
+                return;
+            }
+            status.setText(String.format(Locale.ROOT, "Snapshot written (%,d KB)", file.length() / 1024));
+        });
+    }
 
-                // review_plan
-                try (CSVParser parser = CsvPretty.openReader(fPlan);
-                     PreparedStatement ps = c.prepareStatement(
-                             "INSERT INTO " + T_PLAN + " (id, card_id, planned_on, reviewed_on, rating, interval_days, repeats, ease_factor) " +
-                                     "VALUES (?,?,?,?,?,?,?,?)")) {
-                    for (CSVRecord r : parser) {
-                        ps.setInt(1, Integer.parseInt(r.get("id")));
-                        ps.setInt(2, Integer.parseInt(r.get("card_id")));
-                        setTsOrNull(ps, 3, r.get("planned_on"));
-                        setTsOrNull(ps, 4, r.get("reviewed_on"));
+    @FXML
+    private void onRestoreSnapshot() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Restore snapshot");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("srsfx snapshot", "*" + SNAPSHOT_EXT));
+        File file = fc.showOpenDialog(status.getScene().getWindow());
+        if (file == null) return;
+
+        boolean ok = new Alert(Alert.AlertType.CONFIRMATION,
+                "Restore will ERASE all current data and replace it with the snapshot. Continue?")
+                .showAndWait()
+                .orElse(ButtonType.CANCEL)
+                == ButtonType.OK;
+        if (!ok) return;
+
+        CsvImporter importer = new CsvImporter(DB.getBulkDataSource());
+        runningImport = importer;
+        setBusy(true);
+        status.setText("Restoring snapshot…");
+        log("Restore snapshot: " + file.getAbsolutePath());
+        DbExecutor.supplyAsync(() -> {
+            try {
+                return importer.importSnapshot(file, (name, rows, pct, rps, done) -> Platform.runLater(() ->
+                        log(String.format(Locale.ROOT, "%s: %,d rows, %.0f%% (%,.0f rows/s)%s",
+                                name, rows, pct, rps, done ? " done" : ""))));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((res, ex) -> importFinished(file.getParentFile(), res, ex));
+    }
 
-                        String rating = r.get("rating");
-                        if (rating == null || rating.isBlank()) ps.setNull(5, Types.INTEGER);
-                        else ps.setInt(5, Integer.parseInt(rating.trim()));
+    /** Apply only the differences between the CSV folder and the database (dry run + confirm first) */
+    @FXML
+    private void onMerge() {
+        DirectoryChooser dc = new DirectoryChooser();
+        dc.setTitle("Choose a folder that contains 3 CSV files");
+        File dir = dc.showDialog(status.getScene().getWindow());
+        if (dir == null) return;
+        if (!new File(dir, F_CARDS).exists() || !new File(dir, F_PLAN).exists() || !new File(dir, F_STAT).exists()) {
+            showErr("Merge failed", new IllegalArgumentException(
+                    "Folder must contain: " + F_CARDS + ", " + F_PLAN + ", " + F_STAT));
+            return;
+        }
 
-                        ps.setInt(6, Integer.parseInt(zeroIfEmpty(r.get("interval_days"))));
-                        ps.setInt(7, Integer.parseInt(zeroIfEmpty(r.get("repeats"))));
-                        String ef = r.get("ease_factor");
-                        ps.setDouble(8, (ef == null || ef.isBlank()) ? 0.0 : Double.parseDouble(ef.trim()));
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
-                }
+        CsvMergeImporter merger = new CsvMergeImporter(DB.getBulkDataSource());
+        setBusy(true);
+        status.setText("Comparing…");
+        log("Merge folder (dry run): " + dir.getAbsolutePath());
+        mergeAsync(merger, dir, true).whenComplete((diff, ex) -> {
+            setBusy(false);
+            if (ex != null) {
+                status.setText("Merge failed");
+                showErr("Merge failed", ex);
+                return;
+            }
+            diff.forEach(d -> log("  " + d));
+            long changes = diff.stream().mapToLong(d -> d.inserts + d.updates + d.deletes).sum();
+            if (changes == 0) {
+                status.setText("Nothing to merge");
+                return;
+            }
+            boolean ok = new Alert(Alert.AlertType.CONFIRMATION,
+                    "Apply " + changes + " changes (see log) to the database?")
+                    .showAndWait()
+                    .orElse(ButtonType.CANCEL)
+                    == ButtonType.OK;
+            if (!ok) {
+                status.setText("Merge skipped");
+                return;
+            }
 
-                // review_statistic (singular)
-                try (CSVParser parser = CsvPretty.openReader(fStats);
-                     PreparedStatement ps = c.prepareStatement(
-                             "INSERT INTO " + T_STAT + " (id, card_id, reviewed_at, duration_ms, correct, rating, notes) " +
-                                     "VALUES (?,?,?,?,?,?,?)")) {
-                    for (CSVRecord r : parser) {
-                        ps.setInt(1, Integer.parseInt(r.get("id")));
-                        ps.setInt(2, Integer.parseInt(r.get("card_id")));
-                        setTsOrNow(ps, 3, r.get("reviewed_at"));
-                        ps.setInt(4, Integer.parseInt(zeroIfEmpty(r.get("duration_ms"))));
-                        ps.setBoolean(5, toBool(r.get("correct")));
-                        ps.setInt(6, Integer.parseInt(zeroIfEmpty(r.get("rating"))));
-                        ps.setString(7, emptyToNull(unsanitize(r.get("notes"))));
-                        ps.addBatch();
-                    }
-                    ps.executeBatch();
+            setBusy(true);
+            status.setText("Merging…");
+            mergeAsync(merger, dir, false).whenComplete((applied, ex2) -> {
+                setBusy(false);
+                if (ex2 != null) {
+                    status.setText("Merge failed (nothing changed)");
+                    showErr("Merge failed", ex2);
+                    return;
                 }
+                applied.forEach(d -> log("  " + d));
+                DeckAnalyticsCache.get().invalidate();
+                CardSearch.get().rebuild();
+                status.setText("Merge succeeded");
+            });
+        });
+    }
 
-                c.commit();
+    private static java.util.concurrent.CompletableFuture<List<CsvMergeImporter.TableDiff>> mergeAsync(
+            CsvMergeImporter merger, File dir, boolean dryRun) {
+        return DbExecutor.supplyAsync(() -> {
+            try {
+                return merger.merge(dir, dryRun);
+            } catch (Exception e) {
+                throw new CompletionException(e);
             }
+        });
+    }
 
-            status.setText("Import succeeded");
-            log("Import folder: " + dir.getAbsolutePath());
-        } catch (Exception ex) {
-            status.setText("Import failed");
-            showErr("Import failed", ex);
+    @FXML
+    private void onCancel() {
+        CsvImporter importer = runningImport;
+        if (importer != null) {
+            importer.cancel();
+            log("Cancelling import…");
         }
     }
 
-    // ===== helpers =====
-    private void log(String msg) { if (logArea != null) logArea.appendText(msg + "\n"); }
-
-    private void showErr(String title, Exception ex) {
-        Alert a = new Alert(Alert.AlertType.ERROR, ex.getMessage());
-        a.setHeaderText(title);
-        a.showAndWait();
-        log("ERROR: " + ex);
+    /** Log the first bad rows and write the full list next to the CSV files */
+    private void reportErrors(File dir, CsvImporter.Result res) {
+        File report = new File(dir, "import_errors.txt");
+        try {
+            Files.write(report.toPath(), res.errors, StandardCharsets.UTF_8);
+            log(res.errorCount + " bad rows skipped, report: " + report.getAbsolutePath());
+        } catch (IOException e) {
+            log("Could not write error report: " + e);
+        }
+        res.errors.stream().limit(20).forEach(m -> log("  " + m));
     }
 
-    private static String unsanitize(String s) { return s == null ? null : s.replace("\\n", "\n"); }
-    private static String emptyToNull(String s) { return (s == null || s.isBlank()) ? null : s; }
-    private static String zeroIfEmpty(String s) { return (s == null || s.isBlank()) ? "0" : s.trim(); }
-    private static boolean toBool(String s) { Boolean v = CsvPretty.toBool(s); return v != null && v; }
-
-    private static LocalDateTime ts(ResultSet rs, String col) throws SQLException {
-        Timestamp t = rs.getTimestamp(col);
-        return t == null ? null : t.toLocalDateTime();
-    }
-    private static Integer intObj(ResultSet rs, String col) throws SQLException {
-        int v = rs.getInt(col);
-        return rs.wasNull() ? null : v;
+    @FXML
+    private void onRebuildStats() {
+        status.setText("Rebuilding card_stats…");
+        statDAO.rebuildCardStatsAsync().thenAccept(n -> {
+            if (n < 0) {
+                status.setText("Rebuild failed");
+                return;
+            }
+            status.setText("card_stats rebuilt");
+            log("card_stats rebuilt for " + n + " cards");
+        });
     }
 
-    /** format any date-like object to "yyyy-MM-dd HH:mm:ss" */
-    private static String fmtAnyDate(Object any) {
-        if (any == null) return "";
-        if (any instanceof LocalDateTime) return CsvPretty.fmtTs((LocalDateTime) any);
-        if (any instanceof LocalDate)     return CsvPretty.fmtTs((LocalDate) any);
-        if (any instanceof Timestamp)     return CsvPretty.fmtTs(((Timestamp) any).toLocalDateTime());
-        if (any instanceof java.sql.Date) return CsvPretty.fmtTs(((java.sql.Date) any).toLocalDate().atStartOfDay());
-        return any.toString();
+    // ===== helpers =====
+    private void setBusy(boolean busy) {
+        if (btnExport != null) btnExport.setDisable(busy);
+        if (btnImport != null) btnImport.setDisable(busy);
+        if (btnMerge != null) btnMerge.setDisable(busy);
+        if (btnSnapshotExport != null) btnSnapshotExport.setDisable(busy);
+        if (btnSnapshotRestore != null) btnSnapshotRestore.setDisable(busy);
+        if (btnCancel != null) btnCancel.setDisable(!busy);
     }
 
-    /** v empty -> NULL; supports date/datetime */
-    private static void setTsOrNull(PreparedStatement ps, int idx, String v) throws SQLException {
-        LocalDateTime ldt = CsvPretty.parseLdt(v);
-        if (ldt == null) ps.setNull(idx, Types.TIMESTAMP);
-        else ps.setTimestamp(idx, Timestamp.valueOf(ldt));
-    }
+    private void log(String msg) { if (logArea != null) logArea.appendText(msg + "\n"); }
 
-    /** v empty -> NOW; supports date/datetime */
-    private static void setTsOrNow(PreparedStatement ps, int idx, String v) throws SQLException {
-        LocalDateTime ldt = CsvPretty.parseLdt(v);
-        if (ldt == null) ldt = LocalDateTime.now();
-        ps.setTimestamp(idx, Timestamp.valueOf(ldt));
+    private void showErr(String title, Throwable ex) {
+        Alert a = new Alert(Alert.AlertType.ERROR, ex.getMessage());
+        a.setHeaderText(title);
+        a.showAndWait();
+        log("ERROR: " + ex);
     }
 }
@@ -1,15 +1,17 @@
 package controller;
 
+import dao.CardSearch;
+import dao.CardStatsCache;
+import dao.Repositories;
+import dao.ReviewStatisticDAO;
+import dao.ReviewWriteBehind;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
-import util.DB;
+import java.util.concurrent.CompletionException;
+import util.DbExecutor;
 
 public class MainController {
 
@@ -18,12 +20,20 @@ public class MainController {
     @FXML private Tab reviewTab;
     // matches <fx:include fx:id="reviewView"> -> must be reviewViewController
     @FXML private ReviewController reviewViewController;
+    @FXML private Tab analyticsTab;
+    @FXML private AnalyticsController analyticsViewController;
+    @FXML private ScheduleController scheduleViewController;
 
     @FXML
     public void initialize() {
+        if (scheduleViewController != null) scheduleViewController.setReviewController(reviewViewController);
         // when switching to Review tab, ask first
         if (tabPane != null && reviewTab != null) {
             tabPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) -> {
+                // deck analytics scan on first view (once a day), not at startup
+                if (newTab == analyticsTab && analyticsViewController != null) {
+                    analyticsViewController.refresh();
+                }
                 if (newTab == reviewTab) {
                     if (reviewViewController != null && !reviewViewController.isSessionRunning()) {
                         boolean ok = reviewViewController.confirmStartTimer();
@@ -52,34 +62,44 @@ public class MainController {
                 .append("Java: ").append(javaVer).append('\n')
                 .append("JavaFX: ").append(fxVer == null ? "unknown" : fxVer).append('\n');
 
-        try {
-            DataSource ds = DB.getDataSource();
-            // English table/column names
-            int cards = count(ds, "SELECT COUNT(*) FROM card");
-            int due = count(ds, "SELECT COUNT(*) FROM review_plan WHERE planned_on <= CURDATE()");
-            sb.append("\nDB: OK").append('\n')
-                    .append("Cards: ").append(cards).append('\n')
-                    .append("Due (<= today): ").append(due).append('\n');
-            infoDialog("About", sb.toString(), null);
-        } catch (Exception ex) {
-            sb.append("\nDB: FAILED").append('\n')
-                    .append("Reason: ").append(ex.getMessage()).append('\n');
-            infoDialog("About (with DB error)", sb.toString(), ex);
-        }
+        // counts run on a DB worker; the dialog opens on the FX thread once they are in
+        DbExecutor.supplyAsync(() -> {
+            try {
+                return new int[] {
+                        Repositories.cards().countCards(),
+                        Repositories.plans().countDue()
+                };
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((counts, ex) -> {
+            if (ex == null) {
+                sb.append("\nDB: OK (").append(Repositories.isEmbedded() ? "embedded" : "MySQL").append(")\n")
+                        .append("Cards: ").append(counts[0]).append('\n')
+                        .append("Due (<= today): ").append(counts[1]).append('\n');
+                CardStatsCache cache = ReviewStatisticDAO.cache();
+                sb.append("Stats cache: ").append(cache.size()).append('/').append(cache.getCapacity())
+                        .append(" (hits ").append(cache.getHits())
+                        .append(", misses ").append(cache.getMisses()).append(")\n");
+                infoDialog("About", sb.toString(), null);
+            } else {
+                sb.append("\nDB: FAILED").append('\n')
+                        .append("Reason: ").append(ex.getMessage()).append('\n');
+                infoDialog("About (with DB error)", sb.toString(), ex);
+            }
+        });
     }
 
     @FXML
-    private void exitApp() { Platform.exit(); }
-
-    // ===== helpers =====
-    private static int count(DataSource ds, String sql) throws Exception {
-        try (Connection c = ds.getConnection();
-             Statement st = c.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-            return rs.next() ? rs.getInt(1) : 0;
-        }
+    private void exitApp() {
+        // write pending ratings to the DB before leaving (whatever is left stays in the journal)
+        ReviewWriteBehind.shutdownIfStarted(5000);
+        CardSearch.shutdownIfStarted();
+        Repositories.shutdown();
+        Platform.exit();
     }
 
+    // ===== helpers =====
     private static void infoDialog(String title, String content, Throwable t) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
@@ -1,8 +1,9 @@
 package controller;
 
-import dao.CardDAO;
-import dao.ReviewPlanDAO;
-import dao.ReviewStatisticDAO;
+import dao.Repositories;
+import dao.ReviewPlanRepository;
+import dao.ReviewStatisticRepository;
+import dao.ReviewWriteBehind;
 import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -10,22 +11,29 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
-import model.Card;
-import model.SM2;
+import model.CardStats;
+import model.DueQueue;
 import model.ReviewPlan;
+import model.ReviewSession;
 import model.ReviewStatistic;
+import model.Scheduler;
+import model.Schedulers;
+import util.DbExecutor;
 import util.StatsUtil;
 
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Map;
 
 public class ReviewController {
-    private final CardDAO cardDAO = new CardDAO();
-    private final ReviewPlanDAO reviewPlanDAO = new ReviewPlanDAO();
-    private final ReviewStatisticDAO statDAO = new ReviewStatisticDAO();
+    private final ReviewPlanRepository reviewPlanDAO = Repositories.plans();
+    private final ReviewStatisticRepository statDAO = Repositories.stats();
+    private final Scheduler scheduler = Schedulers.current();
 
-    private List<ReviewPlan> todayPlans;
-    private int index = 0;
+    private DueQueue queue;     // due (and tomorrow's) plans + card texts, loaded once per session
+    private int current = -1;   // queue entry on screen
+    private int reviewed = 0;
     private int currentCardId;
 
     private boolean sessionStarted = false;
@@ -91,6 +99,18 @@ public class ReviewController {
     // for MainController to check
     public boolean isSessionRunning() { return sessionStarted; }
 
+    /** Pause the open session while plans are changed underneath it (bulk rescheduling); {@link #reload()} resumes */
+    public void suspend(String message) {
+        stopStopwatch(false);
+        disableAll(true);
+        questionLabel.setText(message);
+    }
+
+    /** Build the open session again from the database (after a bulk change of the plans) */
+    public void reload() {
+        if (sessionStarted) loadToday();
+    }
+
     /** Ask whether to start timing */
     public boolean confirmStartTimer() {
         Alert a = new Alert(Alert.AlertType.CONFIRMATION);
@@ -111,14 +131,43 @@ public class ReviewController {
 
     // -------------------- core flow --------------------
     private void loadToday() {
-        todayPlans = reviewPlanDAO.getTodayPlans();
-        if (todayPlans == null || todayPlans.isEmpty()) {
+        questionLabel.setText("Loading…");
+        disableAll(true);
+        DbExecutor.supplyAsync(() -> {
+            // ratings still waiting in the journal (DB slow or down) are laid over the loaded plans,
+            // so cards rated a moment ago do not come back as due with their old interval
+            ReviewWriteBehind wb = ReviewWriteBehind.get();
+            wb.flush(3000);
+            Map<Integer, ReviewPlan> pending = wb.pendingPlans();
+            // tomorrow's plans too, so a session running past midnight picks them up without a reload
+            ReviewSession loaded = reviewPlanDAO.loadSessionUntil(LocalDate.now().plusDays(1));
+            for (ReviewPlan p : loaded.getPlans()) {
+                ReviewPlan q = pending.get(p.getId());
+                if (q != null) copyState(q, p);
+            }
+            return loaded;
+        }).thenAccept(this::onSessionLoaded);
+    }
+
+    private static void copyState(ReviewPlan from, ReviewPlan to) {
+        to.setPlannedOn(from.getPlannedOn());
+        to.setReviewedOn(from.getReviewedOn());
+        to.setRating(from.getRating());
+        to.setIntervalDays(from.getIntervalDays());
+        to.setRepeats(from.getRepeats());
+        to.setEaseFactor(from.getEaseFactor());
+    }
+
+    private void onSessionLoaded(ReviewSession loaded) {
+        queue = new DueQueue(loaded);
+        reviewed = 0;
+        current = queue.peekDue();
+        if (current < 0) {
             questionLabel.setText("No cards for today 🎉");
             disableAll(true);
             return;
         }
         disableAll(false);
-        index = Math.min(index, todayPlans.size() - 1);
         showCurrent();
     }
 
@@ -139,12 +188,12 @@ public class ReviewController {
         // stop previous timer before switching
         stopStopwatch(false);
 
-        ReviewPlan rp = todayPlans.get(index);
+        ReviewPlan rp = queue.getPlan(current);
 
         this.currentCardId = rp.getCardId();
-        Card c = cardDAO.findById(currentCardId);
-        questionLabel.setText(c == null ? "(Card missing)" : c.getQuestion());
-        answerArea.setText(c == null ? "" : c.getAnswer());
+        String question = queue.getQuestion(current);
+        questionLabel.setText(question == null ? "(Card missing)" : question);
+        answerArea.setText(queue.getAnswer(current) == null ? "" : queue.getAnswer(current));
         answerArea.setScrollTop(0);
         toggleAnswer(false);
         updateProgress();
@@ -155,8 +204,8 @@ public class ReviewController {
     }
 
     private void updateProgress() {
-        if (progressLabel != null && todayPlans != null && !todayPlans.isEmpty()) {
-            progressLabel.setText((index + 1) + "/" + todayPlans.size());
+        if (progressLabel != null && queue != null) {
+            progressLabel.setText((reviewed + 1) + "/" + (reviewed + queue.dueCount()));
         }
     }
 
@@ -164,11 +213,17 @@ public class ReviewController {
         if (answerArea != null) answerArea.setVisible(show);
     }
 
+    /** Next = skip the card for now (it comes back after the other due cards), Prev = undo the last skip */
     private void navigate(int delta) {
-        if (todayPlans == null || todayPlans.isEmpty()) return;
+        if (queue == null || current < 0) return;
+        if (delta > 0) {
+            queue.skip(current);
+        } else if (queue.unskip() < 0) {
+            return;
+        }
         // switch card: stop timer only
         stopStopwatch(false);
-        index = (index + delta + todayPlans.size()) % todayPlans.size();
+        current = queue.peekDue();
         showCurrent();
     }
 
@@ -176,26 +231,39 @@ public class ReviewController {
         // stop timer and get effective duration (pause excluded)
         int durationMs = stopStopwatch(true);
 
-        final ReviewPlan cur = todayPlans.get(index);
+        final ReviewPlan cur = queue.getPlan(current);
         final int r = Math.max(0, Math.min(5, rating));
         cur.setRating(r);
 
         final boolean correct = (correctCheck != null && correctCheck.isSelected());
         final String notes = (notesArea != null) ? notesArea.getText() : null;
 
-        // write statistic
-        statDAO.insertReviewStatistic(new ReviewStatistic(
-                null, currentCardId, LocalDateTime.now(), durationMs, correct, r, notes
-        ));
-
         // compute next schedule
         if (cur.getIntervalDays() == null) cur.setIntervalDays(1);
-        SM2.calculateNext(cur);
-        reviewPlanDAO.updatePlanAfterReview(cur, r);
+        scheduler.next(cur);
+        cur.setReviewedOn(LocalDate.now()); // a second review this session measures elapsed time from now
+        queue.reschedule(current);
+        reviewed++;
+
+        // statistic + plan update go through the local journal; the DB write happens in the background
+        try {
+            ReviewWriteBehind.get().submit(new ReviewStatistic(
+                    null, currentCardId, LocalDateTime.now(), durationMs, correct, r, notes
+            ), cur);
+        } catch (UncheckedIOException e) {
+            // nothing can be recorded: stop instead of letting the user rate into the void
+            e.printStackTrace();
+            finishSession();
+            questionLabel.setText("Review stopped: ratings cannot be saved");
+            Alert a = new Alert(Alert.AlertType.ERROR, e.getMessage());
+            a.setHeaderText("Rating not saved");
+            a.showAndWait();
+            return;
+        }
 
-        // next or finish
-        if (index + 1 < todayPlans.size()) {
-            index++;
+        // most overdue remaining card next, or finish
+        current = queue.peekDue();
+        if (current >= 0) {
             clearReviewInputs();
             showCurrent();
         } else {
@@ -216,15 +284,17 @@ public class ReviewController {
     }
 
     private void refreshStatsView(int cardId) {
-        int count = statDAO.countByCard(cardId);
-        double avgDur = statDAO.avgDurationMsByCard(cardId);
-        double avgRating = statDAO.avgRatingByCard(cardId);
-        double correctRate = statDAO.correctRateByCard(cardId);
-
-        if (repetitionsLabel != null) repetitionsLabel.setText(String.valueOf(count));
-        if (avgDurLabel != null) avgDurLabel.setText(StatsUtil.prettyDuration((int) Math.round(avgDur)));
-        if (avgRatingLabel != null) avgRatingLabel.setText(String.format("%.2f", avgRating));
-        if (correctRateLabel != null) correctRateLabel.setText(String.format("%.0f%%", correctRate * 100));
+        // one cached lookup instead of 4 aggregates; ignore the answer if the user moved on meanwhile
+        statDAO.statsByCardAsync(cardId).thenAccept(cs -> {
+            if (cs.getCardId() == currentCardId) showStats(cs);
+        });
+    }
+
+    private void showStats(CardStats cs) {
+        if (repetitionsLabel != null) repetitionsLabel.setText(String.valueOf(cs.getCount()));
+        if (avgDurLabel != null) avgDurLabel.setText(StatsUtil.prettyDuration((int) Math.round(cs.getAvgDurationMs())));
+        if (avgRatingLabel != null) avgRatingLabel.setText(String.format("%.2f", cs.getAvgRating()));
+        if (correctRateLabel != null) correctRateLabel.setText(String.format("%.0f%%", cs.getCorrectRate() * 100));
     }
 
     // -------------------- timer: start/pause/resume/stop --------------------
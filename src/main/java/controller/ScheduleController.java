@@ -0,0 +1,149 @@
+package controller;
+
+import dao.Repositories;
+import dao.ReviewPlanRepository;
+import dao.ReviewWriteBehind;
+import javafx.fxml.FXML;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import model.SchedulePreview;
+import util.DbExecutor;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.NavigableMap;
+import java.util.function.IntSupplier;
+
+/** Bulk rescheduling (vacation shift, spreading overdue cards) with a per-day load preview */
+public class ScheduleController {
+    private static final int MIN_HORIZON = 30;
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("MM-dd");
+    private static final long FLUSH_TIMEOUT_MS = 5000;
+
+    @FXML private Spinner<Integer> shiftDays;
+    @FXML private Spinner<Integer> spreadDays;
+    @FXML private BarChart<String, Number> loadChart;
+    @FXML private Label status;
+
+    private final ReviewPlanRepository planDAO = Repositories.plans();
+    private NavigableMap<LocalDate, Integer> load; // planned_on histogram, refreshed after every change
+    private ReviewController review;               // its open session is paused and reloaded around a change
+
+    /** Set by MainController: a running review session must not keep serving the plans from before a change */
+    public void setReviewController(ReviewController review) { this.review = review; }
+
+    @FXML
+    public void initialize() {
+        onRefresh();
+    }
+
+    @FXML
+    private void onRefresh() {
+        refresh("");
+    }
+
+    private void refresh(String prefix) {
+        status.setText(prefix + "Loading…");
+        planDAO.loadByDayAsync().thenAccept(l -> {
+            load = l;
+            LocalDate today = LocalDate.now();
+            int[] now = SchedulePreview.current(load, today, MIN_HORIZON);
+            int overdue = 0;
+            for (int c : load.headMap(today, false).values()) overdue += c;
+            status.setText(prefix + overdue + " overdue, " + now[0] + " due today (incl. overdue)");
+            show(now, null, null);
+        });
+    }
+
+    @FXML
+    private void onPreviewShift() {
+        if (load == null) return;
+        int days = shiftDays.getValue();
+        LocalDate today = LocalDate.now();
+        int horizon = Math.max(MIN_HORIZON, Math.abs(days) + 7);
+        show(SchedulePreview.current(load, today, horizon),
+                SchedulePreview.afterShift(load, days, today, horizon), "After shift by " + days + " days");
+    }
+
+    @FXML
+    private void onPreviewSpread() {
+        if (load == null) return;
+        int days = spreadDays.getValue();
+        LocalDate today = LocalDate.now();
+        int horizon = Math.max(MIN_HORIZON, days + 7);
+        show(SchedulePreview.current(load, today, horizon),
+                SchedulePreview.afterSpread(load, days, today, horizon), "After spreading over " + days + " days");
+    }
+
+    @FXML
+    private void onApplyShift() {
+        int days = shiftDays.getValue();
+        if (!confirm("Move every review plan by " + days + " days?")) return;
+        onPreviewShift();
+        status.setText("Shifting…");
+        apply(() -> planDAO.shiftAll(days), "shifted");
+    }
+
+    @FXML
+    private void onApplySpread() {
+        int days = spreadDays.getValue();
+        if (!confirm("Spread all overdue cards over the next " + days + " days?")) return;
+        onPreviewSpread();
+        status.setText("Spreading…");
+        apply(() -> planDAO.spreadOverdue(days), "moved");
+    }
+
+    /**
+     * Run a bulk UPDATE once the journal is drained (its plan updates would otherwise be written afterwards
+     * and undo the change), with the review session paused meanwhile and reloaded afterwards.
+     */
+    private void apply(IntSupplier change, String what) {
+        boolean session = review != null && review.isSessionRunning();
+        if (session) review.suspend("Rescheduling…");
+        DbExecutor.supplyAsync(() -> ReviewWriteBehind.get().flush(FLUSH_TIMEOUT_MS) ? change.getAsInt() : null)
+                .whenComplete((n, ex) -> {
+                    if (session) review.reload();
+                    if (ex != null) {
+                        status.setText("Rescheduling failed: " + ex.getMessage());
+                    } else if (n == null) {
+                        status.setText("Nothing changed: " + ReviewWriteBehind.get().pendingCount()
+                                + " ratings are not in the database yet, try again when it is reachable");
+                    } else {
+                        done(n, what);
+                    }
+                });
+    }
+
+    private void done(int n, String what) {
+        if (n < 0) {
+            status.setText("Rescheduling failed");
+            return;
+        }
+        refresh(n + " plans " + what + "; ");
+    }
+
+    private void show(int[] now, int[] after, String afterName) {
+        LocalDate today = LocalDate.now();
+        XYChart.Series<String, Number> cur = new XYChart.Series<>();
+        cur.setName("Now");
+        XYChart.Series<String, Number> next = new XYChart.Series<>();
+        next.setName(afterName);
+        for (int d = 0; d < now.length; d++) {
+            String label = d == 0 ? "today" : today.plusDays(d).format(DAY);
+            cur.getData().add(new XYChart.Data<>(label, now[d]));
+            if (after != null) next.getData().add(new XYChart.Data<>(label, after[d]));
+        }
+        loadChart.getData().clear();
+        loadChart.getData().add(cur);
+        if (after != null) loadChart.getData().add(next);
+    }
+
+    private static boolean confirm(String text) {
+        return new Alert(Alert.AlertType.CONFIRMATION, text, ButtonType.OK, ButtonType.CANCEL)
+                .showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
+    }
+}
@@ -1,7 +1,8 @@
 package controller;
 
-import dao.CardDAO;
-import dao.ReviewStatisticDAO;
+import dao.Repositories;
+import dao.ReviewStatisticRepository;
+import dao.ReviewWriteBehind;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -10,21 +11,22 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import model.Card;
+import model.CardStats;
+import model.ReviewPlan;
 import model.ReviewStatistic;
+import util.DbExecutor;
 import util.StatsUtil;
+import util.TrendSeries;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 public class StatsController {
 
     // Smoothing window (=1 means no smoothing)
     private static final int MA_WINDOW = 2;
-    // Fixed review count ticks: 0..10
-    private static final int X_MAX_REPS = 10;
-    // Time axis upper bound (seconds)
-    private static final double TIME_MAX_SECS = 100;
+    // Points per trend line; longer histories are downsampled (LTTB)
+    private static final int POINT_BUDGET = 300;
 
     // UI
     @FXML private Button refreshBtn;
@@ -40,11 +42,28 @@ public class StatsController {
     @FXML private LineChart<Number, Number> timeChart;
 
     // DAO
-    private final CardDAO cardDAO = new CardDAO();
-    private final ReviewStatisticDAO statDAO = new ReviewStatisticDAO();
+    private final ReviewStatisticRepository statDAO = Repositories.stats();
 
     private final ObservableList<Row> data = FXCollections.observableArrayList();
 
+    // Trend lines of the card shown in the charts, extended on each new rating of that card
+    private int trendCardId = -1;
+    private TrendSeries ratingTrend;
+    private TrendSeries timeTrend;
+    private final XYChart.Series<Number, Number> ratingSeries = new XYChart.Series<>();
+    private final XYChart.Series<Number, Number> timeSeries = new XYChart.Series<>();
+
+    /** Both trend lines of one card, built off the FX thread */
+    private static final class Trends {
+        final TrendSeries rating;
+        final TrendSeries time;
+
+        Trends(TrendSeries rating, TrendSeries time) {
+            this.rating = rating;
+            this.time = time;
+        }
+    }
+
     @FXML
     public void initialize() {
         // Table bindings
@@ -75,87 +94,115 @@ public class StatsController {
         yRating.setTickUnit(1);
         yRating.setLabel("Rating (0–5)");
 
-        // Time chart Y axis: 0~TIME_MAX_SECS seconds
+        // Time chart Y axis: scales with the slowest answers
         NumberAxis yTime = (NumberAxis) timeChart.getYAxis();
-        yTime.setAutoRanging(false);
-        yTime.setLowerBound(0);
-        yTime.setUpperBound(TIME_MAX_SECS);
-        yTime.setTickUnit(10);
+        yTime.setAutoRanging(true);
         yTime.setLabel("Time (s)");
 
-        // Lock X axis to 0..10 for both charts
+        // X axis covers the whole history
         configXAxis(ratingChart);
         configXAxis(timeChart);
 
+        ratingSeries.setName("Rating (MA)");
+        timeSeries.setName("Time (s, MA)");
+        ReviewWriteBehind.addListener(this::onReviewed);
+
         loadTable(); // initial load
         // refreshBtn.setOnAction(e -> loadTable()); // uncomment if you wire a refresh action
     }
 
     private void loadTable() {
+        // one query for the whole deck, off the FX thread
+        statDAO.findAllCardStatsAsync().thenAccept(this::fillTable);
+    }
+
+    private void fillTable(List<CardStats> stats) {
         data.clear();
-        List<Card> cards = cardDAO.findAll();
-        for (Card c : cards) {
-            int reps = statDAO.countByCard(c.getId());
-            double avgDurMs = statDAO.avgDurationMsByCard(c.getId());
-            double avgRating = statDAO.avgRatingByCard(c.getId());
-            double correctRate = statDAO.correctRateByCard(c.getId());
-
-            String avgTimeText = StatsUtil.prettyDuration((int) Math.round(avgDurMs));
-            String avgRatingText = String.format("%.2f", avgRating);
-            String correctText = String.format("%.0f%%", correctRate * 100);
-
-            data.add(new Row(c.getId(), c.getQuestion(), reps, avgTimeText, avgRatingText, correctText));
+        for (CardStats cs : stats) {
+            String avgTimeText = StatsUtil.prettyDuration((int) Math.round(cs.getAvgDurationMs()));
+            String avgRatingText = String.format("%.2f", cs.getAvgRating());
+            String correctText = String.format("%.0f%%", cs.getCorrectRate() * 100);
+
+            data.add(new Row(cs.getCardId(), cs.getQuestion(), cs.getCount(), avgTimeText, avgRatingText, correctText));
         }
 
         // Clear charts to avoid stale curves
-        ratingChart.getData().clear();
-        timeChart.getData().clear();
+        clearTrends();
     }
 
     private void showTrends(int cardId) {
-        List<ReviewStatistic> listAsc = statDAO.findByCardAsc(cardId);
-        if (listAsc.isEmpty()) {
-            ratingChart.getData().clear();
-            timeChart.getData().clear();
-            return;
-        }
-
-        // Ensure X axis stays fixed 0..10
-        configXAxis(ratingChart);
-        configXAxis(timeChart);
+        trendCardId = cardId;
+        DbExecutor.supplyAsync(() -> trendsOf(statDAO.findByCardAsc(cardId))).thenAccept(t -> {
+            if (cardId == trendCardId) renderTrends(t);
+        });
+    }
 
-        // rating + MA
-        double[] ratings = listAsc.stream().mapToDouble(ReviewStatistic::getRating).toArray();
-        double[] ratingMA = StatsUtil.movingAverage(ratings, MA_WINDOW);
+    // Runs on the DB thread: only the downsampled points reach the FX thread
+    private static Trends trendsOf(List<ReviewStatistic> listAsc) {
+        double[] ratings = new double[listAsc.size()];
+        double[] secs = new double[listAsc.size()];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = listAsc.get(i).getRating();
+            secs[i] = listAsc.get(i).getDurationMs() / 1000.0;
+        }
+        return new Trends(TrendSeries.of(ratings, MA_WINDOW, POINT_BUDGET), TrendSeries.of(secs, MA_WINDOW, POINT_BUDGET));
+    }
 
-        XYChart.Series<Number, Number> sRating = new XYChart.Series<>();
-        sRating.setName("Rating (MA)");
-        for (int i = 0; i < ratingMA.length; i++) {
-            sRating.getData().add(new XYChart.Data<>(i + 1, ratingMA[i])); // first review at x=1
+    private void renderTrends(Trends t) {
+        if (t.rating.size() == 0) {
+            clearTrends();
+            return;
         }
-        ratingChart.getData().setAll(Collections.singletonList(sRating));
+        ratingTrend = t.rating;
+        timeTrend = t.time;
+        sync(ratingSeries, ratingTrend, 0);
+        sync(timeSeries, timeTrend, 0);
+        if (ratingChart.getData().isEmpty()) ratingChart.getData().add(ratingSeries);
+        if (timeChart.getData().isEmpty()) timeChart.getData().add(timeSeries);
+    }
 
-        // time(s) + MA
-        double[] secs = listAsc.stream().mapToDouble(w -> w.getDurationMs() / 1000.0).toArray();
-        double[] secsMA = StatsUtil.movingAverage(secs, MA_WINDOW);
+    /** New rating: extend the shown card's lines, touching only the points that moved */
+    private void onReviewed(ReviewStatistic s, ReviewPlan plan) {
+        if (s.getCardId() != trendCardId || ratingTrend == null) return;
+        sync(ratingSeries, ratingTrend, ratingTrend.add(s.getRating()));
+        sync(timeSeries, timeTrend, timeTrend.add(s.getDurationMs() / 1000.0));
+    }
 
-        XYChart.Series<Number, Number> sTime = new XYChart.Series<>();
-        sTime.setName("Time (s, MA)");
-        for (int i = 0; i < secsMA.length; i++) {
-            sTime.getData().add(new XYChart.Data<>(i + 1, secsMA[i]));
+    private static void sync(XYChart.Series<Number, Number> series, TrendSeries trend, int from) {
+        ObservableList<XYChart.Data<Number, Number>> d = series.getData();
+        if (from == 0) {
+            List<XYChart.Data<Number, Number>> all = new ArrayList<>(trend.points());
+            for (int i = 0; i < trend.points(); i++) all.add(new XYChart.Data<>(trend.x(i), trend.y(i)));
+            d.setAll(all);
+            return;
+        }
+        for (int i = from; i < trend.points(); i++) {
+            if (i < d.size()) {
+                d.get(i).setXValue(trend.x(i));
+                d.get(i).setYValue(trend.y(i));
+            } else {
+                d.add(new XYChart.Data<>(trend.x(i), trend.y(i)));
+            }
         }
-        timeChart.getData().setAll(Collections.singletonList(sTime));
+        if (d.size() > trend.points()) d.remove(trend.points(), d.size());
+    }
+
+    private void clearTrends() {
+        ratingTrend = null;
+        timeTrend = null;
+        ratingSeries.getData().clear();
+        timeSeries.getData().clear();
+        ratingChart.getData().clear();
+        timeChart.getData().clear();
     }
 
-    // Fix X axis to 0..10, step 1
+    // X axis follows the history length (review #1 .. latest)
     private void configXAxis(LineChart<Number, Number> chart) {
         NumberAxis x = (NumberAxis) chart.getXAxis();
-        x.setAutoRanging(false);
-        x.setLowerBound(0);
-        x.setUpperBound(X_MAX_REPS); // lock to 10
-        x.setTickUnit(1);            // 0,1,2,...,10
+        x.setAutoRanging(true);
+        x.setForceZeroInRange(false);
         x.setMinorTickCount(0);
-        x.setLabel("Reviews (0–" + X_MAX_REPS + ")");
+        x.setLabel("Review #");
     }
 
     // Simple immutable row bean
@@ -1,15 +1,19 @@
 package dao;
 
 import model.Card;
+import model.CardSummary;
 import util.DB;
 
 import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class CardDAO {
+/** MySQL implementation of {@link CardRepository} */
+public class CardDAO implements CardRepository {
     private final DataSource ds = DB.getDataSource();
 
     public List<Card> findAll() {
@@ -30,6 +34,85 @@ public class CardDAO {
         return list;
     }
 
+    /** Characters of the question kept in {@link CardSummary} rows */
+    public static final int QUESTION_PREVIEW = 200;
+
+    /** Keyset page, newest first: cards with id < beforeId (pass Integer.MAX_VALUE for the first page) */
+    public List<CardSummary> findPageBefore(int beforeId, int limit) {
+        String sql = "SELECT id, LEFT(question, " + QUESTION_PREVIEW + ") AS question, created_at " +
+                "FROM card WHERE id < ? ORDER BY id DESC LIMIT ?";
+        return findPage(sql, beforeId, limit);
+    }
+
+    /** Keyset page in ascending id order: cards with id > afterId (used when scrolling back up) */
+    public List<CardSummary> findPageAfter(int afterId, int limit) {
+        String sql = "SELECT id, LEFT(question, " + QUESTION_PREVIEW + ") AS question, created_at " +
+                "FROM card WHERE id > ? ORDER BY id ASC LIMIT ?";
+        return findPage(sql, afterId, limit);
+    }
+
+    private List<CardSummary> findPage(String sql, int keyId, int limit) {
+        List<CardSummary> list = new ArrayList<>(limit);
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, keyId);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(new CardSummary(
+                            rs.getInt("id"),
+                            rs.getString("question"),
+                            rs.getDate("created_at").toLocalDate()));
+                }
+            }
+        } catch (Exception e) { e.printStackTrace(); }
+        return list;
+    }
+
+    /** Summaries of the given cards in the order of the ids (missing ids are skipped); for search results */
+    public List<CardSummary> findSummaries(int[] ids) {
+        List<CardSummary> list = new ArrayList<>(ids.length);
+        if (ids.length == 0) return list;
+        StringBuilder sql = new StringBuilder("SELECT id, LEFT(question, " + QUESTION_PREVIEW + ") AS question, created_at " +
+                "FROM card WHERE id IN (");
+        for (int i = 0; i < ids.length; i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        Map<Integer, CardSummary> byId = new HashMap<>();
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.length; i++) ps.setInt(i + 1, ids[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    byId.put(rs.getInt("id"), new CardSummary(
+                            rs.getInt("id"),
+                            rs.getString("question"),
+                            rs.getDate("created_at").toLocalDate()));
+                }
+            }
+        } catch (Exception e) { e.printStackTrace(); }
+        for (int id : ids) {
+            CardSummary s = byId.get(id);
+            if (s != null) list.add(s);
+        }
+        return list;
+    }
+
+    /** Stream every card in ascending id order (for the search index) */
+    public int forEachCard(CardVisitor visitor) {
+        String sql = "SELECT id, question, answer FROM card ORDER BY id";
+        int n = 0;
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(rs.getInt(1), rs.getString(2), rs.getString(3));
+                    n++;
+                }
+            }
+            return n;
+        } catch (Exception e) { e.printStackTrace(); }
+        return -1;
+    }
+
     public Card findById(int id) {
         String sql = "SELECT id, question, answer, created_at FROM card WHERE id=?";
         try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
@@ -57,7 +140,11 @@ public class CardDAO {
             ps.setDate(3, Date.valueOf(k.getCreatedAt() == null ? LocalDate.now() : k.getCreatedAt()));
             ps.executeUpdate();
             try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
+                if (rs.next()) {
+                    int id = rs.getInt(1);
+                    CardSearch.get().cardSaved(id, k.getQuestion(), k.getAnswer());
+                    return id;
+                }
             }
         } catch (Exception e) { e.printStackTrace(); }
         return -1;
@@ -70,7 +157,9 @@ public class CardDAO {
             ps.setString(2, k.getAnswer());
             ps.setDate(3, Date.valueOf(k.getCreatedAt()));
             ps.setInt(4, k.getId());
-            return ps.executeUpdate() == 1;
+            boolean updated = ps.executeUpdate() == 1;
+            if (updated) CardSearch.get().cardSaved(k.getId(), k.getQuestion(), k.getAnswer());
+            return updated;
         } catch (Exception e) { e.printStackTrace(); }
         return false;
     }
@@ -79,9 +168,21 @@ public class CardDAO {
         String sql = "DELETE FROM card WHERE id=?";
         try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, id);
-            return ps.executeUpdate() == 1;
+            boolean deleted = ps.executeUpdate() == 1;
+            // FK cascade drops the card's statistics, so drop the cached snapshot too
+            ReviewStatisticDAO.cache().evict(id);
+            DeckAnalyticsCache.get().invalidate();
+            if (deleted) CardSearch.get().cardDeleted(id);
+            return deleted;
         } catch (Exception e) { e.printStackTrace(); }
         return false;
     }
-}
 
+    public int countCards() throws SQLException {
+        try (Connection c = ds.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM card")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package dao;
+
+import model.Card;
+import model.CardSummary;
+import util.DbExecutor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Card storage; implemented by {@link CardDAO} (MySQL) and {@link EmbeddedStore} */
+public interface CardRepository {
+    List<Card> findAll();
+
+    /** Keyset page, newest first: cards with id < beforeId (pass Integer.MAX_VALUE for the first page) */
+    List<CardSummary> findPageBefore(int beforeId, int limit);
+
+    /** Keyset page in ascending id order: cards with id > afterId */
+    List<CardSummary> findPageAfter(int afterId, int limit);
+
+    Card findById(int id);
+
+    /** @return generated id, or -1 on failure */
+    int insertCard(Card k);
+
+    boolean updateCard(Card k);
+
+    /** Delete the card together with its plans and review logs */
+    boolean deleteById(int id);
+
+    /** @throws Exception if the backend cannot be read (unlike most lookups, this is not reported as 0) */
+    int countCards() throws Exception;
+
+    /** Summaries of the given cards in the order of the ids (missing ids are skipped); for search results */
+    List<CardSummary> findSummaries(int[] ids);
+
+    /** Receives one card for the search index */
+    interface CardVisitor {
+        void visit(int id, String question, String answer);
+    }
+
+    /**
+     * Stream every card in ascending id order.
+     * @return cards visited, -1 on failure
+     */
+    int forEachCard(CardVisitor visitor);
+
+    // ---- async variants: run on DbExecutor, complete on the FX thread ----
+    default CompletableFuture<List<Card>> findAllAsync() { return DbExecutor.supplyAsync(this::findAll); }
+    default CompletableFuture<List<CardSummary>> findPageBeforeAsync(int beforeId, int limit) {
+        return DbExecutor.supplyAsync(() -> findPageBefore(beforeId, limit));
+    }
+    default CompletableFuture<List<CardSummary>> findPageAfterAsync(int afterId, int limit) {
+        return DbExecutor.supplyAsync(() -> findPageAfter(afterId, limit));
+    }
+    default CompletableFuture<List<CardSummary>> findSummariesAsync(int[] ids) {
+        return DbExecutor.supplyAsync(() -> findSummaries(ids));
+    }
+    default CompletableFuture<Card> findByIdAsync(int id) { return DbExecutor.supplyAsync(() -> findById(id)); }
+    default CompletableFuture<Integer> insertCardAsync(Card k) { return DbExecutor.supplyAsync(() -> insertCard(k)); }
+    default CompletableFuture<Boolean> updateCardAsync(Card k) { return DbExecutor.supplyAsync(() -> updateCard(k)); }
+    default CompletableFuture<Boolean> deleteByIdAsync(int id) { return DbExecutor.supplyAsync(() -> deleteById(id)); }
+}
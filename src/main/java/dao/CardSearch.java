@@ -0,0 +1,164 @@
+package dao;
+
+import model.CardSummary;
+import util.CardIndex;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The search index of the running app ({@link CardIndex}).
+ * {@link #start()} loads the index saved on the last exit (~/.srsfx/card-index-*.bin) if it was saved for a
+ * deck with the same card count and highest card id, and otherwise builds it from all cards in parallel.
+ * The card repositories report every insert, update and delete, so it stays current; changes made while a
+ * build runs are replayed onto the new index. Bulk imports and merges call {@link #rebuild()}.
+ */
+public final class CardSearch {
+    private static CardSearch instance;
+
+    private final Path file;
+    private volatile CardIndex index;                // null until the first load/build is done
+    private volatile boolean failed;                 // the last load/build failed and there is no index
+    private boolean building;
+    private final List<Runnable> missed = new ArrayList<>(); // changes made during a build
+    private boolean saved;
+
+    private CardSearch(Path file) {
+        this.file = file;
+    }
+
+    public static synchronized CardSearch get() {
+        if (instance == null) {
+            String backend = Repositories.isEmbedded() ? "embedded" : "mysql";
+            instance = new CardSearch(Paths.get(System.getProperty("user.home"), ".srsfx", "card-index-" + backend + ".bin"));
+        }
+        return instance;
+    }
+
+    /** Save the index if one was started (app exit); call before Repositories.shutdown() */
+    public static void shutdownIfStarted() {
+        CardSearch s;
+        synchronized (CardSearch.class) {
+            s = instance;
+        }
+        if (s != null) s.save();
+    }
+
+    /** Load or build the index on a background thread (startup) */
+    public void start() {
+        synchronized (this) {
+            if (index != null || building) return;
+            building = true;
+            failed = false;
+        }
+        Thread t = new Thread(() -> build(true), "card-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Build again from the database, e.g. after an import replaced the cards; the old index answers meanwhile */
+    public void rebuild() {
+        synchronized (this) {
+            if (building) return; // the running build reads the new rows or gets them replayed
+            building = true;
+            failed = false;
+        }
+        Thread t = new Thread(() -> build(false), "card-index");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public boolean isReady() { return index != null; }
+
+    /** True when there is no index because loading and building it failed ({@link #rebuild()} tries again) */
+    public boolean isFailed() { return failed; }
+
+    /** @return null while the index is not ready yet (or failed) */
+    public CardIndex.Hits search(String query, int limit) {
+        CardIndex i = index;
+        return i == null ? null : i.search(query, limit);
+    }
+
+    /** A card was inserted or updated (called by the repositories) */
+    public void cardSaved(int id, String question, String answer) {
+        change(i -> i.put(id, question, answer));
+    }
+
+    /** A card was deleted (called by the repositories) */
+    public void cardDeleted(int id) {
+        change(i -> i.remove(id));
+    }
+
+    private interface Change {
+        void apply(CardIndex index);
+    }
+
+    private void change(Change c) {
+        CardIndex i;
+        synchronized (this) {
+            saved = false;
+            if (building) {
+                missed.add(() -> c.apply(index));
+            }
+            i = index;
+        }
+        if (i != null) c.apply(i);
+    }
+
+    private void build(boolean tryLoad) {
+        CardIndex built = null;
+        try {
+            CardRepository cards = Repositories.cards();
+            long fingerprint = fingerprint(cards);
+            if (tryLoad) {
+                built = CardIndex.load(file, fingerprint);
+                // a crash would leave the file behind while the deck changes; exit saves it again
+                if (built != null) Files.deleteIfExists(file);
+            }
+            if (built == null) {
+                CardIndex.Builder b = new CardIndex.Builder(Runtime.getRuntime().availableProcessors());
+                if (cards.forEachCard(b::addCard) < 0) throw new IllegalStateException("card scan failed");
+                built = b.finish();
+            }
+        } catch (Exception e) {
+            System.err.println("Card index not available: " + e);
+        } finally {
+            synchronized (this) {
+                if (built != null) {
+                    index = built;
+                    for (Runnable r : missed) r.run();
+                    saved = false;
+                }
+                failed = index == null;
+                missed.clear();
+                building = false;
+            }
+        }
+    }
+
+    private void save() {
+        CardIndex i;
+        synchronized (this) {
+            if (saved || building) return;
+            i = index;
+            saved = true;
+        }
+        if (i == null) return;
+        try {
+            Files.createDirectories(file.getParent());
+            i.save(file, fingerprint(Repositories.cards()));
+        } catch (Exception e) {
+            System.err.println("Card index not saved: " + e);
+        }
+    }
+
+    /** Card count and highest card id: cheap to read, and changed by nearly every import */
+    private static long fingerprint(CardRepository cards) throws Exception {
+        List<CardSummary> newest = cards.findPageBefore(Integer.MAX_VALUE, 1);
+        int maxId = newest.isEmpty() ? 0 : newest.get(0).getId();
+        return ((long) cards.countCards() << 32) | (maxId & 0xFFFFFFFFL);
+    }
+}
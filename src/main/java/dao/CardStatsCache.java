@@ -0,0 +1,57 @@
+package dao;
+
+import model.CardStats;
+import model.ReviewStatistic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of per-card stats snapshots in front of review_statistic.
+ * All access goes through the instance lock, so it is safe to share between controllers and threads.
+ */
+public class CardStatsCache {
+    private final int capacity;
+    private final LinkedHashMap<Integer, CardStats> map;
+    private long hits;
+    private long misses;
+
+    public CardStatsCache(int capacity) {
+        this.capacity = capacity;
+        // access order -> eldest entry is the least recently used one
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Integer, CardStats> eldest) {
+                return size() > CardStatsCache.this.capacity;
+            }
+        };
+    }
+
+    /** Snapshot of the card, or null on a miss */
+    public synchronized CardStats get(int cardId) {
+        CardStats cs = map.get(cardId);
+        if (cs == null) misses++; else hits++;
+        return cs;
+    }
+
+    public synchronized void put(CardStats cs) {
+        map.put(cs.getCardId(), cs.withoutQuestion());
+    }
+
+    public synchronized void putAll(Iterable<CardStats> all) {
+        for (CardStats cs : all) map.put(cs.getCardId(), cs.withoutQuestion());
+    }
+
+    /** Fold a freshly written review into the cached snapshot (no-op if the card is not cached). */
+    public synchronized void apply(ReviewStatistic s) {
+        map.computeIfPresent(s.getCardId(), (id, cs) -> cs.plus(s));
+    }
+
+    public synchronized void evict(int cardId) { map.remove(cardId); }
+
+    public synchronized void clear() { map.clear(); }
+
+    public synchronized int size() { return map.size(); }
+    public int getCapacity() { return capacity; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+}
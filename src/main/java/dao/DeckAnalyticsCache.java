@@ -0,0 +1,128 @@
+package dao;
+
+import model.DeckAnalytics;
+import model.PlanStore;
+import model.ReviewPlan;
+import model.ReviewStatistic;
+import util.DB;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Today's {@link DeckAnalytics}, scanned at most once per day.
+ * New ratings are folded in as they are submitted (ReviewWriteBehind listener), so the result stays
+ * current without another pass; a new day, an import or a deleted card drops it and the next call scans again.
+ * Ratings made while a scan runs are held back and folded in once it is done: the scan only reads
+ * reviews from before its start. A scan that could not wait for the write-behind journal to drain is shown
+ * but not kept, because the pending ratings are neither in the DB nor replayed to the listener.
+ */
+public final class DeckAnalyticsCache {
+    private static final long FLUSH_TIMEOUT_MS = 5000;
+
+    private static DeckAnalyticsCache instance;
+
+    private final Object scanLock = new Object();  // one scan at a time; never held by apply()
+    private DeckAnalytics current;
+    private int generation;                        // bumped by invalidate(), so a scan started before is not kept
+    private LocalDateTime scanStart;               // non-null while a scan runs
+    private final List<Late> late = new ArrayList<>(); // ratings made during the scan
+
+    private static final class Late {
+        final ReviewStatistic stat;
+        final double ease;
+
+        Late(ReviewStatistic stat, double ease) {
+            this.stat = stat;
+            this.ease = ease;
+        }
+    }
+
+    private DeckAnalyticsCache() {}
+
+    public static synchronized DeckAnalyticsCache get() {
+        if (instance == null) {
+            instance = new DeckAnalyticsCache();
+            ReviewWriteBehind.addListener(instance::apply);
+        }
+        return instance;
+    }
+
+    /** Snapshot for today, scanning first if there is none. Blocks; call it on a DB worker */
+    public DeckAnalytics.Snapshot snapshot() {
+        long today = LocalDate.now().toEpochDay();
+        synchronized (this) {
+            if (current != null && current.getDay() == today) return current.snapshot();
+        }
+        synchronized (scanLock) {
+            synchronized (this) {
+                if (current != null && current.getDay() == today) return current.snapshot(); // another caller scanned
+            }
+            return scan(today);
+        }
+    }
+
+    /** Drop the result (import, restore, deleted card); the next snapshot() scans again */
+    public synchronized void invalidate() {
+        current = null;
+        generation++;
+    }
+
+    private DeckAnalytics.Snapshot scan(long today) {
+        // from here on ratings are held back, so none made during the flush falls between it and the scan
+        LocalDateTime start = LocalDateTime.now();
+        int gen;
+        synchronized (this) {
+            gen = generation;
+            scanStart = start;
+            late.clear();
+        }
+        DeckAnalytics result = null;
+        boolean complete = false;
+        try {
+            // older ratings still in the write-behind journal would be missed by the scan and not replayed to us
+            complete = ReviewWriteBehind.get().flush(FLUSH_TIMEOUT_MS);
+            if (!complete) {
+                System.err.println("Deck analytics: " + ReviewWriteBehind.get().pendingCount()
+                        + " ratings not yet in the DB; the scan is shown but not cached");
+            }
+            PlanStore plans = Repositories.plans().loadPlanStore();
+            ReviewStatisticRepository stats = Repositories.stats();
+            result = DeckAnalytics.compute(plans, today, parallelism(), (from, to, acc) ->
+                    stats.forEachReviewLog(from, to, start, acc::addReview) >= 0);
+        } finally {
+            synchronized (this) {
+                if (result != null) {
+                    for (Late r : late) fold(result, r.stat, r.ease);
+                    if (gen == generation && complete) current = result;
+                }
+                scanStart = null;
+                late.clear();
+            }
+        }
+        return result.snapshot();
+    }
+
+    /** ReviewWriteBehind listener (FX thread) */
+    private synchronized void apply(ReviewStatistic s, ReviewPlan plan) {
+        double ease = plan.getEaseFactor() == null ? 2.5 : plan.getEaseFactor();
+        if (scanStart != null) {
+            if (!s.getReviewedAt().isBefore(scanStart)) late.add(new Late(s, ease));
+        } else if (current != null) {
+            fold(current, s, ease);
+        }
+    }
+
+    private static void fold(DeckAnalytics a, ReviewStatistic s, double ease) {
+        a.apply(s.getCardId(), s.getReviewedAt().toLocalDate().toEpochDay(), s.getDurationMs(), s.getRating(), ease);
+    }
+
+    /** Concurrent range scans: each holds a connection, so leave half the pool to the rest of the app */
+    private static int parallelism() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (Repositories.isEmbedded()) return cores;
+        return Math.max(1, Math.min(cores, DB.getMaximumPoolSize() / 2));
+    }
+}
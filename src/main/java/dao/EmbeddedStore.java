@@ -0,0 +1,912 @@
+package dao;
+
+import model.Card;
+import model.CardStats;
+import model.CardSummary;
+import model.PlanStore;
+import model.ReviewPlan;
+import model.ReviewSession;
+import model.ReviewStatistic;
+import model.Schedulers;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded, server-less storage: every table lives in memory, every change is appended to one log file
+ * (~/.srsfx/store/srsfx.log by default) and replayed on startup. Records are length-prefixed and
+ * CRC-checked, and a multi-record change is framed as one record, so it is replayed whole or not at all.
+ * A torn record at the end (crash during a write) is cut off on open and kept in srsfx.log.tail;
+ * a bad record followed by more data is corruption, and open fails without touching the file.
+ * The due queue is an index planned_on -> plan ids, so loading a review session never scans all plans.
+ * The log is compacted on open once it holds much more history than live rows.
+ */
+public final class EmbeddedStore implements CardRepository, ReviewPlanRepository, ReviewStatisticRepository {
+    private static final String LOG_NAME = "srsfx.log";
+    private static final byte CARD_PUT = 1;
+    private static final byte CARD_DEL = 2;
+    private static final byte PLAN_PUT = 3;
+    private static final byte STAT_PUT = 4;
+    private static final byte BATCH = 5;     // count, then (length, record) per nested record
+    private static final int COMPACT_MIN_RECORDS = 10_000;
+
+    private final Path logFile;
+    private FileChannel log;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<Integer, Card> cards = new TreeMap<>();
+    private final Map<Integer, ReviewPlan> plans = new HashMap<>();
+    private final TreeMap<LocalDate, TreeSet<Integer>> due = new TreeMap<>();     // planned_on -> plan ids
+    private final Map<Integer, List<Integer>> plansByCard = new HashMap<>();
+    private final Map<Integer, List<ReviewStatistic>> statsByCard = new HashMap<>(); // reviewed_at order
+    private final Map<Integer, CardStats> totals = new HashMap<>();
+    private int nextCardId = 1, nextPlanId = 1, nextStatId = 1;
+    private long records;    // records in the log file (live + superseded)
+    private long statCount;
+
+    private EmbeddedStore(Path logFile) {
+        this.logFile = logFile;
+    }
+
+    /** Open (or create) the store in dir and replay its log */
+    public static EmbeddedStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        EmbeddedStore store = new EmbeddedStore(dir.resolve(LOG_NAME));
+        store.replay();
+        if (store.records > COMPACT_MIN_RECORDS && store.records > 2 * store.liveRecords()) store.compact();
+        store.log = FileChannel.open(store.logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        return store;
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (log != null) log.close();
+            log = null;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ===================== CardRepository =====================
+
+    @Override
+    public List<Card> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Card> list = new ArrayList<>(cards.size());
+            for (Card k : cards.descendingMap().values()) list.add(copyOf(k));
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CardSummary> findPageBefore(int beforeId, int limit) {
+        lock.readLock().lock();
+        try {
+            return page(cards.headMap(beforeId, false).descendingMap().values(), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CardSummary> findPageAfter(int afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            return page(cards.tailMap(afterId, false).values(), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<CardSummary> page(Collection<Card> range, int limit) {
+        List<CardSummary> list = new ArrayList<>(Math.min(limit, range.size()));
+        for (Card k : range) {
+            if (list.size() == limit) break;
+            String q = k.getQuestion();
+            if (q != null && q.length() > CardDAO.QUESTION_PREVIEW) q = q.substring(0, CardDAO.QUESTION_PREVIEW);
+            list.add(new CardSummary(k.getId(), q, k.getCreatedAt()));
+        }
+        return list;
+    }
+
+    @Override
+    public Card findById(int id) {
+        lock.readLock().lock();
+        try {
+            Card k = cards.get(id);
+            return k == null ? null : copyOf(k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int insertCard(Card k) {
+        lock.writeLock().lock();
+        try {
+            int id = nextCardId;
+            commit(List.of(cardPut(id, k.getQuestion(), k.getAnswer(),
+                    k.getCreatedAt() == null ? LocalDate.now() : k.getCreatedAt())));
+            CardSearch.get().cardSaved(id, k.getQuestion(), k.getAnswer());
+            return id;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateCard(Card k) {
+        lock.writeLock().lock();
+        try {
+            if (!cards.containsKey(k.getId())) return false;
+            commit(List.of(cardPut(k.getId(), k.getQuestion(), k.getAnswer(), k.getCreatedAt())));
+            CardSearch.get().cardSaved(k.getId(), k.getQuestion(), k.getAnswer());
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteById(int id) {
+        lock.writeLock().lock();
+        try {
+            if (!cards.containsKey(id)) return false;
+            commit(List.of(record(CARD_DEL, out -> out.writeInt(id))));
+            ReviewStatisticDAO.cache().evict(id);
+            DeckAnalyticsCache.get().invalidate();
+            CardSearch.get().cardDeleted(id);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int countCards() {
+        lock.readLock().lock();
+        try {
+            return cards.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CardSummary> findSummaries(int[] ids) {
+        lock.readLock().lock();
+        try {
+            List<Card> found = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Card k = cards.get(id);
+                if (k != null) found.add(k);
+            }
+            return page(found, found.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int forEachCard(CardVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (Card k : cards.values()) visitor.visit(k.getId(), k.getQuestion(), k.getAnswer());
+            return cards.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===================== ReviewPlanRepository =====================
+
+    @Override
+    public void generateFirstPlan(int cardId) {
+        lock.writeLock().lock();
+        try {
+            if (!cards.containsKey(cardId)) return;
+            ReviewPlan p = Schedulers.current().firstPlan(cardId);
+            p.setId(nextPlanId);
+            commit(List.of(planPut(p)));
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ReviewPlan> getTodayPlans() {
+        lock.readLock().lock();
+        try {
+            List<ReviewPlan> list = new ArrayList<>();
+            for (int id : dueIds(LocalDate.now())) list.add(copyOf(plans.get(id)));
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ReviewSession loadSessionUntil(LocalDate lastDay) {
+        lock.readLock().lock();
+        try {
+            List<ReviewPlan> list = new ArrayList<>();
+            List<String> questions = new ArrayList<>();
+            List<String> answers = new ArrayList<>();
+            for (int id : dueIds(lastDay)) {
+                ReviewPlan p = plans.get(id);
+                Card k = cards.get(p.getCardId());
+                if (k == null) continue;
+                list.add(copyOf(p));
+                questions.add(k.getQuestion());
+                answers.add(k.getAnswer());
+            }
+            return new ReviewSession(list, questions.toArray(new String[0]), answers.toArray(new String[0]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ids of all plans with planned_on <= lastDay, ascending */
+    private int[] dueIds(LocalDate lastDay) {
+        int n = 0;
+        NavigableMap<LocalDate, TreeSet<Integer>> head = due.headMap(lastDay, true);
+        for (TreeSet<Integer> ids : head.values()) n += ids.size();
+        int[] out = new int[n];
+        int i = 0;
+        for (TreeSet<Integer> ids : head.values()) {
+            for (int id : ids) out[i++] = id;
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    @Override
+    public void updatePlanAfterReview(ReviewPlan plan, int rating) {
+        ReviewPlan p = copyOf(plan);
+        p.setReviewedOn(LocalDate.now());
+        p.setRating(rating);
+        lock.writeLock().lock();
+        try {
+            List<byte[]> batch = new ArrayList<>(1);
+            addPlanUpdate(batch, p);
+            commit(batch);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int countDue() {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (TreeSet<Integer> ids : due.headMap(LocalDate.now(), true).values()) n += ids.size();
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public NavigableMap<LocalDate, Integer> loadByDay() {
+        lock.readLock().lock();
+        try {
+            NavigableMap<LocalDate, Integer> load = new TreeMap<>();
+            for (Map.Entry<LocalDate, TreeSet<Integer>> e : due.entrySet()) load.put(e.getKey(), e.getValue().size());
+            return load;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PlanStore loadPlanStore() {
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[plans.size()];
+            int i = 0;
+            for (int id : plans.keySet()) ids[i++] = id;
+            Arrays.sort(ids);
+            PlanStore store = new PlanStore(ids.length);
+            for (int id : ids) {
+                ReviewPlan p = plans.get(id);
+                store.add(id, p.getCardId(),
+                        PlanStore.epochDay(p.getPlannedOn() == null ? LocalDate.now() : p.getPlannedOn()),
+                        PlanStore.epochDay(p.getReviewedOn()),
+                        p.getRating() == null ? PlanStore.NONE : p.getRating(),
+                        p.getIntervalDays() == null ? 1 : p.getIntervalDays(),
+                        p.getRepeats() == null ? 0 : p.getRepeats(),
+                        p.getEaseFactor() == null ? 2.5 : p.getEaseFactor());
+            }
+            return store;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int savePlanStore(PlanStore store, int from, int to) {
+        lock.writeLock().lock();
+        try {
+            List<byte[]> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                if (plans.containsKey(store.id(i))) batch.add(planPut(store.toPlan(i)));
+            }
+            commit(batch);
+            return batch.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int shiftAll(int days) {
+        lock.writeLock().lock();
+        try {
+            List<byte[]> batch = new ArrayList<>(plans.size());
+            for (ReviewPlan cur : plans.values()) {
+                if (cur.getPlannedOn() == null) continue;
+                ReviewPlan p = copyOf(cur);
+                p.setPlannedOn(cur.getPlannedOn().plusDays(days));
+                batch.add(planPut(p));
+            }
+            commit(batch);
+            return batch.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Same ranking as ReviewPlanDAO.spreadOverdue */
+    @Override
+    public int spreadOverdue(int days) {
+        int k = Math.max(1, days);
+        LocalDate today = LocalDate.now();
+        lock.writeLock().lock();
+        try {
+            List<ReviewPlan> overdue = new ArrayList<>();
+            for (TreeSet<Integer> ids : due.headMap(today, false).values()) {
+                for (int id : ids) overdue.add(plans.get(id));
+            }
+            overdue.sort(Comparator.comparing(ReviewPlan::getPlannedOn)
+                    .thenComparingDouble(ReviewPlan::getEaseFactor)
+                    .thenComparingInt(ReviewPlan::getId));
+            List<byte[]> batch = new ArrayList<>(overdue.size());
+            int n = overdue.size();
+            for (int rn = 0; rn < n; rn++) {
+                ReviewPlan p = copyOf(overdue.get(rn));
+                p.setPlannedOn(today.plusDays((long) rn * k / n));
+                batch.add(planPut(p));
+            }
+            commit(batch);
+            return n;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Same columns as ReviewPlanDAO.updatePlansAfterReview; unknown plans are skipped */
+    private void addPlanUpdate(List<byte[]> batch, ReviewPlan src) throws IOException {
+        ReviewPlan cur = plans.get(src.getId());
+        if (cur == null) return;
+        ReviewPlan p = copyOf(cur);
+        LocalDate reviewedOn = src.getReviewedOn() == null ? LocalDate.now() : src.getReviewedOn();
+        p.setReviewedOn(reviewedOn);
+        p.setRating(src.getRating() == null ? 0 : src.getRating());
+        p.setIntervalDays(src.getIntervalDays());
+        p.setRepeats(src.getRepeats());
+        p.setEaseFactor(src.getEaseFactor());
+        p.setPlannedOn(reviewedOn.plusDays(src.getIntervalDays()));
+        batch.add(planPut(p));
+    }
+
+    // ===================== ReviewStatisticRepository =====================
+
+    @Override
+    public int insertReviewStatistic(ReviewStatistic s) {
+        lock.writeLock().lock();
+        try {
+            if (!cards.containsKey(s.getCardId())) return -1;
+            int id = nextStatId;
+            ReviewStatistic row = withId(s, id);
+            commit(List.of(statPut(row)));
+            ReviewStatisticDAO.cache().apply(row);
+            return id;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** One log write for the whole batch; ratings of cards deleted in the meantime are dropped */
+    @Override
+    public void recordReviews(List<ReviewStatistic> stats, List<ReviewPlan> plansToUpdate) throws IOException {
+        lock.writeLock().lock();
+        try {
+            List<byte[]> batch = new ArrayList<>(stats.size() + plansToUpdate.size());
+            int id = nextStatId;
+            for (ReviewStatistic s : stats) {
+                if (cards.containsKey(s.getCardId())) batch.add(statPut(withId(s, id++)));
+            }
+            for (ReviewPlan p : plansToUpdate) addPlanUpdate(batch, p);
+            commit(batch);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Totals are maintained on every write; this only recomputes them from the in-memory history */
+    @Override
+    public int rebuildCardStats() {
+        lock.writeLock().lock();
+        try {
+            totals.clear();
+            for (Map.Entry<Integer, List<ReviewStatistic>> e : statsByCard.entrySet()) {
+                CardStats cs = CardStats.empty(e.getKey());
+                for (ReviewStatistic s : e.getValue()) cs = cs.plus(s);
+                if (cs.getCount() > 0) totals.put(e.getKey(), cs);
+            }
+            ReviewStatisticDAO.cache().clear();
+            return totals.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CardStats statsByCard(int cardId) {
+        lock.readLock().lock();
+        try {
+            CardStats cs = totals.get(cardId);
+            return cs == null ? CardStats.empty(cardId) : cs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<CardStats> findAllCardStats() {
+        lock.readLock().lock();
+        try {
+            List<CardStats> list = new ArrayList<>(cards.size());
+            for (Card k : cards.descendingMap().values()) {
+                CardStats cs = totals.getOrDefault(k.getId(), CardStats.empty(k.getId()));
+                list.add(new CardStats(k.getId(), k.getQuestion(), cs.getCount(), cs.getSumDurationMs(),
+                        cs.getSumRating(), cs.getCorrectCount(), cs.getFirstReviewedAt(), cs.getLastReviewedAt()));
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ReviewStatistic> findByCardAsc(int cardId) {
+        lock.readLock().lock();
+        try {
+            List<ReviewStatistic> list = statsByCard.get(cardId);
+            return list == null ? new ArrayList<>() : new ArrayList<>(list);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int forEachRatingCount(RatingCountVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (Map.Entry<Integer, List<ReviewStatistic>> e : statsByCard.entrySet()) {
+                int[] counts = new int[6];
+                for (ReviewStatistic st : e.getValue()) {
+                    int r = st.getRating();
+                    if (r >= 0 && r < counts.length) counts[r]++;
+                }
+                for (int r = 0; r < counts.length; r++) {
+                    if (counts[r] == 0) continue;
+                    visitor.visit(e.getKey(), r, counts[r]);
+                    n++;
+                }
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int forEachReview(ReviewVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[statsByCard.size()];
+            int i = 0;
+            for (int id : statsByCard.keySet()) ids[i++] = id;
+            Arrays.sort(ids);
+            int n = 0;
+            for (int id : ids) {
+                for (ReviewStatistic st : statsByCard.get(id)) {
+                    if (st.getReviewedAt() == null) continue;
+                    visitor.visit(id, st.getReviewedAt().toLocalDate().toEpochDay(), st.getRating());
+                    n++;
+                }
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int forEachReviewLog(int fromCardId, int toCardId, LocalDateTime before, ReviewLogVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (int id : cards.subMap(fromCardId, toCardId).keySet()) {
+                List<ReviewStatistic> list = statsByCard.get(id);
+                if (list == null) continue;
+                for (ReviewStatistic st : list) {
+                    if (st.getReviewedAt() == null || !st.getReviewedAt().isBefore(before)) continue;
+                    visitor.visit(id, st.getReviewedAt().toLocalDate().toEpochDay(), st.getDurationMs(), st.getRating());
+                    n++;
+                }
+            }
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===================== log =====================
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] record(byte type, Body body) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeByte(type);
+        body.write(out);
+        return buf.toByteArray();
+    }
+
+    private static byte[] cardPut(int id, String question, String answer, LocalDate createdAt) throws IOException {
+        return record(CARD_PUT, out -> {
+            out.writeInt(id);
+            writeString(out, question);
+            writeString(out, answer);
+            writeDate(out, createdAt);
+        });
+    }
+
+    private static byte[] planPut(ReviewPlan p) throws IOException {
+        return record(PLAN_PUT, out -> {
+            out.writeInt(p.getId());
+            out.writeInt(p.getCardId());
+            writeDate(out, p.getPlannedOn());
+            writeDate(out, p.getReviewedOn());
+            out.writeInt(p.getRating() == null ? Integer.MIN_VALUE : p.getRating());
+            out.writeInt(p.getIntervalDays() == null ? 0 : p.getIntervalDays());
+            out.writeInt(p.getRepeats() == null ? 0 : p.getRepeats());
+            out.writeDouble(p.getEaseFactor() == null ? 0.0 : p.getEaseFactor());
+        });
+    }
+
+    private static byte[] statPut(ReviewStatistic s) throws IOException {
+        return record(STAT_PUT, out -> {
+            out.writeInt(s.getId());
+            out.writeInt(s.getCardId());
+            LocalDateTime at = s.getReviewedAt();
+            out.writeLong(at.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(at.getNano());
+            out.writeInt(s.getDurationMs());
+            out.writeBoolean(s.isCorrect());
+            out.writeInt(s.getRating());
+            writeString(out, s.getNotes());
+        });
+    }
+
+    /**
+     * Append the records as one write + fsync, then apply them to memory.
+     * Several records are framed as one BATCH record; if the write fails, the log is cut back to where it was.
+     * Caller holds the write lock.
+     */
+    private void commit(List<byte[]> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        if (log == null) throw new IOException("Embedded store is closed");
+        byte[] r = batch.size() == 1 ? batch.get(0) : record(BATCH, out -> {
+            out.writeInt(batch.size());
+            for (byte[] b : batch) {
+                out.writeInt(b.length);
+                out.write(b);
+            }
+        });
+        CRC32 crc = new CRC32();
+        crc.update(r);
+        ByteBuffer buf = ByteBuffer.allocate(r.length + 8);
+        buf.putInt(r.length).put(r).putInt((int) crc.getValue());
+        buf.flip();
+        long end = log.size();
+        try {
+            while (buf.hasRemaining()) log.write(buf);
+            log.force(false);
+        } catch (IOException e) {
+            // drop the partial record, so the next commit does not append behind it
+            try {
+                log.truncate(end);
+            } catch (IOException t) { e.addSuppressed(t); }
+            throw e;
+        }
+        for (byte[] b : batch) apply(b);
+        records += batch.size();
+    }
+
+    /**
+     * Apply the log to memory. Only an incomplete last record (short header or body, or a checksum
+     * mismatch on the record that ends the file) is a torn write: it is copied to srsfx.log.tail and cut off.
+     * A length that runs past the end but is followed by a valid record is a damaged length, not a torn write.
+     * @throws IOException if a record in the middle of the log is damaged; the file is left unchanged
+     */
+    private void replay() throws IOException {
+        if (!Files.exists(logFile)) return;
+        long good = 0;
+        long length = Files.size(logFile);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (good < length) {
+                long left = length - good;
+                if (left < 8) break;
+                int len = in.readInt();
+                if (len > left - 8) break;
+                if (len <= 0) throw corrupt(good, "record length " + len);
+                byte[] r = new byte[len];
+                in.readFully(r);
+                int sum = in.readInt();
+                crc.reset();
+                crc.update(r);
+                if ((int) crc.getValue() != sum) {
+                    if (len == left - 8) break;
+                    throw corrupt(good, "checksum mismatch");
+                }
+                apply(r);
+                records += r[0] == BATCH ? ByteBuffer.wrap(r, 1, 4).getInt() : 1;
+                good += len + 8;
+            }
+        }
+        if (good < length) {
+            Path tail = logFile.resolveSibling(LOG_NAME + ".tail");
+            try (FileChannel ch = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                byte[] bytes = Channels.newInputStream(ch.position(good)).readAllBytes();
+                int next = findRecord(bytes, 1);
+                if (next >= 0) throw corrupt(good, "record length runs past the end, but a valid record follows at byte "
+                        + (good + next));
+                System.err.println("Embedded store: dropping " + bytes.length + " bytes of incomplete log tail (saved to "
+                        + tail + ")");
+                Files.write(tail, bytes);
+                ch.truncate(good);
+                ch.force(false);
+            }
+        }
+    }
+
+    /** Offset of the first complete record with a matching checksum in bytes, searching from offset from; -1 if none */
+    private static int findRecord(byte[] bytes, int from) {
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        for (int o = from; o + 9 <= bytes.length; o++) {
+            int len = b.getInt(o);
+            if (len <= 0 || len > bytes.length - o - 8) continue;
+            crc.reset();
+            crc.update(bytes, o + 4, len);
+            if ((int) crc.getValue() == b.getInt(o + 4 + len)) return o;
+        }
+        return -1;
+    }
+
+    private IOException corrupt(long offset, String what) {
+        return new IOException("Embedded store log " + logFile + " is damaged at byte " + offset + " (" + what
+                + "); it was left unchanged, restore it from a backup or move it away to start empty");
+    }
+
+    /** Rewrite the log with one record per live row (temp file + atomic rename) */
+    private void compact() throws IOException {
+        Path tmp = logFile.resolveSibling(LOG_NAME + ".compact");
+        List<byte[]> snapshot = new ArrayList<>();
+        for (Card k : cards.values()) snapshot.add(cardPut(k.getId(), k.getQuestion(), k.getAnswer(), k.getCreatedAt()));
+        for (ReviewPlan p : plans.values()) snapshot.add(planPut(p));
+        for (List<ReviewStatistic> list : statsByCard.values()) {
+            for (ReviewStatistic s : list) snapshot.add(statPut(s));
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16)) {
+            DataOutputStream data = new DataOutputStream(out);
+            CRC32 crc = new CRC32();
+            for (byte[] r : snapshot) {
+                crc.reset();
+                crc.update(r);
+                data.writeInt(r.length);
+                data.write(r);
+                data.writeInt((int) crc.getValue());
+            }
+            data.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = snapshot.size();
+    }
+
+    private long liveRecords() {
+        return cards.size() + plans.size() + statCount;
+    }
+
+    /** The only place that changes the in-memory tables (used by both commit and replay) */
+    private void apply(byte[] r) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(r));
+        switch (in.readByte()) {
+            case CARD_PUT -> {
+                Card k = new Card();
+                k.setId(in.readInt());
+                k.setQuestion(readString(in));
+                k.setAnswer(readString(in));
+                k.setCreatedAt(readDate(in));
+                cards.put(k.getId(), k);
+                nextCardId = Math.max(nextCardId, k.getId() + 1);
+            }
+            case CARD_DEL -> {
+                int id = in.readInt();
+                cards.remove(id);
+                List<Integer> planIds = plansByCard.remove(id);
+                if (planIds != null) {
+                    for (int pid : planIds) unindexDue(plans.remove(pid));
+                }
+                List<ReviewStatistic> stats = statsByCard.remove(id);
+                if (stats != null) statCount -= stats.size();
+                totals.remove(id);
+            }
+            case PLAN_PUT -> {
+                ReviewPlan p = new ReviewPlan();
+                p.setId(in.readInt());
+                p.setCardId(in.readInt());
+                p.setPlannedOn(readDate(in));
+                p.setReviewedOn(readDate(in));
+                int rating = in.readInt();
+                p.setRating(rating == Integer.MIN_VALUE ? null : rating);
+                p.setIntervalDays(in.readInt());
+                p.setRepeats(in.readInt());
+                p.setEaseFactor(in.readDouble());
+                ReviewPlan old = plans.put(p.getId(), p);
+                if (old != null) unindexDue(old);
+                else plansByCard.computeIfAbsent(p.getCardId(), k -> new ArrayList<>(1)).add(p.getId());
+                if (p.getPlannedOn() != null) due.computeIfAbsent(p.getPlannedOn(), d -> new TreeSet<>()).add(p.getId());
+                nextPlanId = Math.max(nextPlanId, p.getId() + 1);
+            }
+            case STAT_PUT -> {
+                int id = in.readInt();
+                int cardId = in.readInt();
+                LocalDateTime at = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                ReviewStatistic s = new ReviewStatistic(id, cardId, at, in.readInt(), in.readBoolean(),
+                        in.readInt(), readString(in));
+                List<ReviewStatistic> list = statsByCard.computeIfAbsent(cardId, k -> new ArrayList<>());
+                int pos = list.size();
+                while (pos > 0 && list.get(pos - 1).getReviewedAt().isAfter(at)) pos--; // usually appends
+                list.add(pos, s);
+                totals.merge(cardId, CardStats.empty(cardId).plus(s), (old, one) -> old.plus(s));
+                statCount++;
+                nextStatId = Math.max(nextStatId, id + 1);
+            }
+            case BATCH -> {
+                for (int n = in.readInt(); n > 0; n--) {
+                    byte[] nested = new byte[in.readInt()];
+                    in.readFully(nested);
+                    apply(nested);
+                }
+            }
+            default -> throw new IOException("Unknown record type in " + logFile);
+        }
+    }
+
+    private void unindexDue(ReviewPlan p) {
+        if (p == null || p.getPlannedOn() == null) return;
+        TreeSet<Integer> ids = due.get(p.getPlannedOn());
+        if (ids != null && ids.remove(p.getId()) && ids.isEmpty()) due.remove(p.getPlannedOn());
+    }
+
+    // ===================== helpers =====================
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate d) throws IOException {
+        out.writeLong(d == null ? Long.MIN_VALUE : d.toEpochDay());
+    }
+
+    private static LocalDate readDate(DataInputStream in) throws IOException {
+        long v = in.readLong();
+        return v == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(v);
+    }
+
+    private static ReviewStatistic withId(ReviewStatistic s, int id) {
+        LocalDateTime at = s.getReviewedAt() == null ? LocalDateTime.now() : s.getReviewedAt();
+        return new ReviewStatistic(id, s.getCardId(), at, s.getDurationMs(), s.isCorrect(), s.getRating(), s.getNotes());
+    }
+
+    private static Card copyOf(Card k) {
+        Card c = new Card();
+        c.setId(k.getId());
+        c.setQuestion(k.getQuestion());
+        c.setAnswer(k.getAnswer());
+        c.setCreatedAt(k.getCreatedAt());
+        return c;
+    }
+
+    private static ReviewPlan copyOf(ReviewPlan src) {
+        ReviewPlan p = new ReviewPlan();
+        p.setId(src.getId());
+        p.setCardId(src.getCardId());
+        p.setPlannedOn(src.getPlannedOn());
+        p.setReviewedOn(src.getReviewedOn());
+        p.setRating(src.getRating());
+        p.setIntervalDays(src.getIntervalDays());
+        p.setRepeats(src.getRepeats());
+        p.setEaseFactor(src.getEaseFactor());
+        return p;
+    }
+}
@@ -0,0 +1,110 @@
+package dao;
+
+import util.DB;
+import util.SchemaMigrator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Picks the storage backend once per process.
+ * -Dsrsfx.storage=mysql (default) uses the JDBC DAOs, -Dsrsfx.storage=embedded the
+ * server-less {@link EmbeddedStore} in -Dsrsfx.storage.dir (default ~/.srsfx/store).
+ */
+public final class Repositories {
+    public static final String STORAGE_PROPERTY = "srsfx.storage";
+    public static final String DIR_PROPERTY = "srsfx.storage.dir";
+
+    private static CardRepository cards;
+    private static ReviewPlanRepository plans;
+    private static ReviewStatisticRepository stats;
+    private static EmbeddedStore embedded;
+
+    private Repositories() {}
+
+    public static boolean isEmbedded() {
+        return "embedded".equalsIgnoreCase(System.getProperty(STORAGE_PROPERTY, "mysql").trim());
+    }
+
+    public static synchronized CardRepository cards() {
+        init();
+        return cards;
+    }
+
+    public static synchronized ReviewPlanRepository plans() {
+        init();
+        return plans;
+    }
+
+    public static synchronized ReviewStatisticRepository stats() {
+        init();
+        return stats;
+    }
+
+    /**
+     * Open the backend: apply pending schema migrations (MySQL) or replay the log (embedded).
+     * Both can take long on a large deck, so MainApp calls this off the FX thread before it loads
+     * the views, whose controllers ask for the repositories while they are created.
+     * @throws IllegalStateException if the migration fails, UncheckedIOException if the embedded store
+     *         cannot be opened; the repositories stay unavailable then
+     */
+    public static synchronized void open() {
+        init();
+    }
+
+    /**
+     * Startup warm-up (call off the FX thread): opens the backend and, for MySQL,
+     * pre-opens pool connections with the review loop's statements already prepared.
+     */
+    public static void warmUp() {
+        try {
+            synchronized (Repositories.class) {
+                init();
+            }
+            if (isEmbedded()) return;
+            DB.warmUp(List.of(
+                    ReviewPlanDAO.SESSION_SQL,
+                    ReviewPlanDAO.PLANS_AFTER_REVIEW_SQL,
+                    ReviewStatisticDAO.INSERT_SQL,
+                    ReviewStatisticDAO.UPSERT_CARD_STATS_SQL,
+                    ReviewStatisticDAO.STATS_BY_CARD_SQL));
+        } catch (Exception e) {
+            // not fatal: the first queries just pay the connect/prepare cost themselves
+            System.err.println("DB warm-up failed: " + e);
+        }
+    }
+
+    /** Close the embedded store (no-op for MySQL) */
+    public static synchronized void shutdown() {
+        if (embedded != null) embedded.close();
+    }
+
+    private static void init() {
+        if (cards != null) return;
+        if (isEmbedded()) {
+            Path dir = Paths.get(System.getProperty(DIR_PROPERTY,
+                    Paths.get(System.getProperty("user.home"), ".srsfx", "store").toString()));
+            try {
+                embedded = EmbeddedStore.open(dir);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open embedded store in " + dir, e);
+            }
+            cards = embedded;
+            plans = embedded;
+            stats = embedded;
+        } else {
+            try {
+                SchemaMigrator.migrate(DB.getDataSource());
+            } catch (Exception e) {
+                // a half-migrated schema breaks the DAOs in odd places: refuse to run on it
+                throw new IllegalStateException("Schema migration failed: " + e.getMessage(), e);
+            }
+            cards = new CardDAO();
+            plans = new ReviewPlanDAO();
+            stats = new ReviewStatisticDAO();
+        }
+    }
+}
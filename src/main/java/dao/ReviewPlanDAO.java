@@ -1,6 +1,9 @@
 package dao;
 
+import model.PlanStore;
 import model.ReviewPlan;
+import model.ReviewSession;
+import model.Schedulers;
 import util.DB;
 
 import javax.sql.DataSource;
@@ -8,18 +11,38 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/** MySQL implementation of {@link ReviewPlanRepository} */
+public class ReviewPlanDAO implements ReviewPlanRepository {
+    /** Statements of the review loop (prepared ahead by {@link Repositories#warmUp()}) */
+    static final String SESSION_SQL =
+            "SELECT p.id, p.card_id, p.planned_on, p.reviewed_on, p.rating, p.interval_days, p.repeats, " +
+            "p.ease_factor, c.question, c.answer " +
+            "FROM review_plan p JOIN card c ON c.id = p.card_id " +
+            "WHERE p.planned_on <= ? ORDER BY p.id";
+    static final String PLANS_AFTER_REVIEW_SQL =
+            "UPDATE review_plan SET reviewed_on=?, rating=?, interval_days=?, repeats=?, ease_factor=?," +
+            " planned_on=? WHERE id=?";
+
+    private static final int SAVE_BATCH = 2_000;
 
-public class ReviewPlanDAO {
     private final DataSource ds = DB.getDataSource();
 
-    /** New card's first plan: tomorrow, interval_days=1, repeats=0, ease_factor=2.5 */
+    /** New card's first plan, as the current scheduler defines it (SM-2: tomorrow, interval_days=1, ease 2.5) */
     public void generateFirstPlan(int cardId) {
         String sql = "INSERT INTO review_plan " +
                 "(card_id, planned_on, reviewed_on, rating, interval_days, repeats, ease_factor) " +
-                "VALUES (?, CURDATE() + INTERVAL 1 DAY, NULL, NULL, 1, 0, 2.5)";
+                "VALUES (?, ?, NULL, NULL, ?, ?, ?)";
+        ReviewPlan p = Schedulers.current().firstPlan(cardId);
         try (Connection conn = ds.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, cardId);
+            stmt.setDate(2, Date.valueOf(p.getPlannedOn()));
+            stmt.setInt(3, p.getIntervalDays());
+            stmt.setInt(4, p.getRepeats());
+            stmt.setDouble(5, p.getEaseFactor());
             stmt.executeUpdate();
         } catch (Exception e) { e.printStackTrace(); }
     }
@@ -32,27 +55,144 @@ public class ReviewPlanDAO {
         try (Connection conn = ds.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                ReviewPlan rp = new ReviewPlan();
-                rp.setId(rs.getInt("id"));
-                rp.setCardId(rs.getInt("card_id"));
+            while (rs.next()) list.add(mapPlan(rs));
+        } catch (Exception e) { e.printStackTrace(); }
+        return list;
+    }
 
-                Date po = rs.getDate("planned_on");
-                if (po != null) rp.setPlannedOn(po.toLocalDate());
+    /** Plans up to lastDay joined with their card texts in one query (same order as getTodayPlans) */
+    public ReviewSession loadSessionUntil(LocalDate lastDay) {
+        List<ReviewPlan> plans = new ArrayList<>();
+        List<String> questions = new ArrayList<>();
+        List<String> answers = new ArrayList<>();
+        try (Connection conn = ds.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SESSION_SQL)) {
+            stmt.setDate(1, Date.valueOf(lastDay));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    plans.add(mapPlan(rs));
+                    questions.add(rs.getString("question"));
+                    answers.add(rs.getString("answer"));
+                }
+            }
+        } catch (Exception e) { e.printStackTrace(); }
+        return new ReviewSession(plans, questions.toArray(new String[0]), answers.toArray(new String[0]));
+    }
+
+    public int countDue() throws SQLException {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM review_plan WHERE planned_on <= CURDATE()")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
 
-                Date ro = rs.getDate("reviewed_on");
-                if (ro != null) rp.setReviewedOn(ro.toLocalDate());
+    public NavigableMap<LocalDate, Integer> loadByDay() {
+        NavigableMap<LocalDate, Integer> load = new TreeMap<>();
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT planned_on, COUNT(*) FROM review_plan GROUP BY planned_on")) {
+            while (rs.next()) load.put(rs.getDate(1).toLocalDate(), rs.getInt(2));
+        } catch (Exception e) { e.printStackTrace(); }
+        return load;
+    }
 
-                Object q = rs.getObject("rating");
-                rp.setRating(q == null ? null : ((Number) q).intValue());
+    /** One UPDATE over the whole table (vacation shift) */
+    public int shiftAll(int days) {
+        String sql = "UPDATE review_plan SET planned_on = planned_on + INTERVAL ? DAY";
+        try (Connection conn = ds.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, days);
+            return stmt.executeUpdate();
+        } catch (Exception e) { e.printStackTrace(); }
+        return -1;
+    }
 
-                rp.setIntervalDays(rs.getInt("interval_days"));
-                rp.setRepeats(rs.getInt("repeats"));
-                rp.setEaseFactor(rs.getDouble("ease_factor"));
-                list.add(rp);
+    /** One UPDATE: rank the overdue plans, then day = today + floor(rank * days / count) */
+    public int spreadOverdue(int days) {
+        String sql = "UPDATE review_plan p JOIN (" +
+                "SELECT id, ROW_NUMBER() OVER (ORDER BY planned_on, ease_factor, id) - 1 AS rn, COUNT(*) OVER () AS n " +
+                "FROM review_plan WHERE planned_on < ?) o ON o.id = p.id " +
+                "SET p.planned_on = ? + INTERVAL FLOOR(o.rn * ? / o.n) DAY";
+        Date today = Date.valueOf(LocalDate.now());
+        try (Connection conn = ds.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, today);
+            stmt.setDate(2, today);
+            stmt.setInt(3, Math.max(1, days));
+            return stmt.executeUpdate();
+        } catch (Exception e) { e.printStackTrace(); }
+        return -1;
+    }
+
+    /**
+     * Streams the rows (forward-only, row by row) and lets MySQL turn the dates into epoch days,
+     * so 100k+ plans cost no Date/LocalDate objects
+     */
+    public PlanStore loadPlanStore() {
+        String sql = "SELECT id, card_id, DATEDIFF(planned_on, '1970-01-01'), DATEDIFF(reviewed_on, '1970-01-01'), " +
+                "rating, interval_days, repeats, ease_factor FROM review_plan ORDER BY id";
+        PlanStore store = new PlanStore(Math.max(1024, countPlans()));
+        try (Connection conn = ds.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int due = rs.getInt(3);
+                    if (rs.wasNull()) due = PlanStore.epochDay(LocalDate.now());
+                    int reviewed = rs.getInt(4);
+                    if (rs.wasNull()) reviewed = PlanStore.NONE;
+                    int rating = rs.getInt(5);
+                    if (rs.wasNull()) rating = PlanStore.NONE;
+                    store.add(rs.getInt(1), rs.getInt(2), due, reviewed, rating, rs.getInt(6), rs.getInt(7), rs.getDouble(8));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new PlanStore();
+        }
+        return store;
+    }
+
+    /** Batched UPDATEs by primary key in one transaction */
+    public int savePlanStore(PlanStore store, int from, int to) {
+        String sql = "UPDATE review_plan SET planned_on = DATE_ADD('1970-01-01', INTERVAL ? DAY), " +
+                "reviewed_on = DATE_ADD('1970-01-01', INTERVAL ? DAY), rating=?, interval_days=?, repeats=?, ease_factor=? " +
+                "WHERE id=?";
+        try (Connection conn = ds.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = from; i < to; i++) {
+                    stmt.setInt(1, store.due(i));
+                    if (store.reviewedOn(i) == PlanStore.NONE) stmt.setNull(2, Types.INTEGER);
+                    else stmt.setInt(2, store.reviewedOn(i));
+                    if (store.rating(i) == PlanStore.NONE) stmt.setNull(3, Types.INTEGER);
+                    else stmt.setInt(3, store.rating(i));
+                    stmt.setInt(4, store.interval(i));
+                    stmt.setInt(5, store.repeats(i));
+                    stmt.setDouble(6, store.ease(i));
+                    stmt.setInt(7, store.id(i));
+                    stmt.addBatch();
+                    if ((i - from + 1) % SAVE_BATCH == 0) stmt.executeBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+                return to - from;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (Exception e) { e.printStackTrace(); }
-        return list;
+        return -1;
+    }
+
+    private int countPlans() {
+        try (Connection conn = ds.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM review_plan")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (Exception e) { e.printStackTrace(); }
+        return 0;
     }
 
     /** After a review: set reviewed_on/rating, push planned_on by interval_days */
@@ -71,5 +211,45 @@ public class ReviewPlanDAO {
             stmt.executeUpdate();
         } catch (Exception e) { e.printStackTrace(); }
     }
-}
 
+    /**
+     * Batch form of updatePlanAfterReview on the caller's connection (the caller owns the transaction).
+     * Uses each plan's own reviewed_on/rating, so delayed writes still schedule from the review day.
+     */
+    public static void updatePlansAfterReview(Connection conn, List<ReviewPlan> plans) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(PLANS_AFTER_REVIEW_SQL)) {
+            for (ReviewPlan plan : plans) {
+                LocalDate reviewedOn = plan.getReviewedOn() == null ? LocalDate.now() : plan.getReviewedOn();
+                stmt.setDate(1, Date.valueOf(reviewedOn));
+                stmt.setInt(2, plan.getRating() == null ? 0 : plan.getRating());
+                stmt.setInt(3, plan.getIntervalDays());
+                stmt.setInt(4, plan.getRepeats());
+                stmt.setDouble(5, plan.getEaseFactor());
+                stmt.setDate(6, Date.valueOf(reviewedOn.plusDays(plan.getIntervalDays())));
+                stmt.setInt(7, plan.getId());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static ReviewPlan mapPlan(ResultSet rs) throws SQLException {
+        ReviewPlan rp = new ReviewPlan();
+        rp.setId(rs.getInt("id"));
+        rp.setCardId(rs.getInt("card_id"));
+
+        Date po = rs.getDate("planned_on");
+        if (po != null) rp.setPlannedOn(po.toLocalDate());
+
+        Date ro = rs.getDate("reviewed_on");
+        if (ro != null) rp.setReviewedOn(ro.toLocalDate());
+
+        Object q = rs.getObject("rating");
+        rp.setRating(q == null ? null : ((Number) q).intValue());
+
+        rp.setIntervalDays(rs.getInt("interval_days"));
+        rp.setRepeats(rs.getInt("repeats"));
+        rp.setEaseFactor(rs.getDouble("ease_factor"));
+        return rp;
+    }
+}
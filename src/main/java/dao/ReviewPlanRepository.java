@@ -0,0 +1,69 @@
+package dao;
+
+import model.PlanStore;
+import model.ReviewPlan;
+import model.ReviewSession;
+import util.DbExecutor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+
+/** Review plan storage; implemented by {@link ReviewPlanDAO} (MySQL) and {@link EmbeddedStore} */
+public interface ReviewPlanRepository {
+    /** New card's first plan: tomorrow, interval_days=1, repeats=0, ease_factor=2.5 */
+    void generateFirstPlan(int cardId);
+
+    /** Plans due today (planned_on <= today), ordered by id */
+    List<ReviewPlan> getTodayPlans();
+
+    /** Due plans together with their card texts (same order as getTodayPlans) */
+    default ReviewSession loadTodaySession() { return loadSessionUntil(LocalDate.now()); }
+
+    /** Plans with planned_on <= lastDay plus their card texts, ordered by id */
+    ReviewSession loadSessionUntil(LocalDate lastDay);
+
+    /** After a review: set reviewed_on/rating, push planned_on by interval_days */
+    void updatePlanAfterReview(ReviewPlan plan, int rating);
+
+    /** @throws Exception if the backend cannot be read (unlike most lookups, this is not reported as 0) */
+    int countDue() throws Exception;
+
+    /** Number of plans per planned_on date (input for the bulk scheduling previews) */
+    NavigableMap<LocalDate, Integer> loadByDay();
+
+    /**
+     * Move every plan by days (negative = earlier); @return plans changed, -1 on failure.
+     * Flush ReviewWriteBehind first: plan updates still in the journal would overwrite the new days.
+     */
+    int shiftAll(int days);
+
+    /**
+     * Spread the plans that are overdue (planned_on before today) evenly over today .. today+days-1,
+     * most overdue and lowest ease factor first. @return plans moved, -1 on failure.
+     * Flush ReviewWriteBehind first, as for shiftAll.
+     */
+    int spreadOverdue(int days);
+
+    /** Every plan as primitive columns, ordered by id (empty on failure) */
+    PlanStore loadPlanStore();
+
+    /**
+     * Write entries [from, to) of the store back (planned_on, reviewed_on, rating, interval_days,
+     * repeats, ease_factor by id), all or nothing; @return plans written, -1 on failure
+     */
+    int savePlanStore(PlanStore store, int from, int to);
+
+    // ---- async variants: run on DbExecutor, complete on the FX thread ----
+    default CompletableFuture<Void> generateFirstPlanAsync(int cardId) { return DbExecutor.runAsync(() -> generateFirstPlan(cardId)); }
+    default CompletableFuture<List<ReviewPlan>> getTodayPlansAsync() { return DbExecutor.supplyAsync(this::getTodayPlans); }
+    default CompletableFuture<ReviewSession> loadTodaySessionAsync() { return DbExecutor.supplyAsync(this::loadTodaySession); }
+    default CompletableFuture<NavigableMap<LocalDate, Integer>> loadByDayAsync() { return DbExecutor.supplyAsync(this::loadByDay); }
+    default CompletableFuture<Integer> shiftAllAsync(int days) { return DbExecutor.supplyAsync(() -> shiftAll(days)); }
+    default CompletableFuture<PlanStore> loadPlanStoreAsync() { return DbExecutor.supplyAsync(this::loadPlanStore); }
+    default CompletableFuture<Integer> spreadOverdueAsync(int days) { return DbExecutor.supplyAsync(() -> spreadOverdue(days)); }
+    default CompletableFuture<ReviewSession> loadSessionUntilAsync(LocalDate lastDay) {
+        return DbExecutor.supplyAsync(() -> loadSessionUntil(lastDay));
+    }
+}
@@ -1,5 +1,7 @@
 package dao;
 
+import model.CardStats;
+import model.ReviewPlan;
 import model.ReviewStatistic;
 import util.DB;
 
@@ -9,72 +11,326 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ReviewStatisticDAO {
+/** MySQL implementation of {@link ReviewStatisticRepository}, backed by the card_stats summary table */
+public class ReviewStatisticDAO implements ReviewStatisticRepository {
+    /** Shared by every DAO instance, so Review and Stats tabs see the same snapshots. */
+    private static final CardStatsCache CACHE = new CardStatsCache(4096);
+
+    /** Statements of the review loop (prepared ahead by {@link Repositories#warmUp()}) */
+    static final String INSERT_SQL =
+            "INSERT INTO review_statistic (card_id, reviewed_at, duration_ms, correct, rating, notes) VALUES (?,?,?,?,?,?)";
+    static final String UPSERT_CARD_STATS_SQL =
+            "INSERT INTO card_stats (card_id, review_count, sum_duration_ms, sum_rating, correct_count, " +
+            "first_reviewed_at, last_reviewed_at) VALUES (?, 1, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + 1, " +
+            "sum_duration_ms = sum_duration_ms + VALUES(sum_duration_ms), " +
+            "sum_rating = sum_rating + VALUES(sum_rating), " +
+            "correct_count = correct_count + VALUES(correct_count), " +
+            "first_reviewed_at = LEAST(COALESCE(first_reviewed_at, VALUES(first_reviewed_at)), VALUES(first_reviewed_at)), " +
+            "last_reviewed_at = GREATEST(COALESCE(last_reviewed_at, VALUES(last_reviewed_at)), VALUES(last_reviewed_at))";
+    static final String STATS_BY_CARD_SQL =
+            "SELECT review_count, sum_duration_ms, sum_rating, correct_count, first_reviewed_at, last_reviewed_at " +
+            "FROM card_stats WHERE card_id=?";
+
     private final DataSource ds = DB.getDataSource();
 
+    /**
+     * Every rating writes card_stats in its transaction, so a schema without the table (created and
+     * backfilled by migration V2) would fail on the first review: refuse to start on it instead.
+     * @throws IllegalStateException if card_stats does not exist or cannot be read
+     */
+    public ReviewStatisticDAO() {
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.executeQuery("SELECT card_id FROM card_stats LIMIT 0").close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("card_stats is not available; apply the schema migrations first (V2): "
+                    + e.getMessage(), e);
+        }
+    }
+
+    public static CardStatsCache cache() { return CACHE; }
+
+    /**
+     * Insert one review log and fold it into card_stats in the same transaction.
+     * @return generated id, or -1 on failure
+     */
     public int insertReviewStatistic(ReviewStatistic s) {
-        String sql = "INSERT INTO review_statistic (card_id, reviewed_at, duration_ms, correct, rating, notes) VALUES (?,?,?,?,?,?)";
-        try (Connection c = ds.getConnection();
-             PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        LocalDateTime ts = (s.getReviewedAt() == null) ? LocalDateTime.now() : s.getReviewedAt();
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, s.getCardId());
+                ps.setTimestamp(2, Timestamp.valueOf(ts));
+                ps.setInt(3, s.getDurationMs());
+                ps.setBoolean(4, s.isCorrect());
+                ps.setInt(5, s.getRating());
+                ps.setString(6, s.getNotes());
+                ps.executeUpdate();
+
+                int id = -1;
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (rs.next()) id = rs.getInt(1);
+                }
+                upsertCardStats(c, s.getCardId(), ts, s.getDurationMs(), s.isCorrect(), s.getRating());
+                c.commit();
 
-            ps.setInt(1, s.getCardId());
-            LocalDateTime ts = (s.getReviewedAt() == null) ? LocalDateTime.now() : s.getReviewedAt();
-            ps.setTimestamp(2, Timestamp.valueOf(ts));
-            ps.setInt(3, s.getDurationMs());
-            ps.setBoolean(4, s.isCorrect());
-            ps.setInt(5, s.getRating());
-            ps.setString(6, s.getNotes());
+                // keep the cached snapshot current instead of dropping it
+                CACHE.apply(new ReviewStatistic(id, s.getCardId(), ts, s.getDurationMs(), s.isCorrect(), s.getRating(), s.getNotes()));
+                return id;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (Exception e) { e.printStackTrace(); }
+        return -1;
+    }
+
+    /**
+     * Insert a batch of review logs plus their card_stats updates on the caller's connection
+     * (the caller owns the transaction). Does not touch the cache.
+     */
+    public static void insertBatch(Connection c, List<ReviewStatistic> rows) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(INSERT_SQL);
+             PreparedStatement up = c.prepareStatement(UPSERT_CARD_STATS_SQL)) {
+            for (ReviewStatistic s : rows) {
+                LocalDateTime ts = (s.getReviewedAt() == null) ? LocalDateTime.now() : s.getReviewedAt();
+                ps.setInt(1, s.getCardId());
+                ps.setTimestamp(2, Timestamp.valueOf(ts));
+                ps.setInt(3, s.getDurationMs());
+                ps.setBoolean(4, s.isCorrect());
+                ps.setInt(5, s.getRating());
+                ps.setString(6, s.getNotes());
+                ps.addBatch();
+                bindCardStats(up, s.getCardId(), ts, s.getDurationMs(), s.isCorrect(), s.getRating());
+                up.addBatch();
+            }
+            ps.executeBatch();
+            up.executeBatch();
+        }
+    }
 
+    /** Statistic rows and plan updates of one batch in a single transaction */
+    public void recordReviews(List<ReviewStatistic> stats, List<ReviewPlan> plans) throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                insertBatch(c, stats);
+                ReviewPlanDAO.updatePlansAfterReview(c, plans);
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * {@link #recordReviews} for the write-behind journal. Entries whose seq the database has already applied
+     * for this journal are skipped, and the highest seq is stored in the same transaction, so replaying the
+     * journal after a crash (or after an error reported for a commit that went through) never counts a rating twice.
+     * @return number of entries written; the rest were applied before
+     */
+    public int recordJournaled(String journalId, long[] seqs, List<ReviewStatistic> stats, List<ReviewPlan> plans)
+            throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                long applied = 0;
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT seq FROM review_journal_applied WHERE journal_id=? FOR UPDATE")) {
+                    ps.setString(1, journalId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) applied = rs.getLong(1);
+                    }
+                }
+                List<ReviewStatistic> newStats = new ArrayList<>(stats.size());
+                List<ReviewPlan> newPlans = new ArrayList<>(plans.size());
+                long last = applied;
+                for (int i = 0; i < seqs.length; i++) {
+                    if (seqs[i] <= applied) continue;
+                    newStats.add(stats.get(i));
+                    newPlans.add(plans.get(i));
+                    last = Math.max(last, seqs[i]);
+                }
+                if (!newStats.isEmpty()) {
+                    insertBatch(c, newStats);
+                    ReviewPlanDAO.updatePlansAfterReview(c, newPlans);
+                    try (PreparedStatement ps = c.prepareStatement(
+                            "INSERT INTO review_journal_applied (journal_id, seq) VALUES (?,?) " +
+                            "ON DUPLICATE KEY UPDATE seq = GREATEST(seq, VALUES(seq))")) {
+                        ps.setString(1, journalId);
+                        ps.setLong(2, last);
+                        ps.executeUpdate();
+                    }
+                }
+                c.commit();
+                return newStats.size();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /** Add one review to the card's running totals (creates the row on the first review) */
+    static void upsertCardStats(Connection c, int cardId, LocalDateTime reviewedAt,
+                                int durationMs, boolean correct, int rating) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPSERT_CARD_STATS_SQL)) {
+            bindCardStats(ps, cardId, reviewedAt, durationMs, correct, rating);
             ps.executeUpdate();
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) return rs.getInt(1);
+        }
+    }
+
+    private static void bindCardStats(PreparedStatement ps, int cardId, LocalDateTime reviewedAt,
+                                      int durationMs, boolean correct, int rating) throws SQLException {
+        Timestamp at = Timestamp.valueOf(reviewedAt);
+        ps.setInt(1, cardId);
+        ps.setLong(2, durationMs);
+        ps.setLong(3, rating);
+        ps.setInt(4, correct ? 1 : 0);
+        ps.setTimestamp(5, at);
+        ps.setTimestamp(6, at);
+    }
+
+    /** Recompute card_stats from the full review_statistic history (run after imports) */
+    public int rebuildCardStats() {
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                int n = rebuildCardStats(c);
+                c.commit();
+                return n;
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
             }
         } catch (Exception e) { e.printStackTrace(); }
         return -1;
     }
 
-    public int countByCard(int cardId) {
-        String sql = "SELECT COUNT(*) FROM review_statistic WHERE card_id=?";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+    /** Same as {@link #rebuildCardStats()} but inside the caller's transaction */
+    public static int rebuildCardStats(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("DELETE FROM card_stats");
+            int n = st.executeUpdate("INSERT INTO card_stats (card_id, review_count, sum_duration_ms, sum_rating, " +
+                    "correct_count, first_reviewed_at, last_reviewed_at) " +
+                    "SELECT card_id, COUNT(*), SUM(duration_ms), SUM(rating), " +
+                    "SUM(CASE WHEN correct THEN 1 ELSE 0 END), MIN(reviewed_at), MAX(reviewed_at) " +
+                    "FROM review_statistic GROUP BY card_id");
+            CACHE.clear();
+            return n;
+        }
+    }
+
+    /** Count and sums of one card: cache first, then the card_stats row (O(1), no history scan) */
+    public CardStats statsByCard(int cardId) {
+        CardStats cached = CACHE.get(cardId);
+        if (cached != null) return cached;
+
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(STATS_BY_CARD_SQL)) {
             ps.setInt(1, cardId);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt(1);
+                CardStats cs = rs.next() ? mapStats(rs, cardId, null) : CardStats.empty(cardId);
+                CACHE.put(cs);
+                return cs;
             }
         } catch (Exception e) { e.printStackTrace(); }
-        return 0;
+        return CardStats.empty(cardId);
     }
 
-    public double avgDurationMsByCard(int cardId) {
-        String sql = "SELECT AVG(duration_ms) FROM review_statistic WHERE card_id=?";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, cardId);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getDouble(1);
+    /**
+     * Stats of every card in one query (card LEFT JOIN card_stats), newest card first.
+     * Cards without reviews come back with zero counts.
+     */
+    public List<CardStats> findAllCardStats() {
+        String sql = "SELECT c.id, c.question, s.review_count, s.sum_duration_ms, s.sum_rating, s.correct_count, " +
+                "s.first_reviewed_at, s.last_reviewed_at " +
+                "FROM card c LEFT JOIN card_stats s ON s.card_id = c.id " +
+                "ORDER BY c.id DESC";
+        List<CardStats> list = new ArrayList<>();
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                list.add(mapStats(rs, rs.getInt("id"), rs.getString("question")));
             }
+            CACHE.putAll(list);
         } catch (Exception e) { e.printStackTrace(); }
-        return 0.0;
+        return list;
     }
 
-    public double avgRatingByCard(int cardId) {
-        String sql = "SELECT AVG(rating) FROM review_statistic WHERE card_id=?";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, cardId);
+    // NULL columns (no card_stats row yet) read as 0 / null
+    private static CardStats mapStats(ResultSet rs, int cardId, String question) throws SQLException {
+        Timestamp first = rs.getTimestamp("first_reviewed_at");
+        Timestamp last = rs.getTimestamp("last_reviewed_at");
+        return new CardStats(
+                cardId,
+                question,
+                rs.getInt("review_count"),
+                rs.getLong("sum_duration_ms"),
+                rs.getLong("sum_rating"),
+                rs.getInt("correct_count"),
+                first == null ? null : first.toLocalDateTime(),
+                last == null ? null : last.toLocalDateTime()
+        );
+    }
+
+    /** One GROUP BY over review_statistic (served by idx_stat_card_time) */
+    public int forEachRatingCount(RatingCountVisitor visitor) {
+        String sql = "SELECT card_id, rating, COUNT(*) FROM review_statistic GROUP BY card_id, rating";
+        int n = 0;
+        try (Connection c = ds.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                visitor.visit(rs.getInt(1), rs.getInt(2), rs.getInt(3));
+                n++;
+            }
+            return n;
+        } catch (Exception e) { e.printStackTrace(); }
+        return -1;
+    }
+
+    /** Streamed in idx_stat_card_time order, so MySQL needs no sort and the driver holds one row at a time */
+    public int forEachReview(ReviewVisitor visitor) {
+        String sql = "SELECT card_id, reviewed_at, rating FROM review_statistic ORDER BY card_id, reviewed_at";
+        int n = 0;
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getDouble(1);
+                while (rs.next()) {
+                    Timestamp ts = rs.getTimestamp(2);
+                    if (ts == null) continue;
+                    visitor.visit(rs.getInt(1), ts.toLocalDateTime().toLocalDate().toEpochDay(), rs.getInt(3));
+                    n++;
+                }
             }
+            return n;
         } catch (Exception e) { e.printStackTrace(); }
-        return 0.0;
+        return -1;
     }
 
-    public double correctRateByCard(int cardId) {
-        String sql = "SELECT AVG(CASE WHEN correct THEN 1 ELSE 0 END) FROM review_statistic WHERE card_id=?";
-        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, cardId);
+    /** Range scan of idx_stat_card_time (covers every column read), streamed row by row like forEachReview */
+    public int forEachReviewLog(int fromCardId, int toCardId, LocalDateTime before, ReviewLogVisitor visitor) {
+        String sql = "SELECT card_id, DATEDIFF(reviewed_at, '1970-01-01'), duration_ms, rating FROM review_statistic " +
+                "WHERE card_id >= ? AND card_id < ? AND reviewed_at < ? ORDER BY card_id, reviewed_at";
+        int n = 0;
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE);
+            ps.setInt(1, fromCardId);
+            ps.setInt(2, toCardId);
+            ps.setTimestamp(3, Timestamp.valueOf(before));
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getDouble(1);
+                while (rs.next()) {
+                    visitor.visit(rs.getInt(1), rs.getLong(2), rs.getInt(3), rs.getInt(4));
+                    n++;
+                }
             }
+            return n;
         } catch (Exception e) { e.printStackTrace(); }
-        return 0.0;
+        return -1;
     }
 
     public List<ReviewStatistic> findByCardAsc(int cardId) {
@@ -104,4 +360,3 @@ public class ReviewStatisticDAO {
         return list;
     }
 }
-
@@ -0,0 +1,71 @@
+package dao;
+
+import model.CardStats;
+import model.ReviewPlan;
+import model.ReviewStatistic;
+import util.DbExecutor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Review log storage; implemented by {@link ReviewStatisticDAO} (MySQL) and {@link EmbeddedStore} */
+public interface ReviewStatisticRepository {
+    /** @return generated id, or -1 on failure */
+    int insertReviewStatistic(ReviewStatistic s);
+
+    /**
+     * Store a batch of ratings together with the rescheduled plans, all or nothing
+     * (used by {@link ReviewWriteBehind}). Each plan carries its own reviewed_on/rating.
+     */
+    void recordReviews(List<ReviewStatistic> stats, List<ReviewPlan> plans) throws Exception;
+
+    /** Recompute the per-card totals from the full history; @return cards with reviews, -1 on failure */
+    int rebuildCardStats();
+
+    CardStats statsByCard(int cardId);
+
+    /** Stats of every card, newest card first; cards without reviews have zero counts */
+    List<CardStats> findAllCardStats();
+
+    List<ReviewStatistic> findByCardAsc(int cardId);
+
+    /** Receives the number of reviews of one card with one rating */
+    interface RatingCountVisitor {
+        void visit(int cardId, int rating, int count);
+    }
+
+    /** Review counts per (card, rating) over the whole history; @return groups visited, -1 on failure */
+    int forEachRatingCount(RatingCountVisitor visitor);
+
+    /** Receives one review log entry (reviewed_at as epoch day) */
+    interface ReviewVisitor {
+        void visit(int cardId, long reviewedOn, int rating);
+    }
+
+    /** Stream the whole history ordered by card, then time; @return reviews visited, -1 on failure */
+    int forEachReview(ReviewVisitor visitor);
+
+    /** Receives one review log entry for the deck analytics (reviewed_at as epoch day) */
+    interface ReviewLogVisitor {
+        void visit(int cardId, long reviewedOn, int durationMs, int rating);
+    }
+
+    /**
+     * Stream the reviews of the cards in [fromCardId, toCardId) made before the given time, ordered by card,
+     * then time. Ranges share no rows, so several can be scanned at once.
+     * @return reviews visited, -1 on failure
+     */
+    int forEachReviewLog(int fromCardId, int toCardId, LocalDateTime before, ReviewLogVisitor visitor);
+
+    default int countByCard(int cardId) { return statsByCard(cardId).getCount(); }
+    default double avgDurationMsByCard(int cardId) { return statsByCard(cardId).getAvgDurationMs(); }
+    default double avgRatingByCard(int cardId) { return statsByCard(cardId).getAvgRating(); }
+    default double correctRateByCard(int cardId) { return statsByCard(cardId).getCorrectRate(); }
+
+    // ---- async variants: run on DbExecutor, complete on the FX thread ----
+    default CompletableFuture<CardStats> statsByCardAsync(int cardId) { return DbExecutor.supplyAsync(() -> statsByCard(cardId)); }
+    default CompletableFuture<List<CardStats>> findAllCardStatsAsync() { return DbExecutor.supplyAsync(this::findAllCardStats); }
+    default CompletableFuture<List<ReviewStatistic>> findByCardAscAsync(int cardId) { return DbExecutor.supplyAsync(() -> findByCardAsc(cardId)); }
+    default CompletableFuture<Integer> rebuildCardStatsAsync() { return DbExecutor.supplyAsync(this::rebuildCardStats); }
+}
@@ -0,0 +1,545 @@
+package dao;
+
+import model.ReviewPlan;
+import model.ReviewStatistic;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Write-behind pipeline for review results.
+ * A rating is appended to a local journal file (~/.srsfx/review-journal.log) and acknowledged at once;
+ * a background writer drains the journal to MySQL in batched transactions and retries while the DB is down.
+ * Entries not yet confirmed by the checkpoint file are replayed on the next start. The database keeps the
+ * highest seq it applied per journal (review_journal_applied, written in the same transaction as the rows),
+ * so an entry applied just before a crash, or by a commit whose reply was lost, is skipped on replay.
+ * Seqs never go back (a new start continues above the wall clock in ms x 1000), even if the checkpoint is lost.
+ * A rating the database rejects for good (e.g. its card was deleted meanwhile) is moved to
+ * ~/.srsfx/review-journal.dead, after a "#" line with the reason, so it does not block the ones behind it.
+ * With the embedded store every write is already a local log append, so no journal is kept.
+ */
+public final class ReviewWriteBehind {
+    private static final int BATCH_SIZE = 200;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private static ReviewWriteBehind instance;
+    private static final List<BiConsumer<ReviewStatistic, ReviewPlan>> listeners = new CopyOnWriteArrayList<>();
+
+    private final Path journalFile;
+    private final Path checkpointFile;
+    private final Path deadLetterFile;
+    private String journalId;          // names this journal in review_journal_applied
+    private final Deque<Entry> pending = new ArrayDeque<>();
+    private FileChannel journal;       // null -> journal unavailable, fall back to direct writes
+    private long nextSeq;
+    private boolean running = true;
+    private int paused;                // pause() calls not yet resumed: the writer holds entries back
+    private boolean writing;           // a batch is on its way to the database
+    private final Thread writer;
+
+    /** One rating: the log row plus the plan state computed by SM-2 */
+    private static final class Entry {
+        final long seq;
+        final ReviewStatistic stat;
+        final ReviewPlan plan;
+
+        Entry(long seq, ReviewStatistic stat, ReviewPlan plan) {
+            this.seq = seq;
+            this.stat = stat;
+            this.plan = plan;
+        }
+    }
+
+    private ReviewWriteBehind(Path dir) {
+        this.journalFile = dir.resolve("review-journal.log");
+        this.checkpointFile = dir.resolve("review-journal.ckpt");
+        this.deadLetterFile = dir.resolve("review-journal.dead");
+        if (!Repositories.isEmbedded()) {
+            try {
+                Files.createDirectories(dir);
+                journalId = readJournalId(dir.resolve("review-journal.id"));
+                recover(readCheckpoint());
+                journal = FileChannel.open(journalFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (Exception e) {
+                // the journal file itself is unusable: ratings are written synchronously
+                System.err.println("Review journal unavailable, writing ratings directly: " + e);
+                journal = null;
+            }
+        }
+        writer = new Thread(this::drainLoop, "review-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static synchronized ReviewWriteBehind get() {
+        if (instance == null) {
+            instance = new ReviewWriteBehind(Paths.get(System.getProperty("user.home"), ".srsfx"));
+        }
+        return instance;
+    }
+
+    /**
+     * Record a rating. Returns as soon as the entry is durable in the journal;
+     * the plan is copied, so the caller may keep mutating its own instance.
+     * @throws UncheckedIOException if the journal cannot be written; the rating is not recorded then
+     */
+    public void submit(ReviewStatistic stat, ReviewPlan plan) {
+        LocalDateTime at = stat.getReviewedAt() == null ? LocalDateTime.now() : stat.getReviewedAt();
+        ReviewStatistic s = new ReviewStatistic(null, stat.getCardId(), at,
+                stat.getDurationMs(), stat.isCorrect(), stat.getRating(), stat.getNotes());
+        ReviewPlan p = copyOf(plan);
+        p.setReviewedOn(at.toLocalDate());
+        p.setRating(stat.getRating());
+
+        boolean journaled;
+        synchronized (this) {
+            journaled = journal != null;
+            if (journaled) {
+                Entry e = new Entry(nextSeq, s, p);
+                append(e);
+                nextSeq++;
+                pending.addLast(e);
+                notifyAll();
+            } else {
+                // no local journal -> behave like before (synchronous writes)
+                writeDirect(s, p);
+            }
+        }
+        if (journaled) ReviewStatisticDAO.cache().apply(s); // UI sees the new numbers before the DB does
+        fireSubmitted(s, p);
+    }
+
+    /**
+     * Be told about every accepted rating and the card's rescheduled plan (e.g. to extend an open trend chart);
+     * both are shared with the pipeline and must not be modified.
+     * Listeners run on the submitting thread, which is the FX thread for ReviewController.
+     */
+    public static void addListener(BiConsumer<ReviewStatistic, ReviewPlan> listener) { listeners.add(listener); }
+
+    public static void removeListener(BiConsumer<ReviewStatistic, ReviewPlan> listener) { listeners.remove(listener); }
+
+    private static void fireSubmitted(ReviewStatistic s, ReviewPlan p) {
+        for (BiConsumer<ReviewStatistic, ReviewPlan> l : listeners) {
+            try {
+                l.accept(s, p);
+            } catch (RuntimeException e) { e.printStackTrace(); }
+        }
+    }
+
+    /** Flush and stop the pipeline on exit, without creating it if it was never used */
+    public static void shutdownIfStarted(long timeoutMs) {
+        ReviewWriteBehind wb;
+        synchronized (ReviewWriteBehind.class) {
+            wb = instance;
+        }
+        if (wb != null) wb.shutdown(timeoutMs);
+    }
+
+    /**
+     * Hold the writer back (e.g. while an import replaces the tables); waits for a batch already being written.
+     * Ratings are still journaled and acknowledged meanwhile. Every call needs a {@link #resume()}.
+     */
+    public synchronized void pause() {
+        paused++;
+        while (writing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public synchronized void resume() {
+        paused--;
+        notifyAll();
+    }
+
+    /** Number of ratings not yet written to the database */
+    public synchronized int pendingCount() { return pending.size(); }
+
+    /**
+     * Plan state of every rating not yet in the database, newest per plan id, with planned_on set as the
+     * DB write will set it. Take it before reading plans from the DB and lay it over what was read:
+     * an entry applied in between is then in both, with the same values.
+     */
+    public synchronized Map<Integer, ReviewPlan> pendingPlans() {
+        Map<Integer, ReviewPlan> map = new HashMap<>();
+        for (Entry e : pending) {
+            ReviewPlan p = copyOf(e.plan);
+            p.setPlannedOn(p.getReviewedOn().plusDays(p.getIntervalDays()));
+            map.put(p.getId(), p);
+        }
+        return map;
+    }
+
+    /**
+     * Block until every pending rating is in the database or the timeout expires.
+     * @return true if nothing is pending any more
+     */
+    public synchronized boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!pending.isEmpty()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return false;
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Flush and stop the writer; unflushed entries stay in the journal for the next start */
+    public void shutdown(long timeoutMs) {
+        flush(timeoutMs);
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (journal != null) journal.close();
+            } catch (IOException e) { e.printStackTrace(); }
+            journal = null;
+        }
+    }
+
+    // -------------------- writer thread --------------------
+
+    private void drainLoop() {
+        long backoff = 500;
+        while (true) {
+            List<Entry> batch = new ArrayList<>();
+            synchronized (this) {
+                while (running && (pending.isEmpty() || paused > 0)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) return; // stopped and drained
+                for (Entry e : pending) {
+                    if (batch.size() == BATCH_SIZE) break;
+                    batch.add(e);
+                }
+                writing = true;
+            }
+
+            int done;
+            try {
+                done = write(batch);
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                    notifyAll();
+                }
+            }
+            if (done > 0) {
+                synchronized (this) {
+                    for (int i = 0; i < done; i++) pending.pollFirst();
+                    try {
+                        writeCheckpoint(batch.get(done - 1).seq);
+                        if (pending.isEmpty() && journal != null) journal.truncate(0); // everything applied
+                    } catch (IOException e) { e.printStackTrace(); }
+                    notifyAll();
+                }
+            }
+            if (done == batch.size()) {
+                backoff = 500;
+                continue;
+            }
+
+            // DB unavailable: keep the rest and try again later
+            System.err.println("Write-behind: DB write failed, retry in " + backoff + " ms");
+            synchronized (this) {
+                if (!running) return;
+                try {
+                    wait(backoff);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Write a batch in one transaction. If the database rejects it for good, write the ratings one at a
+     * time so only the offending ones go to the dead-letter file.
+     * @return number of entries from the head of the batch that are written or set aside
+     */
+    private int write(List<Entry> batch) {
+        try {
+            writeBatch(batch);
+            return batch.size();
+        } catch (Exception ex) {
+            if (!isPermanent(ex)) {
+                System.err.println("Write-behind: " + ex);
+                return 0;
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Entry e = batch.get(i);
+            try {
+                writeBatch(List.of(e));
+            } catch (Exception ex) {
+                if (!isPermanent(ex)) {
+                    System.err.println("Write-behind: " + ex);
+                    return i;
+                }
+                try {
+                    deadLetter(encode(e), ex.toString());
+                } catch (IOException io) {
+                    io.printStackTrace();
+                    return i; // keep it in the journal rather than lose it
+                }
+                ReviewStatisticDAO.cache().evict(e.stat.getCardId()); // drop the rating the UI already counted
+                System.err.println("Write-behind: rating of card " + e.stat.getCardId()
+                        + " rejected, moved to " + deadLetterFile + ": " + ex.getMessage());
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * Errors that a retry cannot fix: constraint violations (e.g. the card was deleted after the rating)
+     * and invalid data. Connection loss, timeouts, deadlocks and the like are retried.
+     */
+    private static boolean isPermanent(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException || t instanceof SQLDataException) return true;
+            if (t instanceof SQLException) {
+                String state = ((SQLException) t).getSQLState();
+                if (state != null && (state.startsWith("23") || state.startsWith("22"))) return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeBatch(List<Entry> batch) throws Exception {
+        List<ReviewStatistic> stats = new ArrayList<>(batch.size());
+        List<ReviewPlan> plans = new ArrayList<>(batch.size());
+        for (Entry e : batch) {
+            stats.add(e.stat);
+            plans.add(e.plan);
+        }
+        long[] seqs = new long[batch.size()];
+        for (int i = 0; i < seqs.length; i++) seqs[i] = batch.get(i).seq;
+        ReviewStatisticRepository repo = Repositories.stats();
+        if (repo instanceof ReviewStatisticDAO dao) dao.recordJournaled(journalId, seqs, stats, plans);
+        else repo.recordReviews(stats, plans);
+    }
+
+    private void writeDirect(ReviewStatistic s, ReviewPlan p) {
+        try {
+            Repositories.stats().recordReviews(List.of(s), List.of(p));
+            ReviewStatisticDAO.cache().apply(s);
+        } catch (Exception e) { e.printStackTrace(); }
+    }
+
+    // -------------------- journal file --------------------
+
+    /**
+     * Load the entries after the checkpoint. A crash inside submit() can leave a torn last line (no newline);
+     * it was never acknowledged, so it is dropped. A complete line that does not decode goes to the
+     * dead-letter file. Either way the journal is rewritten without it and the rest is replayed.
+     */
+    private void recover(long applied) throws IOException {
+        nextSeq = Math.max(applied + 1, System.currentTimeMillis() * 1000);
+        if (!Files.exists(journalFile)) return;
+        byte[] data = Files.readAllBytes(journalFile);
+        boolean rewrite = false;
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') continue;
+            String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            if (line.isEmpty()) continue;
+            Entry e;
+            try {
+                e = decode(line);
+            } catch (RuntimeException ex) {
+                System.err.println("Review journal: unreadable entry moved to " + deadLetterFile + ": " + ex);
+                deadLetter(line, ex.toString());
+                rewrite = true;
+                continue;
+            }
+            if (e.seq > applied) pending.add(e);
+            nextSeq = Math.max(nextSeq, e.seq + 1);
+        }
+        if (start < data.length) {
+            System.err.println("Review journal: dropped a torn last entry (" + (data.length - start) + " bytes)");
+            rewrite = true;
+        }
+        if (rewrite) {
+            StringBuilder sb = new StringBuilder();
+            for (Entry e : pending) sb.append(encode(e)).append('\n');
+            Path tmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+            Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+            Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /** Append one entry and force it to disk; on failure cut off whatever part of it was written */
+    private void append(Entry e) {
+        long end = -1;
+        try {
+            end = journal.size();
+            ByteBuffer buf = ByteBuffer.wrap((encode(e) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) journal.write(buf);
+            journal.force(false);
+        } catch (IOException ex) {
+            try {
+                if (end >= 0) journal.truncate(end);
+            } catch (IOException t) { ex.addSuppressed(t); }
+            throw new UncheckedIOException("Rating not saved: cannot write " + journalFile, ex);
+        }
+    }
+
+    private void deadLetter(String line, String reason) throws IOException {
+        String text = "# " + LocalDateTime.now() + " " + reason.replace('\n', ' ') + "\n" + line + "\n";
+        try (FileChannel ch = FileChannel.open(deadLetterFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(false);
+        }
+    }
+
+    // -------------------- journal format --------------------
+    // seq, card_id, plan_id, reviewed_at, duration_ms, correct, rating,
+    // interval_days, repeats, ease_factor, reviewed_on, notes  (tab separated)
+
+    private static String encode(Entry e) {
+        ReviewStatistic s = e.stat;
+        ReviewPlan p = e.plan;
+        return e.seq + "\t" + s.getCardId() + "\t" + p.getId() + "\t" + s.getReviewedAt() + "\t"
+                + s.getDurationMs() + "\t" + (s.isCorrect() ? 1 : 0) + "\t" + s.getRating() + "\t"
+                + p.getIntervalDays() + "\t" + p.getRepeats() + "\t" + p.getEaseFactor() + "\t"
+                + p.getReviewedOn() + "\t" + escape(s.getNotes());
+    }
+
+    private static Entry decode(String line) {
+        String[] f = line.split("\t", -1);
+        int cardId = Integer.parseInt(f[1]);
+        int rating = Integer.parseInt(f[6]);
+        ReviewStatistic s = new ReviewStatistic(null, cardId, LocalDateTime.parse(f[3]),
+                Integer.parseInt(f[4]), "1".equals(f[5]), rating, unescape(f[11]));
+        ReviewPlan p = new ReviewPlan();
+        p.setId(Integer.parseInt(f[2]));
+        p.setCardId(cardId);
+        p.setRating(rating);
+        p.setIntervalDays(Integer.parseInt(f[7]));
+        p.setRepeats(Integer.parseInt(f[8]));
+        p.setEaseFactor(Double.parseDouble(f[9]));
+        p.setReviewedOn(LocalDate.parse(f[10]));
+        return new Entry(Long.parseLong(f[0]), s, p);
+    }
+
+    private static String escape(String v) {
+        if (v == null) return "\\N";
+        StringBuilder sb = new StringBuilder(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            switch (ch) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String v) {
+        if (v.equals("\\N")) return null;
+        StringBuilder sb = new StringBuilder(v.length());
+        for (int i = 0; i < v.length(); i++) {
+            char ch = v.charAt(i);
+            if (ch == '\\' && i + 1 < v.length()) {
+                char n = v.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) return 0L;
+        String v = Files.readString(checkpointFile, StandardCharsets.UTF_8).trim();
+        return v.isEmpty() ? 0L : Long.parseLong(v);
+    }
+
+    /** Only saves replay work: the database decides what was applied (see recordJournaled) */
+    private void writeCheckpoint(long seq) throws IOException {
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        writeSynced(tmp, Long.toString(seq));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Random id of this installation's journal, created on first use */
+    private static String readJournalId(Path file) throws IOException {
+        if (Files.exists(file)) {
+            String id = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (!id.isEmpty()) return id;
+        }
+        String id = UUID.randomUUID().toString();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        writeSynced(tmp, id);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    private static void writeSynced(Path file, String text) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+    }
+
+    private static ReviewPlan copyOf(ReviewPlan src) {
+        ReviewPlan p = new ReviewPlan();
+        p.setId(src.getId());
+        p.setCardId(src.getCardId());
+        p.setPlannedOn(src.getPlannedOn());
+        p.setReviewedOn(src.getReviewedOn());
+        p.setRating(src.getRating());
+        p.setIntervalDays(src.getIntervalDays());
+        p.setRepeats(src.getRepeats());
+        p.setEaseFactor(src.getEaseFactor());
+        return p;
+    }
+}
@@ -0,0 +1,73 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aggregated review numbers of one card.
+ * Keeps raw sums (not averages) so a new review can be folded in without re-reading the history.
+ */
+public class CardStats {
+    private final int cardId;
+    private final String question;   // only filled by the joined table queries
+    private final int count;
+    private final long sumDurationMs;
+    private final long sumRating;
+    private final int correctCount;
+    private final LocalDateTime firstReviewedAt;
+    private final LocalDateTime lastReviewedAt;
+
+    public CardStats(int cardId, String question, int count,
+                     long sumDurationMs, long sumRating, int correctCount,
+                     LocalDateTime firstReviewedAt, LocalDateTime lastReviewedAt) {
+        this.cardId = cardId;
+        this.question = question;
+        this.count = count;
+        this.sumDurationMs = sumDurationMs;
+        this.sumRating = sumRating;
+        this.correctCount = correctCount;
+        this.firstReviewedAt = firstReviewedAt;
+        this.lastReviewedAt = lastReviewedAt;
+    }
+
+    public CardStats(int cardId, String question, int count,
+                     long sumDurationMs, long sumRating, int correctCount) {
+        this(cardId, question, count, sumDurationMs, sumRating, correctCount, null, null);
+    }
+
+    public static CardStats empty(int cardId) {
+        return new CardStats(cardId, null, 0, 0L, 0L, 0);
+    }
+
+    /** Same numbers with one more review folded in (question is not carried over). */
+    public CardStats plus(ReviewStatistic s) {
+        LocalDateTime at = s.getReviewedAt();
+        LocalDateTime first = firstReviewedAt;
+        LocalDateTime last = lastReviewedAt;
+        if (at != null) {
+            if (first == null || at.isBefore(first)) first = at;
+            if (last == null || at.isAfter(last)) last = at;
+        }
+        return new CardStats(cardId, null, count + 1,
+                sumDurationMs + s.getDurationMs(), sumRating + s.getRating(),
+                correctCount + (s.isCorrect() ? 1 : 0), first, last);
+    }
+
+    /** Copy without the question text, for long-lived snapshots. */
+    public CardStats withoutQuestion() {
+        return question == null ? this
+                : new CardStats(cardId, null, count, sumDurationMs, sumRating, correctCount, firstReviewedAt, lastReviewedAt);
+    }
+
+    public int getCardId() { return cardId; }
+    public String getQuestion() { return question; }
+    public int getCount() { return count; }
+    public long getSumDurationMs() { return sumDurationMs; }
+    public long getSumRating() { return sumRating; }
+    public int getCorrectCount() { return correctCount; }
+    public LocalDateTime getFirstReviewedAt() { return firstReviewedAt; }
+    public LocalDateTime getLastReviewedAt() { return lastReviewedAt; }
+
+    public double getAvgDurationMs() { return count == 0 ? 0.0 : (double) sumDurationMs / count; }
+    public double getAvgRating() { return count == 0 ? 0.0 : (double) sumRating / count; }
+    public double getCorrectRate() { return count == 0 ? 0.0 : (double) correctCount / count; }
+}
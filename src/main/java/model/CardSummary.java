@@ -0,0 +1,20 @@
+package model;
+
+import java.time.LocalDate;
+
+/** Lightweight card row for list views: question preview only, no answer. */
+public class CardSummary {
+    private final int id;
+    private final String question;
+    private final LocalDate createdAt;
+
+    public CardSummary(int id, String question, LocalDate createdAt) {
+        this.id = id;
+        this.question = question;
+        this.createdAt = createdAt;
+    }
+
+    public int getId() { return id; }
+    public String getQuestion() { return question; }
+    public LocalDate getCreatedAt() { return createdAt; }
+}
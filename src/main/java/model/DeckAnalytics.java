@@ -0,0 +1,279 @@
+package model;
+
+import util.IntLongMap;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Deck-wide analytics: reviews and study time per day over the last year (heatmap, time chart),
+ * retention by the interval since the card's previous review, and the distribution of ease factors.
+ * <p>
+ * Built in one pass over the plans and one over the review log. The log is split into card-id ranges;
+ * every range is scanned into its own primitive-array accumulator on a fork/join pool and the
+ * accumulators are merged pairwise. Afterwards {@link #apply} folds in single new ratings, using the
+ * per-card last review day and ease bucket kept from the plans, so the result stays exact all day
+ * without another scan. Not thread-safe; DeckAnalyticsCache guards it.
+ */
+public final class DeckAnalytics {
+    /** Days covered by the heatmap and the time chart: 53 weeks, ending today */
+    public static final int DAYS = 53 * 7;
+    /** Exclusive upper bounds (days since the previous review) of the interval buckets; the last bucket is open */
+    private static final int[] INTERVAL_LIMITS = {1, 2, 4, 8, 15, 31, 61, 121, 366};
+    private static final String[] INTERVAL_LABELS =
+            {"0 d", "1 d", "2–3 d", "4–7 d", "8–14 d", "15–30 d", "1–2 mo", "2–4 mo", "4–12 mo", "> 1 y"};
+    public static final int INTERVAL_BUCKETS = INTERVAL_LIMITS.length + 1;
+    /** Ease buckets of 0.1 from SM-2's minimum 1.3; the last one holds 3.0 and above */
+    public static final int EASE_BUCKETS = 18;
+    private static final double EASE_MIN = 1.3;
+    private static final double EASE_STEP = 0.1;
+    /** Ratings from this value on count as recalled (same split as SM-2's reset and FsrsOptimizer) */
+    private static final int RECALLED = 3;
+    private static final int NONE = PlanStore.NONE;
+
+    /**
+     * Scan of one card-id range [fromCardId, toCardId): feeds the reviews, ordered by card then time,
+     * to {@link Acc#addReview}. Ranges never share a card, so they can run in parallel.
+     */
+    public interface RangeScan {
+        /** @return false if the scan failed */
+        boolean scan(int fromCardId, int toCardId, Acc into);
+    }
+
+    /** Review counters of one range; all arrays are indexed as in the snapshot */
+    public static final class Acc {
+        private final long firstDay;
+        final int[] reviewsPerDay = new int[DAYS];
+        final long[] msPerDay = new long[DAYS];
+        final int[] intervalReviews = new int[INTERVAL_BUCKETS];
+        final int[] intervalRecalled = new int[INTERVAL_BUCKETS];
+        long reviews;
+        long firstReviews;
+        long totalMs;
+        private int card = NONE;
+        private long prevDay;
+
+        Acc(long firstDay) {
+            this.firstDay = firstDay;
+        }
+
+        /** Matches ReviewStatisticRepository.ReviewLogVisitor; reviews must come ordered by card, then time */
+        public void addReview(int cardId, long epochDay, int durationMs, int rating) {
+            if (cardId != card) {
+                card = cardId;
+                prevDay = NONE;
+            }
+            count(epochDay, prevDay, durationMs, rating);
+            prevDay = epochDay;
+        }
+
+        void count(long day, long prev, int durationMs, int rating) {
+            reviews++;
+            totalMs += Math.max(0, durationMs);
+            long d = day - firstDay;
+            if (d >= 0 && d < DAYS) {
+                reviewsPerDay[(int) d]++;
+                msPerDay[(int) d] += Math.max(0, durationMs);
+            }
+            if (prev == NONE) {
+                firstReviews++; // nothing to retain yet
+                return;
+            }
+            int b = intervalBucket(day - prev);
+            intervalReviews[b]++;
+            if (rating >= RECALLED) intervalRecalled[b]++;
+        }
+
+        Acc merge(Acc o) {
+            for (int i = 0; i < DAYS; i++) {
+                reviewsPerDay[i] += o.reviewsPerDay[i];
+                msPerDay[i] += o.msPerDay[i];
+            }
+            for (int i = 0; i < INTERVAL_BUCKETS; i++) {
+                intervalReviews[i] += o.intervalReviews[i];
+                intervalRecalled[i] += o.intervalRecalled[i];
+            }
+            reviews += o.reviews;
+            firstReviews += o.firstReviews;
+            totalMs += o.totalMs;
+            return this;
+        }
+    }
+
+    private final long today;
+    private final Acc totals;
+    private final int[] easeCounts = new int[EASE_BUCKETS];
+    private final IntLongMap cards;      // card -> last review day (high 32 bits) | ease bucket (low 32 bits)
+    private final long scanMs;
+
+    private DeckAnalytics(long today, Acc totals, PlanStore plans, long scanMs) {
+        this.today = today;
+        this.totals = totals;
+        this.scanMs = scanMs;
+        this.cards = new IntLongMap(plans.size());
+        for (int i = 0; i < plans.size(); i++) {
+            int b = easeBucket(plans.ease(i));
+            easeCounts[b]++;
+            cards.put(plans.cardId(i), pack(plans.reviewedOn(i), b));
+        }
+    }
+
+    /**
+     * Scan the whole history.
+     * @param plans       all plans (ReviewPlanRepository.loadPlanStore); also bound the card-id ranges
+     * @param today       epoch day of the last heatmap column
+     * @param parallelism concurrent range scans (each holds one DB connection)
+     */
+    public static DeckAnalytics compute(PlanStore plans, long today, int parallelism, RangeScan scan) {
+        long start = System.currentTimeMillis();
+        int[] bounds = ranges(plans, Math.max(1, parallelism) * 4);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            Acc totals = pool.invoke(new Scan(scan, bounds, today - DAYS + 1, 0, bounds.length - 1));
+            return new DeckAnalytics(today, totals, plans, System.currentTimeMillis() - start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Card-id boundaries of n ranges of equal width; the outer ranges are open so no card is missed */
+    private static int[] ranges(PlanStore plans, int n) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int i = 0; i < plans.size(); i++) {
+            min = Math.min(min, plans.cardId(i));
+            max = Math.max(max, plans.cardId(i));
+        }
+        if (min > max) return new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE};
+        long step = Math.max(1, ((long) max - min + n) / n);
+        int[] b = new int[n + 1];
+        for (int k = 1; k < n; k++) b[k] = (int) Math.min(Integer.MAX_VALUE - 1, min + k * step);
+        b[0] = Integer.MIN_VALUE;
+        b[n] = Integer.MAX_VALUE;
+        return b;
+    }
+
+    /** Scans ranges [from, to) of the boundaries and merges the accumulators on the way up */
+    private static final class Scan extends RecursiveTask<Acc> {
+        private final RangeScan scan;
+        private final int[] bounds;
+        private final long firstDay;
+        private final int from, to;
+
+        Scan(RangeScan scan, int[] bounds, long firstDay, int from, int to) {
+            this.scan = scan;
+            this.bounds = bounds;
+            this.firstDay = firstDay;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Acc compute() {
+            if (to - from == 1) {
+                Acc acc = new Acc(firstDay);
+                if (bounds[from] < bounds[to] && !scan.scan(bounds[from], bounds[to], acc)) {
+                    throw new IllegalStateException("Review log scan failed for cards " + bounds[from] + ".." + bounds[to]);
+                }
+                return acc;
+            }
+            int mid = (from + to) >>> 1;
+            Scan right = new Scan(scan, bounds, firstDay, mid, to);
+            right.fork();
+            Acc left = new Scan(scan, bounds, firstDay, from, mid).compute();
+            return left.merge(right.join());
+        }
+    }
+
+    /**
+     * Fold in one new rating (after the scan) and the card's new ease factor.
+     * Ratings of other days than the one scanned are ignored; the next day brings a new scan anyway.
+     */
+    public void apply(int cardId, long epochDay, int durationMs, int rating, double newEase) {
+        if (epochDay != today) return;
+        long state = cards.get(cardId, pack(NONE, -1));
+        int prevDay = (int) (state >> 32);
+        int oldBucket = (int) state;
+        totals.count(epochDay, prevDay, durationMs, rating);
+        int b = easeBucket(newEase);
+        if (oldBucket >= 0) easeCounts[oldBucket]--;
+        easeCounts[b]++;
+        cards.put(cardId, pack((int) epochDay, b));
+    }
+
+    /** Immutable copy for the UI */
+    public Snapshot snapshot() {
+        return new Snapshot(today, totals.reviewsPerDay.clone(), totals.msPerDay.clone(),
+                totals.intervalReviews.clone(), totals.intervalRecalled.clone(), easeCounts.clone(),
+                totals.reviews, totals.firstReviews, totals.totalMs, cards.size(), scanMs);
+    }
+
+    /** Epoch day the scan was made for */
+    public long getDay() { return today; }
+
+    private static long pack(int day, int easeBucket) {
+        return ((long) day << 32) | (easeBucket & 0xFFFFFFFFL);
+    }
+
+    static int intervalBucket(long days) {
+        int b = 0;
+        while (b < INTERVAL_LIMITS.length && days >= INTERVAL_LIMITS[b]) b++;
+        return b;
+    }
+
+    static int easeBucket(double ease) {
+        int b = (int) Math.floor((ease - EASE_MIN) / EASE_STEP + 1e-9);
+        return Math.max(0, Math.min(EASE_BUCKETS - 1, b));
+    }
+
+    public static String intervalLabel(int bucket) { return INTERVAL_LABELS[bucket]; }
+
+    public static String easeLabel(int bucket) {
+        String s = String.format("%.1f", EASE_MIN + bucket * EASE_STEP);
+        return bucket == EASE_BUCKETS - 1 ? s + "+" : s;
+    }
+
+    /** What the dashboard shows; day index 0 is DAYS - 1 days before {@link #getToday()} */
+    public static final class Snapshot {
+        private final long today;
+        private final int[] reviewsPerDay;
+        private final long[] msPerDay;
+        private final int[] intervalReviews, intervalRecalled, easeCounts;
+        private final long reviews, firstReviews, totalMs;
+        private final int cards;
+        private final long scanMs;
+
+        Snapshot(long today, int[] reviewsPerDay, long[] msPerDay, int[] intervalReviews, int[] intervalRecalled,
+                 int[] easeCounts, long reviews, long firstReviews, long totalMs, int cards, long scanMs) {
+            this.today = today;
+            this.reviewsPerDay = reviewsPerDay;
+            this.msPerDay = msPerDay;
+            this.intervalReviews = intervalReviews;
+            this.intervalRecalled = intervalRecalled;
+            this.easeCounts = easeCounts;
+            this.reviews = reviews;
+            this.firstReviews = firstReviews;
+            this.totalMs = totalMs;
+            this.cards = cards;
+            this.scanMs = scanMs;
+        }
+
+        public long getToday() { return today; }
+        public long getFirstDay() { return today - DAYS + 1; }
+        public int getReviews(int day) { return reviewsPerDay[day]; }
+        public long getStudyMs(int day) { return msPerDay[day]; }
+        public int getMaxReviewsPerDay() { return Arrays.stream(reviewsPerDay).max().orElse(0); }
+        public int getIntervalReviews(int bucket) { return intervalReviews[bucket]; }
+        /** Share of reviews in the bucket rated 3 or better, NaN if there were none */
+        public double getRetention(int bucket) {
+            return intervalReviews[bucket] == 0 ? Double.NaN : (double) intervalRecalled[bucket] / intervalReviews[bucket];
+        }
+        public int getEaseCount(int bucket) { return easeCounts[bucket]; }
+        public long getTotalReviews() { return reviews; }
+        /** Reviews that were a card's first, so have no interval */
+        public long getFirstReviews() { return firstReviews; }
+        public long getTotalStudyMs() { return totalMs; }
+        public int getCards() { return cards; }
+        public long getScanMs() { return scanMs; }
+    }
+}
@@ -0,0 +1,161 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Review queue of one session: an indexed binary min-heap over the loaded plans.
+ * Order: planned day (most overdue first), then skip order, then lower ease factor, then id.
+ * Rating a card re-keys its entry in O(log n) instead of rebuilding the list; plans loaded for
+ * tomorrow simply surface after midnight because "due" is checked against today's date on every peek.
+ */
+public class DueQueue {
+    private final ReviewPlan[] plans;
+    private final String[] questions;
+    private final String[] answers;
+    private final long[] day;     // effective planned day (epoch day)
+    private final long[] skip;    // 0, or the order in which the card was skipped
+    private final int[] heap;     // heap position -> entry
+    private final int[] pos;      // entry -> heap position
+    private final TreeMap<Long, Integer> perDay = new TreeMap<>(); // effective day -> entries
+    private final Deque<Integer> skipped = new ArrayDeque<>();
+    private long skipSeq;
+
+    public DueQueue(ReviewSession session) {
+        int n = session.size();
+        plans = new ReviewPlan[n];
+        questions = new String[n];
+        answers = new String[n];
+        day = new long[n];
+        skip = new long[n];
+        heap = new int[n];
+        pos = new int[n];
+        for (int i = 0; i < n; i++) {
+            plans[i] = session.getPlan(i);
+            questions[i] = session.getQuestion(i);
+            answers[i] = session.getAnswer(i);
+            LocalDate d = plans[i].getPlannedOn();
+            day[i] = d == null ? today() : d.toEpochDay();
+            heap[i] = i;
+            pos[i] = i;
+            perDay.merge(day[i], 1, Integer::sum);
+        }
+        for (int i = n / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    /** Entry that should be reviewed next, or -1 if nothing is due today */
+    public int peekDue() {
+        if (heap.length == 0) return -1;
+        int top = heap[0];
+        return day[top] <= today() ? top : -1;
+    }
+
+    /** Entries due today or earlier */
+    public int dueCount() {
+        int n = 0;
+        for (int c : perDay.headMap(today(), true).values()) n += c;
+        return n;
+    }
+
+    public int size() { return heap.length; }
+
+    public ReviewPlan getPlan(int entry) { return plans[entry]; }
+    public String getQuestion(int entry) { return questions[entry]; }
+    public String getAnswer(int entry) { return answers[entry]; }
+
+    /**
+     * Call after SM-2 updated the entry's plan: it becomes due again on today + interval_days
+     * (also written into the plan's planned_on).
+     */
+    public void reschedule(int entry) {
+        ReviewPlan p = plans[entry];
+        LocalDate next = LocalDate.now().plusDays(p.getIntervalDays() == null ? 1 : p.getIntervalDays());
+        p.setPlannedOn(next);
+        skipped.remove(entry);
+        rekey(entry, next.toEpochDay(), 0);
+    }
+
+    /** Move a due entry behind every other card due today (it stays due) */
+    public void skip(int entry) {
+        skipped.push(entry);
+        rekey(entry, Math.max(day[entry], today()), ++skipSeq);
+    }
+
+    /**
+     * Undo the most recent skip, so that card is back at its original place.
+     * @return the entry, or -1 if nothing was skipped
+     */
+    public int unskip() {
+        Integer entry = skipped.poll();
+        if (entry == null) return -1;
+        LocalDate d = plans[entry].getPlannedOn();
+        rekey(entry, d == null ? today() : d.toEpochDay(), 0);
+        return entry;
+    }
+
+    // ===== heap =====
+
+    private void rekey(int entry, long newDay, long newSkip) {
+        decrement(perDay, day[entry]);
+        perDay.merge(newDay, 1, Integer::sum);
+        day[entry] = newDay;
+        skip[entry] = newSkip;
+        int i = pos[entry];
+        siftUp(i);
+        siftDown(pos[entry]);
+    }
+
+    private static void decrement(Map<Long, Integer> counts, long key) {
+        counts.computeIfPresent(key, (k, c) -> c == 1 ? null : c - 1);
+    }
+
+    private boolean less(int a, int b) {
+        if (day[a] != day[b]) return day[a] < day[b];
+        if (skip[a] != skip[b]) return skip[a] < skip[b];
+        double ea = ease(a), eb = ease(b);
+        if (ea != eb) return ea < eb; // harder cards first
+        return plans[a].getId() < plans[b].getId();
+    }
+
+    private double ease(int entry) {
+        Double ef = plans[entry].getEaseFactor();
+        return ef == null ? 2.5 : ef;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(heap[i], heap[parent])) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        int n = heap.length;
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= n) break;
+            int r = l + 1;
+            int min = (r < n && less(heap[r], heap[l])) ? r : l;
+            if (!less(heap[min], heap[i])) break;
+            swap(i, min);
+            i = min;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i], b = heap[j];
+        heap[i] = b;
+        heap[j] = a;
+        pos[b] = i;
+        pos[a] = j;
+    }
+
+    private static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+}
@@ -0,0 +1,221 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo forecast of the future review load. Every plan is stepped forward with the given
+ * scheduler ({@link Scheduler#step}, the active one is {@link Schedulers#current()}); each review's rating is drawn from that card's own rating history,
+ * smoothed towards the whole collection's distribution so cards with few reviews still behave sensibly.
+ * Cards never influence each other (no daily limit), so a run walks one card at a time from review
+ * to review instead of scanning every card on every day. Runs are split across cores with fork/join.
+ */
+public final class Forecast {
+    /** Rating distribution (0..5) used when the collection has no history at all */
+    private static final double[] DEFAULT_RATINGS = {0.02, 0.03, 0.05, 0.25, 0.40, 0.25};
+    /** Weight of the global distribution, in pseudo-reviews, when building a card's distribution */
+    private static final double PRIOR_WEIGHT = 5;
+    /** Runs per fork/join leaf */
+    private static final int RUNS_PER_TASK = 2;
+
+    private Forecast() {}
+
+    /** Plans (as loaded by ReviewPlanRepository.loadPlanStore) plus per-card rating counts */
+    public static final class Input {
+        private final PlanStore plans;
+        private final Map<Integer, int[]> ratings = new HashMap<>();
+        private final int[] globalRatings = new int[6];
+
+        public Input(PlanStore plans) {
+            this.plans = plans;
+        }
+
+        /** Matches ReviewStatisticRepository.RatingCountVisitor */
+        public void addRatingCount(int card, int rating, int count) {
+            if (rating < 0 || rating > 5) return;
+            ratings.computeIfAbsent(card, k -> new int[6])[rating] += count;
+            globalRatings[rating] += count;
+        }
+
+        public int size() { return plans.size(); }
+    }
+
+    /** Per-day review counts over all runs; index 0 is today and includes everything overdue */
+    public static final class Result {
+        private final double[] mean;
+        private final int[] p5, p50, p95;
+        private final int runs;
+        private final int cards;
+        private final long elapsedMs;
+
+        private Result(double[] mean, int[] p5, int[] p50, int[] p95, int runs, int cards, long elapsedMs) {
+            this.mean = mean;
+            this.p5 = p5;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.runs = runs;
+            this.cards = cards;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public int getDays() { return mean.length; }
+        public double getMean(int day) { return mean[day]; }
+        public int getP5(int day) { return p5[day]; }
+        public int getMedian(int day) { return p50[day]; }
+        public int getP95(int day) { return p95[day]; }
+        public int getRuns() { return runs; }
+        /** Simulated cards, including the hypothetical new ones */
+        public int getCards() { return cards; }
+        public long getElapsedMs() { return elapsedMs; }
+    }
+
+    /**
+     * @param scheduler algorithm the reviews are simulated with
+     * @param today     epoch day treated as day 0
+     * @param newCards  hypothetical cards added on top of the existing ones (e.g. a deck about to be imported)
+     * @param newPerDay how many of those are introduced per day (first review the day after, like generateFirstPlan)
+     * @param seed      same seed, same result
+     */
+    public static Result run(Input in, Scheduler scheduler, long today, int days, int runs, int newCards, int newPerDay, long seed) {
+        long start = System.currentTimeMillis();
+        PlanStore plans = in.plans;
+        int existing = plans.size();
+        int total = existing + Math.max(0, newCards);
+        int[] due = new int[total];
+        int[] interval = new int[total];
+        int[] repeats = new int[total];
+        double[] ease = new double[total];
+        int[] last = new int[total];
+        double[] cdf = new double[total * 6];
+
+        double[] global = globalDistribution(in.globalRatings);
+        for (int i = 0; i < existing; i++) {
+            due[i] = (int) Math.max(0, Math.min(days, plans.due[i] - today));
+            interval[i] = Math.max(1, plans.interval[i]);
+            repeats[i] = plans.repeats[i];
+            ease[i] = plans.ease[i];
+            last[i] = plans.reviewedOn[i] == PlanStore.NONE ? PlanStore.NONE : (int) (plans.reviewedOn[i] - today);
+            fillCdf(cdf, i, in.ratings.get(plans.cardId[i]), global);
+        }
+        int perDay = Math.max(1, newPerDay);
+        for (int j = 0; j < total - existing; j++) {
+            int i = existing + j;
+            due[i] = (int) Math.min(days, j / perDay + 1L);
+            interval[i] = 1;
+            repeats[i] = 0;
+            ease[i] = 2.5;
+            last[i] = PlanStore.NONE;
+            fillCdf(cdf, i, null, global);
+        }
+
+        int[][] counts = new int[runs][days];
+        ForkJoinPool.commonPool().invoke(new Runs(scheduler, due, interval, repeats, last, ease, cdf, counts, seed, 0, runs));
+
+        double[] mean = new double[days];
+        int[] p5 = new int[days], p50 = new int[days], p95 = new int[days];
+        int[] column = new int[runs];
+        for (int d = 0; d < days; d++) {
+            long sum = 0;
+            for (int r = 0; r < runs; r++) {
+                column[r] = counts[r][d];
+                sum += column[r];
+            }
+            Arrays.sort(column);
+            mean[d] = runs == 0 ? 0 : (double) sum / runs;
+            p5[d] = percentile(column, 0.05);
+            p50[d] = percentile(column, 0.50);
+            p95[d] = percentile(column, 0.95);
+        }
+        return new Result(mean, p5, p50, p95, runs, total, System.currentTimeMillis() - start);
+    }
+
+    private static double[] globalDistribution(int[] counts) {
+        long sum = 0;
+        for (int c : counts) sum += c;
+        if (sum == 0) return DEFAULT_RATINGS;
+        double[] p = new double[6];
+        for (int r = 0; r < 6; r++) p[r] = (double) counts[r] / sum;
+        return p;
+    }
+
+    /** Cumulative rating distribution of entry i: (own counts + PRIOR_WEIGHT * global) / (own total + PRIOR_WEIGHT) */
+    private static void fillCdf(double[] cdf, int i, int[] own, double[] global) {
+        double total = PRIOR_WEIGHT;
+        if (own != null) for (int c : own) total += c;
+        double acc = 0;
+        for (int r = 0; r < 6; r++) {
+            acc += ((own == null ? 0 : own[r]) + PRIOR_WEIGHT * global[r]) / total;
+            cdf[i * 6 + r] = acc;
+        }
+        cdf[i * 6 + 5] = 1.0;
+    }
+
+    private static int percentile(int[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(q * (sorted.length - 1)))];
+    }
+
+    /** Simulates runs [from, to); every run writes only its own row of counts */
+    private static final class Runs extends RecursiveAction {
+        private final Scheduler scheduler;
+        private final int[] due, interval, repeats, last;
+        private final double[] ease, cdf;
+        private final int[][] counts;
+        private final long seed;
+        private final int from, to;
+
+        Runs(Scheduler scheduler, int[] due, int[] interval, int[] repeats, int[] last, double[] ease, double[] cdf,
+             int[][] counts, long seed, int from, int to) {
+            this.scheduler = scheduler;
+            this.due = due;
+            this.interval = interval;
+            this.repeats = repeats;
+            this.last = last;
+            this.ease = ease;
+            this.cdf = cdf;
+            this.counts = counts;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= RUNS_PER_TASK) {
+                for (int r = from; r < to; r++) simulate(r);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Runs(scheduler, due, interval, repeats, last, ease, cdf, counts, seed, from, mid),
+                      new Runs(scheduler, due, interval, repeats, last, ease, cdf, counts, seed, mid, to));
+        }
+
+        private void simulate(int run) {
+            SplittableRandom rnd = new SplittableRandom(seed + run * 0x9E3779B97F4A7C15L);
+            int[] day = counts[run];
+            int days = day.length;
+            int[] ivl = new int[1], rep = new int[1];
+            double[] ef = new double[1];
+            for (int i = 0; i < due.length; i++) {
+                int t = due[i], prev = last[i];
+                ivl[0] = interval[i];
+                rep[0] = repeats[i];
+                ef[0] = ease[i];
+                int base = i * 6;
+                while (t < days) {
+                    day[t]++;
+                    double u = rnd.nextDouble();
+                    int rating = 0;
+                    while (rating < 5 && u >= cdf[base + rating]) rating++;
+                    scheduler.step(ivl, rep, ef, 0, rating, prev == PlanStore.NONE ? -1 : t - prev);
+                    prev = t;
+                    t += Math.max(1, ivl[0]);
+                }
+            }
+        }
+    }
+}
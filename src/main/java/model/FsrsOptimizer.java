@@ -0,0 +1,321 @@
+package model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static model.FsrsScheduler.DECAY;
+import static model.FsrsScheduler.FACTOR;
+import static model.FsrsScheduler.MAX_S;
+import static model.FsrsScheduler.MIN_S;
+import static model.FsrsScheduler.PARAMS;
+
+/**
+ * Fits the FSRS weights to the review history: minimises the log loss of "recalled or not"
+ * (rating >= 3) against the predicted retrievability, over every review after a card's first.
+ * <p>
+ * The history is held in primitive arrays (one entry per card and day). Each iteration is one
+ * full pass: cards are split across the fork/join pool, and every leaf carries the exact gradient
+ * along with S and D (forward-mode differentiation, 17 partials per state), so no
+ * finite-difference re-evaluation is needed. Steps use Adam; weights stay within FSRS's bounds.
+ */
+public final class FsrsOptimizer {
+    private static final double[] LOWER = {0.1, 0.1, 0.1, 0.1, 1, 0.1, 0.1, 0, 0, 0.1, 0.01, 0.5, 0.01, 0.01, 0.01, 0, 1};
+    private static final double[] UPPER = {100, 100, 100, 100, 10, 5, 5, 0.5, 3, 0.8, 2.5, 5, 0.2, 0.9, 2, 1, 6};
+    /** Reviews per fork/join leaf */
+    private static final int LEAF_REVIEWS = 16_384;
+    private static final double LEARNING_RATE = 0.04;
+    private static final double EPS = 1e-6;
+
+    private FsrsOptimizer() {}
+
+    /**
+     * Review history as primitive arrays; fill via ReviewStatisticRepository.forEachReview
+     * (which delivers the reviews ordered by card, then time). Only a card's first review per day counts.
+     */
+    public static final class History {
+        private int cards;
+        private int[] start = new int[1025];  // card k owns reviews start[k] .. start[k+1]-1
+        private int n;
+        private int[] elapsed = new int[4096]; // days since the card's previous review (0 for the first)
+        private byte[] grade = new byte[4096];  // 1..4
+        private int lastCard = Integer.MIN_VALUE;
+        private long lastDay;
+
+        /** Matches ReviewStatisticRepository.ReviewVisitor */
+        public void addReview(int cardId, long epochDay, int rating) {
+            if (cardId == lastCard && epochDay <= lastDay) return;
+            if (n == elapsed.length) {
+                elapsed = Arrays.copyOf(elapsed, n * 2);
+                grade = Arrays.copyOf(grade, n * 2);
+            }
+            if (cardId != lastCard) {
+                if (cards + 1 == start.length) start = Arrays.copyOf(start, start.length * 2);
+                start[cards++] = n;
+                elapsed[n] = 0;
+                lastCard = cardId;
+            } else {
+                elapsed[n] = (int) Math.min(Integer.MAX_VALUE, epochDay - lastDay);
+            }
+            lastDay = epochDay;
+            grade[n++] = (byte) FsrsScheduler.grade(rating);
+            start[cards] = n;
+        }
+
+        public int cards() { return cards; }
+        public int reviews() { return n; }
+
+        /**
+         * History drawn from the model itself with the given weights (for benchmarks): each card is
+         * reviewed around its due day, recalled with probability R, graded hard/good/easy 15/70/15 when recalled.
+         */
+        public static History synthetic(int reviews, int reviewsPerCard, double[] w, long seed) {
+            SplittableRandom rnd = new SplittableRandom(seed);
+            History h = new History();
+            int card = 0;
+            while (h.n < reviews) {
+                card++;
+                long day = 0;
+                double s = 0, d = 0;
+                for (int i = 0; i < reviewsPerCard && h.n < reviews; i++) {
+                    int g;
+                    if (i == 0) {
+                        g = 1 + rnd.nextInt(4);
+                        s = w[g - 1];
+                        d = FsrsScheduler.initDifficulty(w, g);
+                    } else {
+                        long t = Math.max(1, Math.round(s * (0.5 + rnd.nextDouble())));
+                        day += t;
+                        double r = FsrsScheduler.retrievability(t, s);
+                        if (rnd.nextDouble() < r) {
+                            double u = rnd.nextDouble();
+                            g = u < 0.15 ? 2 : u < 0.85 ? 3 : 4;
+                            s = FsrsScheduler.stabilityAfterSuccess(w, s, d, r, g);
+                        } else {
+                            g = 1;
+                            s = FsrsScheduler.stabilityAfterFailure(w, s, d, r);
+                        }
+                        d = FsrsScheduler.nextDifficulty(w, d, g);
+                    }
+                    h.addReview(card, day, g + 1); // back to the app's 0..5 scale
+                }
+            }
+            return h;
+        }
+    }
+
+    public static final class Result {
+        private final double[] weights;
+        private final double initialLoss, loss;
+        private final int iterations;
+        private final long reviews;
+        private final long elapsedMs;
+
+        private Result(double[] weights, double initialLoss, double loss, int iterations, long reviews, long elapsedMs) {
+            this.weights = weights;
+            this.initialLoss = initialLoss;
+            this.loss = loss;
+            this.iterations = iterations;
+            this.reviews = reviews;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double[] getWeights() { return weights.clone(); }
+        /** Mean log loss per predicted review with the starting weights */
+        public double getInitialLoss() { return initialLoss; }
+        public double getLoss() { return loss; }
+        public int getIterations() { return iterations; }
+        /** Reviews that were predicted (each card's first review only initialises the state) */
+        public long getReviews() { return reviews; }
+        public long getElapsedMs() { return elapsedMs; }
+    }
+
+    /** Mean log loss and its gradient: {loss, count, d/dw0 .. d/dw16} */
+    public static double[] lossAndGradient(History h, double[] w) {
+        double[] sum = ForkJoinPool.commonPool().invoke(new Pass(h, w, 0, h.cards));
+        double count = Math.max(1, sum[1]);
+        for (int i = 0; i < sum.length; i++) {
+            if (i != 1) sum[i] /= count;
+        }
+        return sum;
+    }
+
+    /**
+     * Adam from the given weights until the loss stops improving (relative change below 1e-5)
+     * or maxIterations passes have been made.
+     */
+    public static Result fit(History h, double[] initial, int maxIterations) {
+        long startMs = System.currentTimeMillis();
+        double[] w = initial.clone();
+        clip(w);
+        double[] m = new double[PARAMS], v = new double[PARAMS];
+        double[] best = w.clone();
+        double first = Double.NaN, bestLoss = Double.POSITIVE_INFINITY, prev = Double.POSITIVE_INFINITY;
+        long reviews = 0;
+        int it = 0;
+        while (it < maxIterations) {
+            double[] lg = lossAndGradient(h, w);
+            double loss = lg[0];
+            reviews = (long) lg[1];
+            if (it == 0) first = loss;
+            if (loss < bestLoss) {
+                bestLoss = loss;
+                best = w.clone();
+            }
+            it++;
+            if (reviews == 0 || Math.abs(prev - loss) < 1e-5 * Math.abs(loss)) break;
+            prev = loss;
+            double b1 = 1 - Math.pow(0.9, it), b2 = 1 - Math.pow(0.999, it);
+            for (int j = 0; j < PARAMS; j++) {
+                double g = lg[2 + j];
+                m[j] = 0.9 * m[j] + 0.1 * g;
+                v[j] = 0.999 * v[j] + 0.001 * g * g;
+                w[j] -= LEARNING_RATE * (m[j] / b1) / (Math.sqrt(v[j] / b2) + 1e-8);
+            }
+            clip(w);
+        }
+        return new Result(best, first, bestLoss, it, reviews, System.currentTimeMillis() - startMs);
+    }
+
+    private static void clip(double[] w) {
+        for (int j = 0; j < PARAMS; j++) w[j] = Math.max(LOWER[j], Math.min(UPPER[j], w[j]));
+    }
+
+    /** One gradient pass over cards [from, to) */
+    private static final class Pass extends RecursiveTask<double[]> {
+        private final History h;
+        private final double[] w;
+        private final int from, to;
+
+        Pass(History h, double[] w, int from, int to) {
+            this.h = h;
+            this.w = w;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= 1 || h.start[to] - h.start[from] <= LEAF_REVIEWS) {
+                double[] out = new double[2 + PARAMS];
+                accumulate(out);
+                return out;
+            }
+            int mid = (from + to) >>> 1;
+            Pass right = new Pass(h, w, mid, to);
+            right.fork();
+            double[] left = new Pass(h, w, from, mid).compute();
+            double[] r = right.join();
+            for (int i = 0; i < left.length; i++) left[i] += r[i];
+            return left;
+        }
+
+        private void accumulate(double[] out) {
+            double[] gS = new double[PARAMS], gD = new double[PARAMS];
+            double[] nS = new double[PARAMS], nD = new double[PARAMS], gR = new double[PARAMS];
+            double loss = 0;
+            long count = 0;
+            for (int c = from; c < to; c++) {
+                int a = h.start[c], b = h.start[c + 1];
+                if (b - a < 2) continue;
+
+                int g = h.grade[a];
+                double s = w[g - 1];
+                Arrays.fill(gS, 0);
+                gS[g - 1] = 1;
+                double d = w[4] - (g - 3) * w[5];
+                Arrays.fill(gD, 0);
+                if (d < 1 || d > 10) {
+                    d = d < 1 ? 1 : 10;
+                } else {
+                    gD[4] = 1;
+                    gD[5] = -(g - 3);
+                }
+
+                for (int i = a + 1; i < b; i++) {
+                    g = h.grade[i];
+                    double t = h.elapsed[i];
+
+                    // retrievability and loss; dR = k * dS
+                    double base = 1 + FACTOR * t / s;
+                    double r = Math.pow(base, DECAY);
+                    double k = DECAY * r / base * (-FACTOR * t / (s * s));
+                    double rc = Math.max(EPS, Math.min(1 - EPS, r));
+                    double dl;
+                    if (g > 1) {
+                        loss -= Math.log(rc);
+                        dl = -1 / rc;
+                    } else {
+                        loss -= Math.log(1 - rc);
+                        dl = 1 / (1 - rc);
+                    }
+                    if (rc != r) dl = 0;
+                    for (int j = 0; j < PARAMS; j++) {
+                        gR[j] = k * gS[j];
+                        out[2 + j] += dl * gR[j];
+                    }
+                    count++;
+
+                    // stability
+                    double s2;
+                    if (g > 1) {
+                        double hard = g == 2 ? w[15] : 1, easy = g == 4 ? w[16] : 1;
+                        double a8 = Math.exp(w[8]), bb = 11 - d, cc = Math.pow(s, -w[9]);
+                        double e10 = Math.exp(w[10] * (1 - r));
+                        double m0 = a8 * bb * cc * (e10 - 1) * easy; // m without the hard factor
+                        double m = m0 * hard;
+                        double de = a8 * bb * cc * easy * e10;      // d m0 / d(w10 * (1 - R))
+                        s2 = s * (1 + m);
+                        for (int j = 0; j < PARAMS; j++) {
+                            double dm0 = m0 * (-gD[j] / bb - w[9] / s * gS[j]) - de * w[10] * gR[j];
+                            nS[j] = (1 + m) * gS[j] + s * hard * dm0;
+                        }
+                        nS[8] += s * m;
+                        nS[9] += s * m * -Math.log(s);
+                        nS[10] += s * hard * de * (1 - r);
+                        if (g == 4) nS[16] += s * m / w[16];
+                        if (g == 2) nS[15] += s * m0;
+                    } else {
+                        double q = Math.pow(d, -w[12]);
+                        double sp = Math.pow(s + 1, w[13]);
+                        double v = Math.exp(w[14] * (1 - r));
+                        s2 = w[11] * q * (sp - 1) * v;
+                        double qv = w[11] * q * v;
+                        for (int j = 0; j < PARAMS; j++) {
+                            nS[j] = s2 * (-w[12] / d * gD[j] - w[14] * gR[j]) + qv * sp * w[13] / (s + 1) * gS[j];
+                        }
+                        nS[11] += s2 / w[11];
+                        nS[12] += s2 * -Math.log(d);
+                        nS[13] += qv * sp * Math.log(s + 1);
+                        nS[14] += s2 * (1 - r);
+                    }
+                    if (s2 < MIN_S || s2 > MAX_S) {
+                        s2 = s2 < MIN_S ? MIN_S : MAX_S;
+                        Arrays.fill(nS, 0);
+                    }
+
+                    // difficulty, with mean reversion towards D0(good) = w4
+                    double d1 = d - w[6] * (g - 3);
+                    double d2 = w[7] * w[4] + (1 - w[7]) * d1;
+                    if (d2 < 1 || d2 > 10) {
+                        d2 = d2 < 1 ? 1 : 10;
+                        Arrays.fill(nD, 0);
+                    } else {
+                        for (int j = 0; j < PARAMS; j++) nD[j] = (1 - w[7]) * gD[j];
+                        nD[6] -= (1 - w[7]) * (g - 3);
+                        nD[7] += w[4] - d1;
+                        nD[4] += w[7];
+                    }
+
+                    s = s2;
+                    d = d2;
+                    double[] tmp = gS; gS = nS; nS = tmp;
+                    tmp = gD; gD = nD; nD = tmp;
+                }
+            }
+            out[0] += loss;
+            out[1] += count;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package model;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * FSRS-style memory model (three components: stability S, difficulty D, retrievability R,
+ * formulas of FSRS v4.5). Ratings 0..2 count as "again", 3 "hard", 4 "good", 5 "easy".
+ * <p>
+ * State mapping onto the review_plan columns: the interval is chosen so that R drops to the desired
+ * retention exactly on the due day, so S = interval_days / {@link #intervalFactor}; D (1..10) is stored
+ * as ease_factor on SM-2's scale (D=1 -> 3.0, D=10 -> 1.3). Switching back to SM-2 therefore keeps sensible values.
+ * The static formulas are shared with {@link FsrsOptimizer}.
+ */
+public final class FsrsScheduler implements Scheduler {
+    public static final int PARAMS = 17;
+    /** FSRS v4.5 defaults, used until weights have been fitted */
+    public static final double[] DEFAULT_WEIGHTS = {
+            0.4872, 1.4003, 3.7145, 13.8206, 5.1618, 1.2298, 0.8975, 0.031, 1.6474,
+            0.1367, 1.0461, 2.1072, 0.0793, 0.3246, 1.587, 0.2272, 2.8755};
+    static final double DECAY = -0.5;
+    static final double FACTOR = 19.0 / 81; // R(S) = 0.9
+    static final double MIN_S = 0.01, MAX_S = 36500;
+    private static final int MAX_INTERVAL = 36500;
+
+    private final double[] w;
+    private final double retention;
+
+    public FsrsScheduler(double[] weights, double desiredRetention) {
+        if (weights.length != PARAMS) throw new IllegalArgumentException("FSRS needs " + PARAMS + " weights");
+        this.w = weights.clone();
+        this.retention = Math.max(0.7, Math.min(0.99, desiredRetention));
+    }
+
+    @Override
+    public String name() { return "fsrs"; }
+
+    @Override
+    public ReviewPlan next(ReviewPlan plan) {
+        int[] interval = {plan.getIntervalDays() == null ? 1 : plan.getIntervalDays()};
+        int[] repeats = {plan.getRepeats() == null ? 0 : plan.getRepeats()};
+        double[] ease = {plan.getEaseFactor() == null ? 2.5 : plan.getEaseFactor()};
+        int elapsed = plan.getReviewedOn() == null ? -1
+                : (int) Math.max(0, ChronoUnit.DAYS.between(plan.getReviewedOn(), LocalDate.now()));
+        step(interval, repeats, ease, 0, plan.getRating() == null ? 0 : plan.getRating(), elapsed);
+        plan.setIntervalDays(interval[0]);
+        plan.setRepeats(repeats[0]);
+        plan.setEaseFactor(ease[0]);
+        return plan;
+    }
+
+    @Override
+    public void step(int[] interval, int[] repeats, double[] ease, int i, int rating, int elapsedDays) {
+        int g = grade(rating);
+        double s, d;
+        if (elapsedDays < 0) {
+            s = w[g - 1];
+            d = initDifficulty(w, g);
+        } else {
+            double prevS = Math.max(MIN_S, interval[i] / intervalFactor(retention));
+            double prevD = difficultyFromEase(ease[i]);
+            double r = retrievability(elapsedDays, prevS);
+            s = g > 1 ? stabilityAfterSuccess(w, prevS, prevD, r, g) : stabilityAfterFailure(w, prevS, prevD, r);
+            d = nextDifficulty(w, prevD, g);
+        }
+        interval[i] = (int) Math.max(1, Math.min(MAX_INTERVAL, Math.round(s * intervalFactor(retention))));
+        repeats[i] = g == 1 ? 0 : repeats[i] + 1;
+        ease[i] = easeFromDifficulty(d);
+    }
+
+    public double[] getWeights() { return w.clone(); }
+    public double getRetention() { return retention; }
+
+    // ===== formulas =====
+
+    /** 0..2 -> 1 (again), 3 -> 2 (hard), 4 -> 3 (good), 5 -> 4 (easy) */
+    public static int grade(int rating) {
+        return rating < 3 ? 1 : Math.min(4, rating - 1);
+    }
+
+    /** Probability of recall t days after a review that left stability s */
+    public static double retrievability(double t, double s) {
+        return Math.pow(1 + FACTOR * t / s, DECAY);
+    }
+
+    /** interval / S at which R falls to the given retention (1.0 for 0.9) */
+    public static double intervalFactor(double retention) {
+        return (Math.pow(retention, 1 / DECAY) - 1) / FACTOR;
+    }
+
+    static double initDifficulty(double[] w, int g) {
+        return clampD(w[4] - (g - 3) * w[5]);
+    }
+
+    static double nextDifficulty(double[] w, double d, int g) {
+        double d1 = d - w[6] * (g - 3);
+        return clampD(w[7] * w[4] + (1 - w[7]) * d1); // mean reversion towards D0(good)
+    }
+
+    static double stabilityAfterSuccess(double[] w, double s, double d, double r, int g) {
+        double hard = g == 2 ? w[15] : 1, easy = g == 4 ? w[16] : 1;
+        double m = Math.exp(w[8]) * (11 - d) * Math.pow(s, -w[9]) * (Math.exp(w[10] * (1 - r)) - 1) * hard * easy;
+        return clampS(s * (1 + m));
+    }
+
+    static double stabilityAfterFailure(double[] w, double s, double d, double r) {
+        return clampS(w[11] * Math.pow(d, -w[12]) * (Math.pow(s + 1, w[13]) - 1) * Math.exp(w[14] * (1 - r)));
+    }
+
+    static double clampD(double d) { return d < 1 ? 1 : d > 10 ? 10 : d; }
+    static double clampS(double s) { return s < MIN_S ? MIN_S : s > MAX_S ? MAX_S : s; }
+
+    static double difficultyFromEase(double ef) {
+        return clampD(10 - (ef - 1.3) * 9 / 1.7);
+    }
+
+    static double easeFromDifficulty(double d) {
+        return 1.3 + (10 - clampD(d)) * 1.7 / 9;
+    }
+}
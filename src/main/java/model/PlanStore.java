@@ -0,0 +1,110 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * All review plans as parallel primitive arrays (structure of arrays), for deck-wide work
+ * (forecasts, replays, bulk rescheduling) that would otherwise box every field of every {@link ReviewPlan}.
+ * Dates are epoch days; a missing reviewed_on or rating is {@link #NONE}.
+ * Load and save through ReviewPlanRepository.loadPlanStore / savePlanStore; rate ranges with
+ * {@link Scheduler#next(PlanStore, int, int, int[], int)} of {@link Schedulers#current()}.
+ */
+public final class PlanStore {
+    public static final int NONE = Integer.MIN_VALUE;
+
+    int size;
+    int[] id;
+    int[] cardId;
+    int[] due;         // planned_on
+    int[] reviewedOn;
+    int[] rating;
+    int[] interval;
+    int[] repeats;
+    double[] ease;
+
+    public PlanStore() {
+        this(1024);
+    }
+
+    public PlanStore(int capacity) {
+        int n = Math.max(16, capacity);
+        id = new int[n];
+        cardId = new int[n];
+        due = new int[n];
+        reviewedOn = new int[n];
+        rating = new int[n];
+        interval = new int[n];
+        repeats = new int[n];
+        ease = new double[n];
+    }
+
+    /** Append one plan; @return its index */
+    public int add(int planId, int card, int dueDay, int reviewedDay, int rate, int intervalDays, int rep, double ef) {
+        if (size == id.length) grow();
+        int i = size++;
+        id[i] = planId;
+        cardId[i] = card;
+        due[i] = dueDay;
+        reviewedOn[i] = reviewedDay;
+        rating[i] = rate;
+        interval[i] = intervalDays;
+        repeats[i] = rep;
+        ease[i] = ef;
+        return i;
+    }
+
+    public int size() { return size; }
+
+    public int id(int i) { return id[i]; }
+    public int cardId(int i) { return cardId[i]; }
+    public int due(int i) { return due[i]; }
+    public int reviewedOn(int i) { return reviewedOn[i]; }
+    public int rating(int i) { return rating[i]; }
+    public int interval(int i) { return interval[i]; }
+    public int repeats(int i) { return repeats[i]; }
+    public double ease(int i) { return ease[i]; }
+
+    public void setDue(int i, int day) { due[i] = day; }
+
+    /** Overwrite the scheduling state of entry i (replays, what-if runs) */
+    public void setState(int i, int intervalDays, int rep, double ef) {
+        interval[i] = intervalDays;
+        repeats[i] = rep;
+        ease[i] = ef;
+    }
+
+    /** Boxed copy of entry i (for the single-plan APIs) */
+    public ReviewPlan toPlan(int i) {
+        ReviewPlan p = new ReviewPlan();
+        p.setId(id[i]);
+        p.setCardId(cardId[i]);
+        p.setPlannedOn(date(due[i]));
+        p.setReviewedOn(date(reviewedOn[i]));
+        p.setRating(rating[i] == NONE ? null : rating[i]);
+        p.setIntervalDays(interval[i]);
+        p.setRepeats(repeats[i]);
+        p.setEaseFactor(ease[i]);
+        return p;
+    }
+
+    public static int epochDay(LocalDate d) {
+        return d == null ? NONE : (int) d.toEpochDay();
+    }
+
+    public static LocalDate date(int epochDay) {
+        return epochDay == NONE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private void grow() {
+        int n = id.length * 2;
+        id = Arrays.copyOf(id, n);
+        cardId = Arrays.copyOf(cardId, n);
+        due = Arrays.copyOf(due, n);
+        reviewedOn = Arrays.copyOf(reviewedOn, n);
+        rating = Arrays.copyOf(rating, n);
+        interval = Arrays.copyOf(interval, n);
+        repeats = Arrays.copyOf(repeats, n);
+        ease = Arrays.copyOf(ease, n);
+    }
+}
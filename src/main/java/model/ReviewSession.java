@@ -0,0 +1,28 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Due plans of one review session together with their card texts (same index),
+ * so navigating and rating never has to go back to the database for content.
+ */
+public class ReviewSession {
+    private final List<ReviewPlan> plans;
+    private final String[] questions;
+    private final String[] answers;
+
+    public ReviewSession(List<ReviewPlan> plans, String[] questions, String[] answers) {
+        this.plans = plans;
+        this.questions = questions;
+        this.answers = answers;
+    }
+
+    public int size() { return plans.size(); }
+    public boolean isEmpty() { return plans.isEmpty(); }
+
+    public ReviewPlan getPlan(int i) { return plans.get(i); }
+    public String getQuestion(int i) { return questions[i]; }
+    public String getAnswer(int i) { return answers[i]; }
+
+    public List<ReviewPlan> getPlans() { return plans; }
+}
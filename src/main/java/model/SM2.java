@@ -10,24 +10,54 @@ public class SM2 {
         int rating = plan.getRating() == null ? 0 : plan.getRating();
         int repeats = plan.getRepeats() == null ? 0 : plan.getRepeats();
         double ef = plan.getEaseFactor() == null ? 2.5 : plan.getEaseFactor();
-        int interval;
+        int prevInterval = plan.getIntervalDays() == null ? 1 : plan.getIntervalDays();
 
-        if (rating < 3) {
-            repeats = 0;
-            interval = 1;
-        } else {
-                 if (repeats == 0)      interval = 1;
-                 else if (repeats == 1) interval = 6;
-                 else                   interval = (int) Math.round(plan.getIntervalDays() * ef);
+        plan.setIntervalDays(nextInterval(rating, repeats, prevInterval, ef));
+        plan.setRepeats(nextRepeats(rating, repeats));
+        plan.setEaseFactor(nextEase(rating, ef));
+        return plan;
+    }
 
-                 repeats++;
-                 ef = ef + (0.1 - (5 - rating) * (0.08 + (5 - rating) * 0.02));
-                 if (ef < 1.3) ef = 1.3;
-                }
+    /**
+     * Batch form for deck-wide work: rate entries [from, to) of the store in place, all reviewed on day today
+     * (epoch day). ratings[i - from] is entry i's rating. Same rules as above; allocates nothing.
+     * SM-2 only: deck-wide callers go through {@link Scheduler#next(PlanStore, int, int, int[], int)}.
+     */
+    public static void calculateNext(PlanStore s, int from, int to, int[] ratings, int today) {
+        int[] interval = s.interval, repeats = s.repeats, due = s.due, reviewedOn = s.reviewedOn, rating = s.rating;
+        double[] ease = s.ease;
+        for (int i = from; i < to; i++) {
+            int r = ratings[i - from];
+            double ef = ease[i];
+            int rep = repeats[i];
+            int ivl = nextInterval(r, rep, interval[i], ef);
+            interval[i] = ivl;
+            repeats[i] = nextRepeats(r, rep);
+            ease[i] = nextEase(r, ef);
+            rating[i] = r;
+            reviewedOn[i] = today;
+            due[i] = today + ivl;
+        }
+    }
 
-        plan.setIntervalDays(interval);
-        plan.setRepeats(repeats);
-        plan.setEaseFactor(ef);
-        return plan;
+    // ---- primitive form of the same rules (used by simulations) ----
+
+    /** interval_days after a review with the given rating (ef = ease factor before the review) */
+    public static int nextInterval(int rating, int repeats, int prevInterval, double ef) {
+        if (rating < 3) return 1;
+        if (repeats == 0) return 1;
+        if (repeats == 1) return 6;
+        return (int) Math.round(prevInterval * ef);
+    }
+
+    public static int nextRepeats(int rating, int repeats) {
+        return rating < 3 ? 0 : repeats + 1;
+    }
+
+    /** Ease factor after the review; unchanged on a lapse, never below 1.3 */
+    public static double nextEase(int rating, double ef) {
+        if (rating < 3) return ef;
+        ef = ef + (0.1 - (5 - rating) * (0.08 + (5 - rating) * 0.02));
+        return ef < 1.3 ? 1.3 : ef;
     }
 }
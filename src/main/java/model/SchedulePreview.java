@@ -0,0 +1,43 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Per-day review load before/after a bulk scheduling operation, computed from the
+ * planned_on histogram only (no per-plan data needed).
+ * Index 0 of every result is today and includes everything overdue.
+ */
+public final class SchedulePreview {
+    private SchedulePreview() {}
+
+    public static int[] current(NavigableMap<LocalDate, Integer> load, LocalDate today, int horizon) {
+        return afterShift(load, 0, today, horizon);
+    }
+
+    /** Every plan moved by days */
+    public static int[] afterShift(NavigableMap<LocalDate, Integer> load, int days, LocalDate today, int horizon) {
+        int[] out = new int[horizon];
+        for (Map.Entry<LocalDate, Integer> e : load.entrySet()) {
+            long d = e.getKey().plusDays(days).toEpochDay() - today.toEpochDay();
+            if (d < horizon) out[(int) Math.max(0, d)] += e.getValue();
+        }
+        return out;
+    }
+
+    /** Overdue plans spread as day = floor(rank * days / count), the rest unchanged */
+    public static int[] afterSpread(NavigableMap<LocalDate, Integer> load, int days, LocalDate today, int horizon) {
+        int k = Math.max(1, days);
+        int[] out = current(load.tailMap(today, true), today, horizon);
+        long n = 0;
+        for (int c : load.headMap(today, false).values()) n += c;
+        // floor(rn * k / n) == d  <=>  rn in [ceil(d * n / k), ceil((d + 1) * n / k))
+        for (int d = 0; d < k && d < horizon; d++) {
+            long from = (d * n + k - 1) / k;
+            long to = ((d + 1) * n + k - 1) / k;
+            out[d] += (int) (to - from);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,52 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Scheduling algorithm: turns a rating into the plan's next interval.
+ * The state lives in the plan's own columns (interval_days, repeats, ease_factor, reviewed_on),
+ * so switching algorithms needs no schema change. Pick one with {@link Schedulers}.
+ */
+public interface Scheduler {
+    String name();
+
+    /**
+     * Called before the review is stored: plan.getRating() holds the new rating (0..5),
+     * plan.getReviewedOn() the previous review (null for a new card).
+     * Sets interval_days, repeats and ease_factor (mutates and returns the plan).
+     */
+    ReviewPlan next(ReviewPlan plan);
+
+    /**
+     * Primitive form of {@link #next} for simulations: entry i of the arrays holds interval_days, repeats
+     * and ease_factor before the review and receives them after. elapsedDays is the time since the previous
+     * review, negative for a card that has never been reviewed. Allocates nothing.
+     */
+    void step(int[] interval, int[] repeats, double[] ease, int i, int rating, int elapsedDays);
+
+    /**
+     * Batch form for deck-wide work: rate entries [from, to) of the store in place, all reviewed on day today
+     * (epoch day). ratings[i - from] is entry i's rating.
+     */
+    default void next(PlanStore s, int from, int to, int[] ratings, int today) {
+        for (int i = from; i < to; i++) {
+            int r = ratings[i - from];
+            int last = s.reviewedOn[i];
+            step(s.interval, s.repeats, s.ease, i, r, last == PlanStore.NONE ? -1 : today - last);
+            s.rating[i] = r;
+            s.reviewedOn[i] = today;
+            s.due[i] = today + s.interval[i];
+        }
+    }
+
+    /** Plan of a card that was just created: due tomorrow, interval_days=1, repeats=0, ease_factor=2.5 */
+    default ReviewPlan firstPlan(int cardId) {
+        ReviewPlan p = new ReviewPlan();
+        p.setCardId(cardId);
+        p.setPlannedOn(LocalDate.now().plusDays(1));
+        p.setIntervalDays(1);
+        p.setRepeats(0);
+        p.setEaseFactor(2.5);
+        return p;
+    }
+}
@@ -0,0 +1,74 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Picks the scheduling algorithm once per process.
+ * -Dsrsfx.scheduler=sm2 (default) or fsrs; FSRS reads its fitted weights and desired retention
+ * from ~/.srsfx/fsrs.properties (written by app.FsrsFit), falling back to the FSRS defaults.
+ */
+public final class Schedulers {
+    public static final String PROPERTY = "srsfx.scheduler";
+    private static final double DEFAULT_RETENTION = 0.9;
+
+    private static Scheduler current;
+
+    private Schedulers() {}
+
+    public static synchronized Scheduler current() {
+        if (current == null) {
+            String name = System.getProperty(PROPERTY, "sm2").trim();
+            current = "fsrs".equalsIgnoreCase(name) ? loadFsrs() : new Sm2Scheduler();
+        }
+        return current;
+    }
+
+    public static Path fsrsFile() {
+        return Paths.get(System.getProperty("user.home"), ".srsfx", "fsrs.properties");
+    }
+
+    public static FsrsScheduler loadFsrs() {
+        double[] w = FsrsScheduler.DEFAULT_WEIGHTS.clone();
+        double retention = DEFAULT_RETENTION;
+        Path file = fsrsFile();
+        if (Files.isRegularFile(file)) {
+            Properties p = new Properties();
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                p.load(r);
+                String[] parts = p.getProperty("weights", "").split(",");
+                if (parts.length == FsrsScheduler.PARAMS) {
+                    for (int i = 0; i < parts.length; i++) w[i] = Double.parseDouble(parts[i].trim());
+                }
+                retention = Double.parseDouble(p.getProperty("retention", String.valueOf(DEFAULT_RETENTION)));
+            } catch (IOException | NumberFormatException e) {
+                e.printStackTrace();
+                w = FsrsScheduler.DEFAULT_WEIGHTS.clone();
+            }
+        }
+        return new FsrsScheduler(w, retention);
+    }
+
+    public static void saveFsrs(double[] weights, double retention, String comment) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (double v : weights) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(String.format(Locale.ROOT, "%.4f", v));
+        }
+        Properties p = new Properties();
+        p.setProperty("weights", sb.toString());
+        p.setProperty("retention", String.valueOf(retention));
+        Path file = fsrsFile();
+        Files.createDirectories(file.getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            p.store(out, comment);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package model;
+
+/** Classic SuperMemo-2 (the default) */
+public final class Sm2Scheduler implements Scheduler {
+    @Override
+    public String name() { return "sm2"; }
+
+    @Override
+    public ReviewPlan next(ReviewPlan plan) {
+        return SM2.calculateNext(plan);
+    }
+
+    @Override
+    public void step(int[] interval, int[] repeats, double[] ease, int i, int rating, int elapsedDays) {
+        double ef = ease[i];
+        int rep = repeats[i];
+        interval[i] = SM2.nextInterval(rating, rep, interval[i], ef);
+        repeats[i] = SM2.nextRepeats(rating, rep);
+        ease[i] = SM2.nextEase(rating, ef);
+    }
+
+    @Override
+    public void next(PlanStore s, int from, int to, int[] ratings, int today) {
+        SM2.calculateNext(s, from, to, ratings, today);
+    }
+}
@@ -0,0 +1,698 @@
+package util;
+
+import util.SnapshotFormat.In;
+import util.SnapshotFormat.Out;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * In-memory inverted index over card questions and answers, behind the search box of the cards tab.
+ * <p>
+ * Text is normalized (Unicode NFKD without accents, lower case, German folding: ß → ss, ae/oe/ue → a/o/u
+ * unless the e belongs to a diphthong) and split into terms of letters and digits; every term maps to the
+ * ascending ids of the cards containing it. A query finds the cards that contain all of its terms.
+ * A query term also matches the terms it is a prefix of; when it matches nothing, it falls back to
+ * vocabulary terms within one or two edits, found through a trigram index over the vocabulary.
+ * <p>
+ * Thread-safe: queries share a read lock, {@link #put} / {@link #remove} take the write lock.
+ * Build one with {@link Builder} (tokenizes in parallel) or {@link #load} a saved one.
+ */
+public final class CardIndex {
+    private static final byte[] MAGIC = {'S', 'R', 'S', 'I'};
+    private static final int VERSION = 1;
+    private static final int MAX_TERM = 32;
+    /** Vocabulary terms a prefix may expand to */
+    private static final int MAX_EXPANSIONS = 256;
+    /** Vocabulary terms a misspelled query term may stand for */
+    private static final int MAX_FUZZY = 16;
+    /** Query terms shorter than this are never matched fuzzily */
+    private static final int MIN_FUZZY = 4;
+    /** New terms kept unsorted before they are merged into the prefix table */
+    private static final int MAX_PENDING = 4096;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // vocabulary: term id -> text, postings (ascending card ids)
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private String[] terms = new String[1024];
+    private IntList[] postings = new IntList[1024];
+    private int termCount;
+
+    // prefix table: term ids sorted by text, plus the ids added since (unsorted)
+    private int[] sorted = new int[0];
+    private final IntList pending = new IntList();
+    private boolean bulk;   // building: sort once at the end
+
+    // trigram -> ids of terms (length >= 3) containing it
+    private final Map<Long, IntList> grams = new HashMap<>();
+
+    // card id -> slot; slot -> the card's term ids (null once deleted)
+    private final IntLongMap slots = new IntLongMap(1024);
+    private int[][] docTerms = new int[1024][];
+    private int slotCount;
+    private int cards;
+
+    /** Growable int array; postings keep it sorted */
+    private static final class IntList {
+        int[] a = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            a[size++] = v;
+        }
+
+        void insertSorted(int v) {
+            if (size == 0 || a[size - 1] < v) {
+                add(v);
+                return;
+            }
+            int i = Arrays.binarySearch(a, 0, size, v);
+            if (i >= 0) return;
+            i = -i - 1;
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            System.arraycopy(a, i, a, i + 1, size - i);
+            a[i] = v;
+            size++;
+        }
+
+        void removeSorted(int v) {
+            int i = Arrays.binarySearch(a, 0, size, v);
+            if (i < 0) return;
+            System.arraycopy(a, i + 1, a, i, size - i - 1);
+            size--;
+        }
+    }
+
+    /** Matching cards, newest (highest id) first */
+    public static final class Hits {
+        private final int[] ids;
+        private final int total;
+
+        Hits(int[] ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        /** At most the requested limit */
+        public int[] getIds() { return ids; }
+        /** All matching cards */
+        public int getTotal() { return total; }
+    }
+
+    private CardIndex() {}
+
+    /** Empty index for incremental use */
+    public static CardIndex empty() {
+        return new CardIndex();
+    }
+
+    /** Number of indexed cards */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return cards;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===================== normalization =====================
+
+    /** The text's terms in the index's normal form, in text order (duplicates kept) */
+    public static List<String> terms(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String s = text;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7F) {
+                s = Normalizer.normalize(s, Normalizer.Form.NFKD);
+                break;
+            }
+        }
+        char[] term = new char[MAX_TERM + 1];
+        int n = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.charAt(i);
+            if (cp < 0x80) {
+                i++;
+                if (cp >= 'A' && cp <= 'Z') cp += 'a' - 'A';
+                else if (!(cp >= 'a' && cp <= 'z' || cp >= '0' && cp <= '9')) cp = -1;
+            } else {
+                cp = s.codePointAt(i);
+                i += Character.charCount(cp);
+                if (Character.getType(cp) == Character.NON_SPACING_MARK) continue; // accents after NFKD
+                if (cp == 'ß' || cp == 'ẞ') {
+                    n = append(term, n, 's');
+                    cp = 's';
+                } else if (Character.isLetterOrDigit(cp)) {
+                    cp = Character.toLowerCase(cp);
+                    if (cp > 0xFFFF) cp = -1; // outside the BMP: not worth a term
+                } else {
+                    cp = -1;
+                }
+            }
+            if (cp >= 0) {
+                n = append(term, n, (char) cp);
+            } else if (n > 0) {
+                out.add(new String(term, 0, n));
+                n = 0;
+            }
+        }
+        if (n > 0) out.add(new String(term, 0, n));
+        return out;
+    }
+
+    /**
+     * Append one lower-case char, folding ae/oe/ue to a/o/u (the transcription of ä/ö/ü) except after a vowel
+     * or q, as in "feuer" or "quelle". Chars beyond MAX_TERM are dropped, so URLs and base64 do not bloat the
+     * vocabulary.
+     */
+    private static int append(char[] term, int n, char c) {
+        if (c == 'e' && n > 0 && (term[n - 1] == 'a' || term[n - 1] == 'o' || term[n - 1] == 'u')
+                && (n == 1 || "aeiouyq".indexOf(term[n - 2]) < 0)) return n;
+        if (n < MAX_TERM) term[n++] = c;
+        return n;
+    }
+
+    /** Distinct terms of a card, sorted */
+    private static String[] cardTerms(String question, String answer) {
+        List<String> all = terms(question);
+        all.addAll(terms(answer));
+        String[] t = all.toArray(new String[0]);
+        Arrays.sort(t);
+        int n = 0;
+        for (int i = 0; i < t.length; i++) {
+            if (n == 0 || !t[i].equals(t[n - 1])) t[n++] = t[i];
+        }
+        return Arrays.copyOf(t, n);
+    }
+
+    // ===================== updates =====================
+
+    /** Index a new or changed card (replaces whatever was indexed for its id) */
+    public void put(int cardId, String question, String answer) {
+        String[] t = cardTerms(question, answer);
+        lock.writeLock().lock();
+        try {
+            removeLocked(cardId);
+            addLocked(cardId, t);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int cardId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(cardId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(int cardId, String[] t) {
+        int[] ids = new int[t.length];
+        for (int i = 0; i < t.length; i++) ids[i] = termId(t[i]);
+        addLocked(cardId, ids);
+    }
+
+    /** @param ids distinct term ids of the card (kept as its term list) */
+    private void addLocked(int cardId, int[] ids) {
+        for (int t : ids) postings[t].insertSorted(cardId);
+        long slot = slots.get(cardId, -1);
+        if (slot < 0) {
+            if (slotCount == docTerms.length) docTerms = Arrays.copyOf(docTerms, slotCount * 2);
+            slot = slotCount++;
+            slots.put(cardId, slot);
+        }
+        docTerms[(int) slot] = ids;
+        cards++;
+    }
+
+    private void removeLocked(int cardId) {
+        long slot = slots.get(cardId, -1);
+        if (slot < 0 || docTerms[(int) slot] == null) return;
+        for (int t : docTerms[(int) slot]) postings[t].removeSorted(cardId);
+        docTerms[(int) slot] = null; // the slot stays reserved for this card id
+        cards--;
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id != null) return id;
+        int t = termCount++;
+        if (t == terms.length) {
+            terms = Arrays.copyOf(terms, t * 2);
+            postings = Arrays.copyOf(postings, t * 2);
+        }
+        terms[t] = term;
+        postings[t] = new IntList();
+        termIds.put(term, t);
+        if (term.length() >= 3) {
+            for (long g : trigrams(term)) grams.computeIfAbsent(g, k -> new IntList()).add(t);
+        }
+        pending.add(t);
+        if (!bulk && pending.size > MAX_PENDING) mergePending();
+        return t;
+    }
+
+    /** Fold the pending term ids into the sorted prefix table */
+    private void mergePending() {
+        int[] add = Arrays.copyOf(pending.a, pending.size);
+        sortByText(add);
+        int[] merged = new int[sorted.length + add.length];
+        int i = 0, j = 0, k = 0;
+        while (i < sorted.length && j < add.length) {
+            merged[k++] = terms[sorted[i]].compareTo(terms[add[j]]) <= 0 ? sorted[i++] : add[j++];
+        }
+        while (i < sorted.length) merged[k++] = sorted[i++];
+        while (j < add.length) merged[k++] = add[j++];
+        sorted = merged;
+        pending.size = 0;
+    }
+
+    private void sortByText(int[] ids) {
+        Integer[] boxed = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) boxed[i] = ids[i];
+        Arrays.sort(boxed, (x, y) -> terms[x].compareTo(terms[y]));
+        for (int i = 0; i < ids.length; i++) ids[i] = boxed[i];
+    }
+
+    // ===================== queries =====================
+
+    /**
+     * Cards containing every term of the query (prefix / fuzzy matching as described above).
+     * @param limit maximum number of ids returned, newest first
+     */
+    public Hits search(String query, int limit) {
+        List<String> q = terms(query);
+        if (q.isEmpty()) return new Hits(new int[0], 0);
+        lock.readLock().lock();
+        try {
+            int[][] sets = new int[q.size()][];
+            for (int i = 0; i < sets.length; i++) {
+                sets[i] = matches(q.get(i));
+                if (sets[i].length == 0) return new Hits(new int[0], 0);
+            }
+            Arrays.sort(sets, (x, y) -> Integer.compare(x.length, y.length));
+            int[] hits = sets[0];
+            for (int i = 1; i < sets.length && hits.length > 0; i++) hits = intersect(hits, sets[i]);
+            int n = Math.min(Math.max(0, limit), hits.length);
+            int[] newest = new int[n];
+            for (int i = 0; i < n; i++) newest[i] = hits[hits.length - 1 - i];
+            return new Hits(newest, hits.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ascending ids of the cards matching one query term */
+    private int[] matches(String term) {
+        IntList words = new IntList();
+        Integer exact = termIds.get(term);
+        if (term.length() == 1) {
+            if (exact != null) words.add(exact);
+        } else {
+            prefixTerms(term, words);
+        }
+        if (words.size == 0 && term.length() >= MIN_FUZZY) fuzzyTerms(term, words);
+        if (words.size == 1) {
+            IntList p = postings[words.a[0]];
+            return Arrays.copyOf(p.a, p.size);
+        }
+        return union(words);
+    }
+
+    private void prefixTerms(String prefix, IntList out) {
+        // binary search for the first term >= prefix
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (terms[sorted[mid]].compareTo(prefix) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        for (int i = lo; i < sorted.length && out.size < MAX_EXPANSIONS && terms[sorted[i]].startsWith(prefix); i++) {
+            if (postings[sorted[i]].size > 0) out.add(sorted[i]);
+        }
+        for (int i = 0; i < pending.size && out.size < MAX_EXPANSIONS; i++) {
+            int t = pending.a[i];
+            if (terms[t].startsWith(prefix) && postings[t].size > 0) out.add(t);
+        }
+    }
+
+    /**
+     * Vocabulary terms within maxEdits of the query term. An edit changes at most three of the
+     * term's trigrams, so candidates must share all but 3 * maxEdits of them; survivors are verified
+     * with the edit distance.
+     */
+    private void fuzzyTerms(String term, IntList out) {
+        int maxEdits = term.length() <= 6 ? 1 : 2;
+        long[] q = trigrams(term);
+        int need = Math.max(1, q.length - 3 * maxEdits);
+        int[] shared = new int[termCount];
+        IntList touched = new IntList();
+        for (long g : q) {
+            IntList list = grams.get(g);
+            if (list == null) continue;
+            for (int i = 0; i < list.size; i++) {
+                int t = list.a[i];
+                if (shared[t]++ == 0) touched.add(t);
+            }
+        }
+        int[] best = new int[MAX_FUZZY];
+        int[] bestDist = new int[MAX_FUZZY];
+        int found = 0;
+        for (int i = 0; i < touched.size; i++) {
+            int t = touched.a[i];
+            if (shared[t] < need || postings[t].size == 0) continue;
+            int d = editDistance(term, terms[t], maxEdits);
+            if (d > maxEdits) continue;
+            if (found < MAX_FUZZY) {
+                best[found] = t;
+                bestDist[found++] = d;
+            } else {
+                int worst = 0;
+                for (int k = 1; k < found; k++) if (bestDist[k] > bestDist[worst]) worst = k;
+                if (d < bestDist[worst]) {
+                    best[worst] = t;
+                    bestDist[worst] = d;
+                }
+            }
+        }
+        for (int k = 0; k < found; k++) out.add(best[k]);
+    }
+
+    /** Trigrams of "^term$", packed as three 16-bit chars */
+    private static long[] trigrams(String term) {
+        String s = '^' + term + '$';
+        long[] g = new long[s.length() - 2];
+        for (int i = 0; i < g.length; i++) {
+            g[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        return g;
+    }
+
+    /** Levenshtein distance, or max + 1 as soon as it must exceed max */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) return max + 1;
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(cur[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev;
+            prev = cur;
+            cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    /** Ascending union of the postings of several terms, through a bitmap over the id range */
+    private int[] union(IntList words) {
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        long total = 0;
+        for (int i = 0; i < words.size; i++) {
+            IntList p = postings[words.a[i]];
+            if (p.size == 0) continue;
+            min = Math.min(min, p.a[0]);
+            max = Math.max(max, p.a[p.size - 1]);
+            total += p.size;
+        }
+        if (total == 0) return new int[0];
+        long[] bits = new long[(int) (((long) max - min) >>> 6) + 1];
+        for (int i = 0; i < words.size; i++) {
+            IntList p = postings[words.a[i]];
+            for (int k = 0; k < p.size; k++) {
+                int off = p.a[k] - min;
+                bits[off >>> 6] |= 1L << off;
+            }
+        }
+        int n = 0;
+        for (long w : bits) n += Long.bitCount(w);
+        int[] out = new int[n];
+        int k = 0;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                out[k++] = min + (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return out;
+    }
+
+    /** Intersection of two ascending arrays; gallops through the longer one */
+    private static int[] intersect(int[] small, int[] large) {
+        int[] out = new int[small.length];
+        int n = 0, from = 0;
+        for (int v : small) {
+            int step = 1, hi = from;
+            while (hi < large.length && large[hi] < v) {
+                from = hi;
+                hi += step;
+                step <<= 1;
+            }
+            int i = Arrays.binarySearch(large, from, Math.min(hi + 1, large.length), v);
+            if (i >= 0) {
+                out[n++] = v;
+                from = i + 1;
+            } else {
+                from = -i - 1;
+            }
+            if (from >= large.length) break;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // ===================== parallel build =====================
+
+    /**
+     * Builds an index from the whole deck: cards go in in ascending id order (one reader thread),
+     * batches of them are tokenized on a fork/join pool and merged into the index in order.
+     */
+    public static final class Builder {
+        private static final int BATCH = 2048;
+
+        private final CardIndex index = new CardIndex();
+        private final ForkJoinPool pool;
+        private final int maxInFlight;
+        private final ArrayDeque<ForkJoinTask<Batch>> inFlight = new ArrayDeque<>();
+        private int[] ids = new int[BATCH];
+        private String[] questions = new String[BATCH];
+        private String[] answers = new String[BATCH];
+        private int n;
+
+        /**
+         * Tokenized cards. Terms are numbered per batch (a batch repeats the common ones many times), so the
+         * merge resolves each distinct term against the vocabulary once instead of once per occurrence.
+         */
+        private static final class Batch {
+            final int[] ids;
+            final String[] words;      // local term id -> text
+            final int[][] cardWords;   // per card: distinct local term ids
+
+            Batch(int[] ids, String[] questions, String[] answers) {
+                this.ids = ids;
+                Map<String, Integer> local = new HashMap<>();
+                List<String> w = new ArrayList<>();
+                cardWords = new int[ids.length][];
+                for (int i = 0; i < ids.length; i++) {
+                    List<String> t = terms(questions[i]);
+                    t.addAll(terms(answers[i]));
+                    int[] c = new int[t.size()];
+                    for (int k = 0; k < c.length; k++) {
+                        Integer id = local.putIfAbsent(t.get(k), w.size());
+                        if (id == null) {
+                            id = w.size();
+                            w.add(t.get(k));
+                        }
+                        c[k] = id;
+                    }
+                    Arrays.sort(c);
+                    int m = 0;
+                    for (int k = 0; k < c.length; k++) if (m == 0 || c[k] != c[m - 1]) c[m++] = c[k];
+                    cardWords[i] = Arrays.copyOf(c, m);
+                }
+                words = w.toArray(new String[0]);
+            }
+        }
+
+        public Builder(int parallelism) {
+            pool = new ForkJoinPool(Math.max(1, parallelism));
+            maxInFlight = 2 * Math.max(1, parallelism);
+            index.bulk = true;
+        }
+
+        /** Matches CardRepository.CardVisitor; ids must ascend */
+        public void addCard(int id, String question, String answer) {
+            ids[n] = id;
+            questions[n] = question;
+            answers[n] = answer;
+            if (++n == BATCH) submit();
+        }
+
+        private void submit() {
+            int[] batchIds = Arrays.copyOf(ids, n);
+            String[] q = questions, a = answers;
+            inFlight.add(pool.submit(() -> new Batch(batchIds, q, a)));
+            questions = new String[BATCH];
+            answers = new String[BATCH];
+            n = 0;
+            while (inFlight.size() > maxInFlight) mergeOldest();
+        }
+
+        private void mergeOldest() {
+            Batch b = inFlight.poll().join();
+            int[] global = new int[b.words.length];
+            for (int w = 0; w < global.length; w++) global[w] = index.termId(b.words[w]);
+            for (int i = 0; i < b.ids.length; i++) {
+                int[] c = b.cardWords[i];
+                for (int k = 0; k < c.length; k++) c[k] = global[c[k]];
+                index.addLocked(b.ids[i], c);
+            }
+        }
+
+        public CardIndex finish() {
+            try {
+                if (n > 0) submit();
+                while (!inFlight.isEmpty()) mergeOldest();
+            } finally {
+                pool.shutdown();
+            }
+            index.bulk = false;
+            index.mergePending();
+            return index;
+        }
+    }
+
+    // ===================== persistence =====================
+
+    /**
+     * Save to a file (written to a temp file first, then moved over it): the vocabulary with the number of
+     * cards per term, then every card's term ids in ascending card id order. Loading rebuilds the postings
+     * from the card lists by appending, which is much cheaper than tokenizing again.
+     * @param fingerprint stored as is; {@link #load} only accepts the file for the same value
+     */
+    public void save(Path file, long fingerprint) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        lock.readLock().lock();
+        try (OutputStream os = Files.newOutputStream(tmp)) {
+            Out out = new Out(1 << 20);
+            out.write(MAGIC, 0, MAGIC.length);
+            out.varint(VERSION);
+            out.fixed64(fingerprint);
+            out.varint(termCount);
+            for (int t = 0; t < termCount; t++) {
+                byte[] b = terms[t].getBytes(StandardCharsets.UTF_8);
+                out.varint(b.length);
+                out.write(b, 0, b.length);
+                out.varint(postings[t].size);
+                if (out.size > (1 << 20)) flush(out, os, crc);
+            }
+            long[] bySlot = new long[cards];   // card id << 32 | slot, sorted by card id
+            int[] n = {0};
+            slots.forEach((card, slot) -> {
+                if (docTerms[(int) slot] != null) bySlot[n[0]++] = ((long) card << 32) | slot;
+            });
+            Arrays.sort(bySlot);
+            out.varint(cards);
+            long prev = 0;
+            for (long e : bySlot) {
+                int card = (int) (e >> 32);
+                int[] ts = docTerms[(int) e];
+                out.varint(SnapshotFormat.zigzag(card - prev));
+                prev = card;
+                out.varint(ts.length);
+                for (int t : ts) out.varint(t);
+                if (out.size > (1 << 20)) flush(out, os, crc);
+            }
+            crc.update(out.buf, 0, out.size);
+            out.fixed64(crc.getValue());
+            os.write(out.buf, 0, out.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void flush(Out out, OutputStream os, CRC32C crc) throws IOException {
+        crc.update(out.buf, 0, out.size);
+        os.write(out.buf, 0, out.size);
+        out.clear();
+    }
+
+    /** @return the saved index, or null if the file is missing, for another fingerprint, or damaged */
+    public static CardIndex load(Path file, long fingerprint) {
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            byte[] data = Files.readAllBytes(file);
+            if (data.length < MAGIC.length + 8
+                    || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)) return null;
+            CRC32C crc = new CRC32C();
+            crc.update(data, 0, data.length - 8);
+            if (new In(data, data.length - 8, data.length).fixed64() != crc.getValue()) return null;
+
+            In in = new In(data, MAGIC.length, data.length - 8);
+            if (in.varint() != VERSION || in.fixed64() != fingerprint) return null;
+            CardIndex index = new CardIndex();
+            index.bulk = true;
+            int termCount = (int) in.varint();
+            int[] expected = new int[termCount];
+            for (int t = 0; t < termCount; t++) {
+                int len = (int) in.varint();
+                int tid = index.termId(new String(data, in.skip(len), len, StandardCharsets.UTF_8));
+                expected[tid] = (int) in.varint();
+                index.postings[tid].a = new int[Math.max(4, expected[tid])];
+            }
+            int cards = (int) in.varint();
+            index.docTerms = new int[Math.max(16, cards)][];
+            long card = 0;
+            for (int i = 0; i < cards; i++) {
+                card += SnapshotFormat.unzigzag(in.varint());
+                int[] ts = new int[(int) in.varint()];
+                for (int k = 0; k < ts.length; k++) {
+                    int t = (int) in.varint();
+                    if (t < 0 || t >= termCount) throw new IllegalStateException("Bad term id " + t);
+                    ts[k] = t;
+                }
+                index.addLocked((int) card, ts);
+            }
+            if (in.pos != in.end) return null;
+            for (int t = 0; t < termCount; t++) {
+                if (index.postings[t].size != expected[t]) return null;
+            }
+            index.bulk = false;
+            index.mergePending();
+            return index;
+        } catch (IOException | IllegalStateException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Card index " + file + " not usable, rebuilding: " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Field conversions of the CSV import/export hot paths, written out by hand.
+ * Every method returns exactly what the plain JDK version in the comment returns (same value,
+ * same exception), but the common shapes are handled in one pass over the characters:
+ * no trim()/toLowerCase() copies, no chained replace(), and no exceptions as control flow.
+ * Anything unusual (other digit sets, exponents, out-of-range dates, ...) is passed on to the JDK call.
+ */
+public final class CsvCodec {
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int MAX_EXACT_DIGITS = 15; // < 2^53, so the mantissa is an exact double
+
+    private CsvCodec() {}
+
+    // ===== numbers =====
+
+    /** Integer.parseInt(s.subSequence(from, to).toString()) */
+    public static int parseInt(CharSequence s, int from, int to) {
+        int i = from;
+        boolean neg = false;
+        if (i < to) {
+            char c = s.charAt(i);
+            if (c == '-' || c == '+') {
+                neg = c == '-';
+                i++;
+            }
+        }
+        if (i == to || to - i > 10) return Integer.parseInt(s.subSequence(from, to).toString());
+        long v = 0;
+        for (; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return Integer.parseInt(s.subSequence(from, to).toString());
+            v = v * 10 + d;
+        }
+        if (neg) v = -v;
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) return Integer.parseInt(s.subSequence(from, to).toString());
+        return (int) v;
+    }
+
+    /** Integer.parseInt(s) */
+    public static int parseInt(CharSequence s) {
+        return parseInt(s, 0, s.length());
+    }
+
+    /** Integer.parseInt(s.trim()) */
+    public static int parseTrimmedInt(CharSequence s) {
+        int from = trimStart(s), to = trimEnd(s, from);
+        return parseInt(s, from, to);
+    }
+
+    /** Blank or null -> 0, else Integer.parseInt(s.trim()) */
+    public static int intOrZero(String s) {
+        return (s == null || s.isBlank()) ? 0 : parseTrimmedInt(s);
+    }
+
+    /** Double.parseDouble(s.subSequence(from, to).toString()); plain decimals up to 15 digits are exact here */
+    public static double parseDouble(CharSequence s, int from, int to) {
+        int i = trimStart(s, from, to), end = trimEnd(s, i, to); // parseDouble ignores surrounding blanks itself
+        boolean neg = false;
+        if (i < end) {
+            char c = s.charAt(i);
+            if (c == '-' || c == '+') {
+                neg = c == '-';
+                i++;
+            }
+        }
+        long m = 0;
+        int digits = 0, fraction = -1;
+        boolean any = false;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9 || digits == MAX_EXACT_DIGITS) return Double.parseDouble(s.subSequence(from, to).toString());
+            any = true;
+            if (m != 0 || d != 0) digits++;
+            m = m * 10 + d;
+            if (fraction >= 0) fraction++;
+        }
+        if (!any || fraction >= POW10.length) return Double.parseDouble(s.subSequence(from, to).toString());
+        // m and 10^fraction are both exact doubles, so one division rounds correctly
+        double v = fraction <= 0 ? m : m / POW10[fraction];
+        return neg ? -v : v;
+    }
+
+    /** Blank or null -> 0.0, else Double.parseDouble(s.trim()) */
+    public static double doubleOrZero(String s) {
+        return (s == null || s.isBlank()) ? 0.0 : parseDouble(s, 0, s.length());
+    }
+
+    // ===== booleans =====
+
+    /** true/1/yes, false/0/no (any case, surrounding blanks ignored), else null; null stays null */
+    public static Boolean toBool(CharSequence s) {
+        if (s == null) return null;
+        int from = trimStart(s), to = trimEnd(s, from);
+        switch (to - from) {
+            case 1:
+                char c = s.charAt(from);
+                if (c == '1') return true;
+                if (c == '0') return false;
+                return null;
+            case 2:
+                return matches(s, from, "no") ? Boolean.FALSE : null;
+            case 3:
+                return matches(s, from, "yes") ? Boolean.TRUE : null;
+            case 4:
+                return matches(s, from, "true") ? Boolean.TRUE : null;
+            case 5:
+                return matches(s, from, "false") ? Boolean.FALSE : null;
+            default:
+                return null;
+        }
+    }
+
+    /** ASCII case-insensitive; no other character lower-cases to these letters */
+    private static boolean matches(CharSequence s, int from, String lower) {
+        for (int k = 0; k < lower.length(); k++) {
+            char c = s.charAt(from + k);
+            if (c >= 'A' && c <= 'Z') c = (char) (c + ('a' - 'A'));
+            if (c != lower.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    // ===== timestamps =====
+
+    /**
+     * "yyyy-MM-dd HH:mm:ss", ISO "yyyy-MM-ddTHH:mm[:ss]" or "yyyy-MM-dd"; blank or unparseable -> null.
+     * Same results as trying CsvPretty.DTF, LocalDateTime.parse and LocalDate.parse in turn.
+     */
+    public static LocalDateTime parseLdt(String v) {
+        if (v == null || v.isBlank()) return null;
+        int from = trimStart(v), to = trimEnd(v, from);
+        int len = to - from;
+        if ((len == 10 || len == 16 || len == 19) && isDate(v, from)) {
+            int y = digits(v, from, 4), mo = digits(v, from + 5, 2), d = digits(v, from + 8, 2);
+            if (validDate(y, mo, d)) {
+                if (len == 10) return LocalDate.of(y, mo, d).atStartOfDay();
+                char sep = v.charAt(from + 10);
+                if ((sep == ' ' && len == 19 && y >= 1) || sep == 'T') { // DTF's yyyy is year-of-era
+                    int h = twoDigits(v, from + 11), mi = -1, sec = 0;
+                    if (v.charAt(from + 13) == ':') mi = twoDigits(v, from + 14);
+                    if (len == 19) sec = v.charAt(from + 16) == ':' ? twoDigits(v, from + 17) : -1;
+                    if (h >= 0 && h <= 23 && mi >= 0 && mi <= 59 && sec >= 0 && sec <= 59) {
+                        return LocalDateTime.of(y, mo, d, h, mi, sec);
+                    }
+                }
+            }
+        }
+        return parseLdtSlow(v.substring(from, to));
+    }
+
+    /** The original three attempts, for everything the fast path does not decide */
+    private static LocalDateTime parseLdtSlow(String s) {
+        try { return LocalDateTime.parse(s, CsvPretty.DTF); } catch (Exception ignore) {}
+        try { return LocalDateTime.parse(s); } catch (Exception ignore) {}
+        try { return LocalDate.parse(s).atStartOfDay(); } catch (Exception ignore) {}
+        return null;
+    }
+
+    /** CsvPretty.DTF.format(t) ("yyyy-MM-dd HH:mm:ss"); null -> "" */
+    public static String fmtTs(LocalDateTime t) {
+        if (t == null) return "";
+        int y = t.getYear();
+        if (y < 1 || y > 9999) return CsvPretty.DTF.format(t);
+        char[] c = new char[19];
+        put4(c, 0, y);
+        c[4] = '-';
+        put2(c, 5, t.getMonthValue());
+        c[7] = '-';
+        put2(c, 8, t.getDayOfMonth());
+        c[10] = ' ';
+        put2(c, 11, t.getHour());
+        c[13] = ':';
+        put2(c, 14, t.getMinute());
+        c[16] = ':';
+        put2(c, 17, t.getSecond());
+        return new String(c);
+    }
+
+    /** Midnight of the day, as above; null -> "" */
+    public static String fmtTs(LocalDate d) {
+        if (d == null) return "";
+        int y = d.getYear();
+        if (y < 1 || y > 9999) return CsvPretty.DTF.format(d.atStartOfDay());
+        char[] c = {'0', '0', '0', '0', '-', '0', '0', '-', '0', '0', ' ', '0', '0', ':', '0', '0', ':', '0', '0'};
+        put4(c, 0, y);
+        put2(c, 5, d.getMonthValue());
+        put2(c, 8, d.getDayOfMonth());
+        return new String(c);
+    }
+
+    // ===== text =====
+
+    /** s.replace("\r", "").replace("\n", "\\n").trim(); null -> "" */
+    public static String sanitizeText(String s) {
+        if (s == null) return "";
+        int n = s.length(), i = 0;
+        while (i < n && s.charAt(i) != '\r' && s.charAt(i) != '\n') i++;
+        if (i == n) return s.trim();
+        StringBuilder sb = new StringBuilder(n + 8).append(s, 0, i);
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\n') sb.append('\\').append('n');
+            else if (c != '\r') sb.append(c);
+        }
+        int from = trimStart(sb), to = trimEnd(sb, from);
+        return sb.substring(from, to);
+    }
+
+    /** s.replace("\\n", "\n"); null stays null */
+    public static String unsanitize(String s) {
+        if (s == null) return null;
+        int i = s.indexOf("\\n");
+        if (i < 0) return s;
+        int n = s.length();
+        StringBuilder sb = new StringBuilder(n).append(s, 0, i);
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < n && s.charAt(i + 1) == 'n') {
+                sb.append('\n');
+                i += 2;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    // ===== helpers =====
+
+    private static int trimStart(CharSequence s) {
+        return trimStart(s, 0, s.length());
+    }
+
+    private static int trimStart(CharSequence s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(CharSequence s, int from) {
+        return trimEnd(s, from, s.length());
+    }
+
+    private static int trimEnd(CharSequence s, int from, int to) {
+        while (to > from && s.charAt(to - 1) <= ' ') to--;
+        return to;
+    }
+
+    /** dddd-dd-dd at from */
+    private static boolean isDate(CharSequence s, int from) {
+        return s.charAt(from + 4) == '-' && s.charAt(from + 7) == '-'
+                && digits(s, from, 4) >= 0 && digits(s, from + 5, 2) >= 0 && digits(s, from + 8, 2) >= 0;
+    }
+
+    private static boolean validDate(int y, int mo, int d) {
+        if (mo < 1 || mo > 12 || d < 1) return false;
+        if (d <= 28) return true;
+        int max = mo == 2 ? (((y & 3) == 0 && (y % 100 != 0 || y % 400 == 0)) ? 29 : 28)
+                : (mo == 4 || mo == 6 || mo == 9 || mo == 11) ? 30 : 31;
+        return d <= max;
+    }
+
+    /** ASCII digits [from, from+n) as a number, or -1 */
+    private static int digits(CharSequence s, int from, int n) {
+        int v = 0;
+        for (int i = from; i < from + n; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int twoDigits(CharSequence s, int from) {
+        return digits(s, from, 2);
+    }
+
+    private static void put2(char[] c, int at, int v) {
+        c[at] = (char) ('0' + v / 10);
+        c[at + 1] = (char) ('0' + v % 10);
+    }
+
+    private static void put4(char[] c, int at, int v) {
+        c[at] = (char) ('0' + v / 1000);
+        c[at + 1] = (char) ('0' + v / 100 % 10);
+        c[at + 2] = (char) ('0' + v / 10 % 10);
+        c[at + 3] = (char) ('0' + v % 10);
+    }
+}
@@ -0,0 +1,246 @@
+package util;
+
+import org.apache.commons.csv.CSVPrinter;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+/**
+ * Streaming export of card / review_plan / review_statistic into three CSV files
+ * (or into one binary snapshot, see {@link #exportSnapshot}).
+ * Each table is read on its own connection with a streaming result set and written
+ * by its own thread; all three connections see the same consistent snapshot.
+ * Heap use is independent of table size.
+ */
+public final class CsvExporter {
+    public static final String F_CARDS = "cards.csv";
+    public static final String F_PLAN  = "review_plan.csv";
+    public static final String F_STAT  = "review_statistic.csv";
+
+    public static final String[] CARD_HEADERS = {"id", "question", "answer", "created_at"};
+    public static final String[] PLAN_HEADERS =
+            {"id", "card_id", "planned_on", "reviewed_on", "rating", "interval_days", "repeats", "ease_factor"};
+    public static final String[] STAT_HEADERS =
+            {"id", "card_id", "reviewed_at", "duration_ms", "correct", "rating", "notes"};
+
+    public static final String CARD_SQL = "SELECT id, question, answer, created_at FROM card ORDER BY id";
+    public static final String PLAN_SQL = "SELECT id, card_id, planned_on, reviewed_on, rating, interval_days, " +
+            "repeats, ease_factor FROM review_plan ORDER BY id";
+    public static final String STAT_SQL = "SELECT id, card_id, reviewed_at, duration_ms, correct, rating, notes " +
+            "FROM review_statistic ORDER BY id";
+
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final long REPORT_EVERY_MS = 1000;
+
+    /** Progress callback; called from the export threads */
+    public interface Progress {
+        void report(String file, long rows, double rowsPerSec, boolean done);
+    }
+
+    /** Maps the current result set row to CSV values */
+    interface RowMapper {
+        Object[] map(ResultSet rs) throws SQLException;
+    }
+
+    private final DataSource ds;
+
+    public CsvExporter(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Export all three tables into outDir. Blocks until every file is written.
+     * @return rows written per file, in the order cards, plan, statistic
+     */
+    public long[] exportAll(File outDir, Progress progress) throws Exception {
+        List<Connection> conns = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "csv-export");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            for (int i = 0; i < 3; i++) conns.add(ds.getConnection());
+            openSnapshots(conns);
+
+            List<Future<Long>> parts = new ArrayList<>();
+            parts.add(pool.submit(() -> exportTable(conns.get(0), CARD_SQL, new File(outDir, F_CARDS),
+                    CARD_HEADERS, CsvExporter::cardRow, progress)));
+            parts.add(pool.submit(() -> exportTable(conns.get(1), PLAN_SQL, new File(outDir, F_PLAN),
+                    PLAN_HEADERS, CsvExporter::planRow, progress)));
+            parts.add(pool.submit(() -> exportTable(conns.get(2), STAT_SQL, new File(outDir, F_STAT),
+                    STAT_HEADERS, CsvExporter::statRow, progress)));
+
+            long[] rows = new long[parts.size()];
+            for (int i = 0; i < rows.length; i++) {
+                try {
+                    rows[i] = parts.get(i).get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            return rows;
+        } finally {
+            pool.shutdownNow();
+            for (Connection c : conns) {
+                try (Statement st = c.createStatement()) {
+                    st.execute("COMMIT");
+                } catch (SQLException ignore) {}
+                try { c.close(); } catch (SQLException ignore) {}
+            }
+        }
+    }
+
+    /**
+     * Write all three tables into one binary snapshot file (see SnapshotFormat), read from one consistent
+     * snapshot on a single connection. Progress is reported per table as "file/table".
+     * @return rows written per table, in the order cards, plan, statistic
+     */
+    public long[] exportSnapshot(File file, Progress progress) throws Exception {
+        String[] tables = {"card", "review_plan", "review_statistic"};
+        String[] queries = {CARD_SQL, PLAN_SQL, STAT_SQL};
+        long[] rows = new long[tables.length];
+        try (Connection c = ds.getConnection()) {
+            openSnapshots(List.of(c));
+            try (SnapshotWriter w = SnapshotWriter.open(file)) {
+                for (int t = 0; t < tables.length; t++) {
+                    String label = file.getName() + "/" + tables[t];
+                    long start = System.nanoTime();
+                    long lastReport = System.currentTimeMillis();
+                    w.beginTable(tables[t]);
+                    try (PreparedStatement ps = c.prepareStatement(queries[t], ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                        ps.setFetchSize(Integer.MIN_VALUE);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                w.addRow(rs);
+                                rows[t]++;
+                                if ((rows[t] & 0x3FF) == 0 && progress != null) {
+                                    long now = System.currentTimeMillis();
+                                    if (now - lastReport >= REPORT_EVERY_MS) {
+                                        lastReport = now;
+                                        progress.report(label, rows[t], rate(rows[t], start), false);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    w.endTable();
+                    if (progress != null) progress.report(label, rows[t], rate(rows[t], start), true);
+                }
+            } finally {
+                try (Statement st = c.createStatement()) {
+                    st.execute("COMMIT");
+                } catch (SQLException ignore) {}
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Start one consistent snapshot per connection. A short READ lock on a separate connection
+     * keeps writers out while the snapshots open, so all of them see the same data.
+     */
+    private void openSnapshots(List<Connection> conns) throws SQLException {
+        try (Connection lock = ds.getConnection(); Statement ls = lock.createStatement()) {
+            boolean locked = false;
+            try {
+                ls.execute("LOCK TABLES card READ, review_plan READ, review_statistic READ");
+                locked = true;
+            } catch (SQLException e) {
+                // no LOCK TABLES privilege: snapshots still open back to back
+                System.err.println("Export: LOCK TABLES not permitted, snapshots may differ slightly: " + e.getMessage());
+            }
+            try {
+                for (Connection c : conns) {
+                    try (Statement st = c.createStatement()) {
+                        st.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                        st.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                    }
+                }
+            } finally {
+                if (locked) ls.execute("UNLOCK TABLES");
+            }
+        }
+    }
+
+    private static long exportTable(Connection c, String sql, File file, String[] headers,
+                                    RowMapper mapper, Progress progress) throws Exception {
+        long rows = 0;
+        long start = System.nanoTime();
+        long lastReport = System.currentTimeMillis();
+        try (PreparedStatement ps = c.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // Connector/J: stream rows instead of buffering the result
+            try (ResultSet rs = ps.executeQuery();
+                 CSVPrinter p = CsvPretty.openWriter(file, WRITE_BUFFER, headers)) {
+                while (rs.next()) {
+                    p.printRecord(mapper.map(rs));
+                    rows++;
+                    if ((rows & 0x3FF) == 0 && progress != null) {
+                        long now = System.currentTimeMillis();
+                        if (now - lastReport >= REPORT_EVERY_MS) {
+                            lastReport = now;
+                            progress.report(file.getName(), rows, rate(rows, start), false);
+                        }
+                    }
+                }
+            }
+        }
+        if (progress != null) progress.report(file.getName(), rows, rate(rows, start), true);
+        return rows;
+    }
+
+    private static double rate(long rows, long startNanos) {
+        double secs = (System.nanoTime() - startNanos) / 1e9;
+        return secs <= 0 ? 0 : rows / secs;
+    }
+
+    // ===== row formats (shared with other importers/exporters) =====
+
+    public static Object[] cardRow(ResultSet rs) throws SQLException {
+        Date created = rs.getDate("created_at");
+        return new Object[] {
+                rs.getInt("id"),
+                CsvPretty.sanitizeText(rs.getString("question")),
+                CsvPretty.sanitizeText(rs.getString("answer")),
+                created == null ? "" : CsvPretty.fmtTs(created.toLocalDate())
+        };
+    }
+
+    public static Object[] planRow(ResultSet rs) throws SQLException {
+        int rating = rs.getInt("rating");
+        boolean noRating = rs.wasNull();
+        return new Object[] {
+                rs.getInt("id"),
+                rs.getInt("card_id"),
+                CsvPretty.fmtTs(ts(rs, "planned_on")),
+                CsvPretty.fmtTs(ts(rs, "reviewed_on")),
+                noRating ? "" : rating,
+                rs.getInt("interval_days"),
+                rs.getInt("repeats"),
+                String.format(Locale.ROOT, "%.2f", rs.getDouble("ease_factor"))
+        };
+    }
+
+    public static Object[] statRow(ResultSet rs) throws SQLException {
+        return new Object[] {
+                rs.getInt("id"),
+                rs.getInt("card_id"),
+                CsvPretty.fmtTs(ts(rs, "reviewed_at")),
+                rs.getInt("duration_ms"),
+                rs.getBoolean("correct"),
+                rs.getInt("rating"),
+                CsvPretty.sanitizeText(rs.getString("notes"))
+        };
+    }
+
+    private static LocalDateTime ts(ResultSet rs, String col) throws SQLException {
+        Timestamp t = rs.getTimestamp(col);
+        return t == null ? null : t.toLocalDateTime();
+    }
+}
@@ -0,0 +1,543 @@
+package util;
+
+import dao.ReviewStatisticDAO;
+import dao.ReviewWriteBehind;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Replace-all CSV import (cards.csv, review_plan.csv, review_statistic.csv).
+ * A parser thread converts records ahead of the writer through a bounded queue (big files are
+ * parsed on all cores by MappedCsvReader);
+ * the writer flushes fixed-size batches (with batch rewriting), all in one transaction with the deletion
+ * of the old rows, so a failure or Cancel leaves the old data in place.
+ * Rows that fail to parse or insert end up in the error report instead of aborting the run.
+ */
+public final class CsvImporter {
+    public static final int BATCH_SIZE = 2_000;
+    private static final int QUEUE_BATCHES = 8;
+    private static final int MAX_REPORTED_ERRORS = 10_000;
+    private static final long REPORT_EVERY_MS = 1000;
+    private static final long JOURNAL_FLUSH_MS = 10_000;
+    /** Files from this size on are parsed by MappedCsvReader on all cores */
+    static final long PARALLEL_MIN_BYTES = 32L << 20;
+
+    /** Progress callback; called from the import threads */
+    public interface Progress {
+        void report(String file, long rows, double percent, double rowsPerSec, boolean done);
+    }
+
+    /** Named field access, implemented by Commons CSV records and MappedCsvReader rows (as r::get) */
+    interface Fields {
+        String get(String header);
+    }
+
+    /** Converts one CSV record into bind values (null -> SQL NULL) */
+    interface RowParser {
+        Object[] parse(Fields r);
+    }
+
+    /**
+     * One table of the CSV backup: CSV file and headers (= column names), insert statement,
+     * column types (for NULLs) and record parser, plus the export query/row format for comparisons.
+     */
+    static final class Table {
+        final String name;
+        final String file;
+        final String[] headers;
+        final String insertSql;
+        final int[] sqlTypes;
+        final RowParser parser;
+        final String selectSql;
+        final CsvExporter.RowMapper exportRow;
+
+        Table(String name, String file, String[] headers, String insertSql, int[] sqlTypes, RowParser parser,
+              String selectSql, CsvExporter.RowMapper exportRow) {
+            this.name = name;
+            this.file = file;
+            this.headers = headers;
+            this.insertSql = insertSql;
+            this.sqlTypes = sqlTypes;
+            this.parser = parser;
+            this.selectSql = selectSql;
+            this.exportRow = exportRow;
+        }
+    }
+
+    /** Outcome of one run */
+    public static final class Result {
+        public final long[] imported = new long[3];   // cards, plan, statistic
+        public final List<String> errors = new ArrayList<>();
+        public long errorCount;
+        public boolean cancelled;
+        public int statCards;
+    }
+
+    static final Table CARDS = new Table("card", CsvExporter.F_CARDS, CsvExporter.CARD_HEADERS,
+            "INSERT INTO card (id, question, answer, created_at) VALUES (?,?,?,?)",
+            new int[] {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP},
+            r -> new Object[] {
+                    CsvCodec.parseInt(r.get("id")),
+                    emptyToNull(unsanitize(r.get("question"))),
+                    emptyToNull(unsanitize(r.get("answer"))),
+                    tsOrNull(r.get("created_at"))
+            },
+            CsvExporter.CARD_SQL, CsvExporter::cardRow);
+
+    static final Table PLAN = new Table("review_plan", CsvExporter.F_PLAN, CsvExporter.PLAN_HEADERS,
+            "INSERT INTO review_plan (id, card_id, planned_on, reviewed_on, rating, interval_days, repeats, ease_factor) " +
+                    "VALUES (?,?,?,?,?,?,?,?)",
+            new int[] {Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.TIMESTAMP, Types.INTEGER,
+                    Types.INTEGER, Types.INTEGER, Types.DOUBLE},
+            r -> {
+                String rating = r.get("rating");
+                String ef = r.get("ease_factor");
+                return new Object[] {
+                        CsvCodec.parseInt(r.get("id")),
+                        CsvCodec.parseInt(r.get("card_id")),
+                        tsOrNull(r.get("planned_on")),
+                        tsOrNull(r.get("reviewed_on")),
+                        (rating == null || rating.isBlank()) ? null : CsvCodec.parseTrimmedInt(rating),
+                        CsvCodec.intOrZero(r.get("interval_days")),
+                        CsvCodec.intOrZero(r.get("repeats")),
+                        CsvCodec.doubleOrZero(ef)
+                };
+            },
+            CsvExporter.PLAN_SQL, CsvExporter::planRow);
+
+    static final Table STATS = new Table("review_statistic", CsvExporter.F_STAT, CsvExporter.STAT_HEADERS,
+            "INSERT INTO review_statistic (id, card_id, reviewed_at, duration_ms, correct, rating, notes) " +
+                    "VALUES (?,?,?,?,?,?,?)",
+            new int[] {Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.INTEGER, Types.BOOLEAN,
+                    Types.INTEGER, Types.VARCHAR},
+            r -> {
+                LocalDateTime at = CsvPretty.parseLdt(r.get("reviewed_at"));
+                return new Object[] {
+                        CsvCodec.parseInt(r.get("id")),
+                        CsvCodec.parseInt(r.get("card_id")),
+                        Timestamp.valueOf(at == null ? LocalDateTime.now() : at),
+                        CsvCodec.intOrZero(r.get("duration_ms")),
+                        toBool(r.get("correct")),
+                        CsvCodec.intOrZero(r.get("rating")),
+                        emptyToNull(unsanitize(r.get("notes")))
+                };
+            },
+            CsvExporter.STAT_SQL, CsvExporter::statRow);
+
+    private static final List<Object[]> END = new ArrayList<>(); // poison pill
+
+    private final DataSource ds;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    public CsvImporter(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /** Ask a running import to stop after the current batch */
+    public void cancel() { cancelled.set(true); }
+
+    /**
+     * Replace card / review_plan / review_statistic / card_stats with the three CSV files from dir.
+     * The header lines are checked first, so files the row parsers cannot map leave the database untouched.
+     * Blocks until done, cancelled or failed.
+     */
+    public Result importAll(File dir, Progress progress) throws Exception {
+        for (Table table : new Table[]{CARDS, PLAN, STATS}) checkHeaders(new File(dir, table.file), table);
+        return replaceAll((c, result) -> {
+            Table[] tables = {CARDS, PLAN, STATS};
+            for (int t = 0; t < tables.length && !cancelled.get(); t++) {
+                result.imported[t] = importTable(c, new File(dir, tables[t].file), tables[t], result, progress);
+            }
+        });
+    }
+
+    /**
+     * Replace the same tables with a binary snapshot (CsvExporter.exportSnapshot).
+     * The whole file is verified first, so a damaged snapshot leaves the database untouched;
+     * rows then go through the same batched writer as the CSV import.
+     */
+    public Result importSnapshot(File file, Progress progress) throws Exception {
+        verifySnapshot(file, progress);
+        if (cancelled.get()) {
+            Result result = new Result();
+            result.cancelled = true;
+            return result;
+        }
+        return replaceAll((c, result) -> {
+            try (SnapshotReader in = SnapshotReader.open(file)) {
+                Table[] tables = {CARDS, PLAN, STATS};
+                for (int t = 0; t < tables.length && !cancelled.get(); t++) {
+                    Table table = tables[t];
+                    String name = in.nextTable();
+                    if (!table.name.equals(name)) {
+                        throw new IOException(file.getName() + ": expected table " + table.name + ", found " + name);
+                    }
+                    result.imported[t] = load(c, file.getName() + "/" + table.name, file.length(), table, result, progress, out -> {
+                        List<Object[]> rows;
+                        while ((rows = in.nextBlock()) != null) {
+                            for (int i = 0; i < rows.size(); i += BATCH_SIZE) {
+                                List<Object[]> batch = new ArrayList<>(rows.subList(i, Math.min(rows.size(), i + BATCH_SIZE)));
+                                if (cancelled.get() || !out.put(batch, in.position())) return;
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /** Fills the emptied tables inside replaceAll's transaction */
+    private interface Loader {
+        void load(Connection c, Result result) throws Exception;
+    }
+
+    /**
+     * Delete the old rows, load the new ones and rebuild card_stats in one transaction: a failure or Cancel
+     * rolls back to the old data (TRUNCATE would commit at once). Ratings still in the write-behind journal
+     * belong to the old data, so they are written first, and the writer holds new ones until the end.
+     * @throws IllegalStateException if the journal cannot be drained; nothing is changed then
+     */
+    private Result replaceAll(Loader loader) throws Exception {
+        Result result = new Result();
+        ReviewWriteBehind journal = ReviewWriteBehind.get();
+        if (!journal.flush(JOURNAL_FLUSH_MS)) {
+            throw new IllegalStateException(journal.pendingCount()
+                    + " ratings are not in the database yet; nothing was imported, try again when it is reachable");
+        }
+        journal.pause();
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                deleteAll(c);
+                loader.load(c, result);
+                if (cancelled.get()) {
+                    c.rollback();
+                    result.cancelled = true;
+                    return result;
+                }
+                // summary table is derived data -> recompute instead of importing it
+                result.statCards = ReviewStatisticDAO.rebuildCardStats(c);
+                c.commit();
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            }
+        } finally {
+            journal.resume();
+        }
+        return result;
+    }
+
+    /**
+     * Read the snapshot once without writing anything: checksum and encoding of every block,
+     * the three tables in order and the end marker.
+     * @throws IOException if the file is damaged or incomplete
+     */
+    private void verifySnapshot(File file, Progress progress) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        try (SnapshotReader in = SnapshotReader.open(file)) {
+            for (Table table : new Table[]{CARDS, PLAN, STATS}) {
+                String name = in.nextTable();
+                if (!table.name.equals(name)) {
+                    throw new IOException(file.getName() + ": expected table " + table.name + ", found " + name);
+                }
+                List<Object[]> block;
+                while ((block = in.nextBlock()) != null) {
+                    if (cancelled.get()) return;
+                    rows += block.size();
+                }
+            }
+            String extra = in.nextTable();
+            if (extra != null) throw new IOException(file.getName() + ": unexpected table " + extra + " after the last one");
+        }
+        double secs = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        progress.report(file.getName() + " verified", rows, 100.0, rows / secs, true);
+    }
+
+    /**
+     * Every column the row parser reads must be in the file's header line (read as the import reads it,
+     * BOM skipped); otherwise each row would fail on its own with "Mapping for ... not found".
+     */
+    private static void checkHeaders(File file, Table table) throws IOException {
+        try (CSVParser parser = CsvPretty.openReader(file)) {
+            List<String> found = parser.getHeaderNames();
+            List<String> missing = new ArrayList<>();
+            for (String h : table.headers) {
+                if (!found.contains(h)) missing.add(h);
+            }
+            if (!missing.isEmpty()) {
+                throw new IOException(file.getName() + ": missing columns " + missing + " (header line: " + found + ")");
+            }
+        }
+    }
+
+    /** Children first, inside the caller's transaction */
+    private static void deleteAll(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("DELETE FROM card_stats");
+            st.executeUpdate("DELETE FROM review_statistic");
+            st.executeUpdate("DELETE FROM review_plan");
+            st.executeUpdate("DELETE FROM card");
+        }
+    }
+
+    /** Produces one table's rows on the reader thread */
+    interface RowSource {
+        void produce(BatchOut out) throws Exception;
+    }
+
+    /** Hands a batch to the writer; position = how far the source is (same unit as the size given to load) */
+    interface BatchOut {
+        /** @return false once the writer has stopped; the source should return then */
+        boolean put(List<Object[]> batch, long position);
+    }
+
+    private long importTable(Connection c, File file, Table table, Result result, Progress progress) throws Exception {
+        if (file.length() >= PARALLEL_MIN_BYTES) {
+            return load(c, file.getName(), file.length(), table, result, progress,
+                    out -> parseParallel(file, table, result, out));
+        }
+        return load(c, file.getName(), file.length(), table, result, progress, out -> {
+            try (CSVParser parser = CsvPretty.openReader(file)) {
+                List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+                for (CSVRecord r : parser) {
+                    if (cancelled.get()) break;
+                    try {
+                        batch.add(table.parser.parse(r::get));
+                    } catch (RuntimeException e) {
+                        addError(result, file.getName() + " line " + r.getRecordNumber() + ": " + e);
+                    }
+                    if (batch.size() == BATCH_SIZE) {
+                        if (!out.put(batch, r.getCharacterPosition())) return;
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) out.put(batch, file.length());
+            }
+        });
+    }
+
+    /**
+     * Run source on a reader thread and insert what it produces, batch by batch, through a bounded queue.
+     * @param size total of the source's positions, for the progress percentage
+     */
+    private long load(Connection c, String label, long size, Table table, Result result, Progress progress,
+                      RowSource source) throws Exception {
+        BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+        long total = Math.max(1, size);
+        long[] parsedChars = new long[1];
+        Exception[] parseFailure = new Exception[1];
+        AtomicBoolean writerDone = new AtomicBoolean(false);
+
+        // parse ahead of the writer
+        Thread parserThread = new Thread(() -> {
+            try {
+                source.produce((batch, position) -> {
+                    synchronized (parsedChars) { parsedChars[0] = position; }
+                    return put(queue, batch, writerDone);
+                });
+            } catch (Exception e) {
+                parseFailure[0] = e;
+            } finally {
+                put(queue, END, writerDone);
+            }
+        }, "csv-import-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+
+        long rows = 0;
+        long start = System.nanoTime();
+        long lastReport = 0;
+        try (PreparedStatement ps = c.prepareStatement(table.insertSql)) {
+            while (true) {
+                List<Object[]> batch = queue.take();
+                if (batch == END) break;
+                if (cancelled.get()) continue; // drain so the parser can finish
+                rows += writeBatch(c, ps, table, batch, result);
+
+                long now = System.currentTimeMillis();
+                if (progress != null && now - lastReport >= REPORT_EVERY_MS) {
+                    lastReport = now;
+                    double pct;
+                    synchronized (parsedChars) { pct = Math.min(100.0, 100.0 * parsedChars[0] / total); }
+                    progress.report(label, rows, pct, rate(rows, start), false);
+                }
+            }
+        } finally {
+            writerDone.set(true); // unblocks the parser if the writer failed
+            parserThread.join();
+        }
+        if (parseFailure[0] != null) throw parseFailure[0];
+        if (progress != null) progress.report(label, rows, 100.0, rate(rows, start), true);
+        return rows;
+    }
+
+    /**
+     * Source for big files: records are parsed and converted on the fork/join pool and come back
+     * in file order; they are re-cut into BATCH_SIZE batches for the writer. Progress is counted in bytes.
+     */
+    private void parseParallel(File file, Table table, Result result, BatchOut out) throws IOException {
+        class BatchingSink implements MappedCsvReader.Sink<Object[]> {
+            List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+
+            @Override
+            public boolean accept(List<Object[]> rows, long bytesRead) {
+                for (Object[] row : rows) {
+                    batch.add(row);
+                    if (batch.size() == BATCH_SIZE) {
+                        if (cancelled.get() || !out.put(batch, bytesRead)) return false;
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                return !cancelled.get();
+            }
+
+            @Override
+            public void failed(long recordNumber, RuntimeException e) {
+                addError(result, file.getName() + " line " + recordNumber + ": " + e);
+            }
+        }
+        BatchingSink sink = new BatchingSink();
+        new MappedCsvReader(file).read(r -> table.parser.parse(r::get), sink);
+        if (!sink.batch.isEmpty() && !cancelled.get()) out.put(sink.batch, file.length());
+    }
+
+    /**
+     * Insert one batch inside the import transaction; on failure undo it (a rewritten batch can be several
+     * statements) and fall back to row-by-row to isolate the bad rows
+     */
+    private static long writeBatch(Connection c, PreparedStatement ps, Table table,
+                                   List<Object[]> batch, Result result) throws SQLException {
+        Savepoint before = c.setSavepoint();
+        try {
+            for (Object[] row : batch) {
+                bind(ps, table, row);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            c.releaseSavepoint(before);
+            return batch.size();
+        } catch (SQLException e) {
+            ps.clearBatch();
+            c.rollback(before);
+        }
+        long ok = 0;
+        for (Object[] row : batch) {
+            try {
+                bind(ps, table, row);
+                ps.executeUpdate();
+                ok++;
+            } catch (SQLException e) {
+                addError(result, table.file + " id " + row[0] + ": " + e.getMessage()); // only this row is undone
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Parse one export file (cards.csv, review_plan.csv or review_statistic.csv, chosen by name)
+     * exactly as the import does, but without a database; rows that fail to parse are skipped.
+     * @return rows handed to sink
+     */
+    public static long parseFile(File file, Consumer<Object[]> sink) throws IOException {
+        Table table = tableFor(file);
+        long n = 0;
+        try (CSVParser parser = CsvPretty.openReader(file)) {
+            for (CSVRecord r : parser) {
+                Object[] row;
+                try {
+                    row = table.parser.parse(r::get);
+                } catch (RuntimeException e) {
+                    continue;
+                }
+                sink.accept(row);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Same as {@link #parseFile(File, Consumer)}, but parsed with MappedCsvReader on the given pool
+     * (how the import reads files of PARALLEL_MIN_BYTES and more). sink still gets the rows in file order.
+     */
+    public static long parseFileParallel(File file, ForkJoinPool pool, Consumer<Object[]> sink) throws IOException {
+        Table table = tableFor(file);
+        return new MappedCsvReader(file, pool).read(r -> table.parser.parse(r::get), new MappedCsvReader.Sink<Object[]>() {
+            @Override
+            public boolean accept(List<Object[]> rows, long bytesRead) {
+                for (Object[] row : rows) sink.accept(row);
+                return true;
+            }
+
+            @Override
+            public void failed(long recordNumber, RuntimeException e) {
+                // skipped, as in parseFile
+            }
+        });
+    }
+
+    private static Table tableFor(File file) {
+        for (Table t : new Table[] {CARDS, PLAN, STATS}) {
+            if (t.file.equals(file.getName())) return t;
+        }
+        throw new IllegalArgumentException("Not a CSV export file: " + file.getName());
+    }
+
+    static void bind(PreparedStatement ps, Table table, Object[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++) {
+            if (row[i] == null) ps.setNull(i + 1, table.sqlTypes[i]);
+            else ps.setObject(i + 1, row[i]);
+        }
+    }
+
+    private static boolean put(BlockingQueue<List<Object[]>> queue, List<Object[]> batch, AtomicBoolean writerDone) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (writerDone.get()) return false; // nobody is reading any more
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void addError(Result result, String msg) {
+        synchronized (result) {
+            result.errorCount++;
+            if (result.errors.size() < MAX_REPORTED_ERRORS) result.errors.add(msg);
+        }
+    }
+
+    private static double rate(long rows, long startNanos) {
+        double secs = (System.nanoTime() - startNanos) / 1e9;
+        return secs <= 0 ? 0 : rows / secs;
+    }
+
+    // ===== field conversion (same rules as the previous single-batch import) =====
+
+    static String unsanitize(String s) { return CsvCodec.unsanitize(s); }
+    static String emptyToNull(String s) { return (s == null || s.isBlank()) ? null : s; }
+    static boolean toBool(String s) { Boolean v = CsvPretty.toBool(s); return v != null && v; }
+
+    static Timestamp tsOrNull(String v) {
+        LocalDateTime ldt = CsvPretty.parseLdt(v);
+        return ldt == null ? null : Timestamp.valueOf(ldt);
+    }
+}
@@ -0,0 +1,199 @@
+package util;
+
+import dao.ReviewStatisticDAO;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Incremental import of a CSV backup (same three-file layout as the export).
+ * Rows are matched by id and compared by a 64-bit hash of their CSV representation;
+ * only inserts, updates (batched upserts) and deletes are applied. A dry run only counts them.
+ */
+public final class CsvMergeImporter {
+    private static final int BATCH_SIZE = 2_000;
+    private static final long SEEN = Long.MIN_VALUE; // marks DB ids that also occur in the CSV
+
+    /** Diff of one table */
+    public static final class TableDiff {
+        public final String table;
+        public long inserts, updates, deletes, unchanged, badRows;
+
+        TableDiff(String table) { this.table = table; }
+
+        @Override public String toString() {
+            return String.format(Locale.ROOT, "%-17s +%,d inserted  ~%,d updated  -%,d deleted  =%,d unchanged%s",
+                    table, inserts, updates, deletes, unchanged, badRows > 0 ? "  (" + badRows + " bad rows)" : "");
+        }
+    }
+
+    private final DataSource ds;
+
+    public CsvMergeImporter(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Compare the CSV files in dir with the database and (unless dryRun) apply the differences.
+     * @return one diff per table, in the order card, review_plan, review_statistic
+     */
+    public List<TableDiff> merge(File dir, boolean dryRun) throws Exception {
+        CsvImporter.Table[] tables = {CsvImporter.CARDS, CsvImporter.PLAN, CsvImporter.STATS};
+        List<TableDiff> diffs = new ArrayList<>();
+        IntLongMap[] stale = new IntLongMap[tables.length];
+
+        try (Connection c = ds.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                // parents first for inserts/updates ...
+                for (int t = 0; t < tables.length; t++) {
+                    TableDiff d = new TableDiff(tables[t].name);
+                    stale[t] = upsertChanged(c, dir, tables[t], d, dryRun);
+                    diffs.add(d);
+                }
+                // ... children first for deletes
+                for (int t = tables.length - 1; t >= 0; t--) {
+                    diffs.get(t).deletes = deleteStale(c, tables[t], stale[t], dryRun);
+                }
+                if (!dryRun) {
+                    if (diffs.get(2).inserts + diffs.get(2).updates + diffs.get(2).deletes > 0
+                            || diffs.get(0).deletes > 0) {
+                        ReviewStatisticDAO.rebuildCardStats(c);
+                    }
+                    c.commit();
+                }
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            }
+        }
+        return diffs;
+    }
+
+    /**
+     * One pass over the CSV against the id -> hash map of the table.
+     * @return the DB rows that did not occur in the CSV (candidates for delete)
+     */
+    private IntLongMap upsertChanged(Connection c, File dir, CsvImporter.Table table,
+                                     TableDiff d, boolean dryRun) throws Exception {
+        IntLongMap dbHashes = loadHashes(c, table);
+        String upsertSql = upsertSql(table);
+
+        try (CSVParser parser = CsvPretty.openReader(new File(dir, table.file));
+             PreparedStatement ps = dryRun ? null : c.prepareStatement(upsertSql)) {
+            int pending = 0;
+            for (CSVRecord r : parser) {
+                int id;
+                try {
+                    id = CsvCodec.parseTrimmedInt(r.get("id"));
+                } catch (RuntimeException e) {
+                    d.badRows++;
+                    continue;
+                }
+                String[] values = new String[table.headers.length];
+                for (int i = 0; i < values.length; i++) {
+                    String v = r.get(table.headers[i]);
+                    values[i] = v == null ? "" : v.trim();
+                }
+                long hash = hash(values);
+
+                long old = dbHashes.get(id, SEEN);
+                boolean known = dbHashes.containsKey(id);
+                if (known) dbHashes.put(id, SEEN);
+                if (known && old == hash) {
+                    d.unchanged++;
+                    continue;
+                }
+                if (known && old == SEEN) continue; // duplicate id in the CSV
+
+                Object[] row;
+                try {
+                    row = table.parser.parse(r::get);
+                } catch (RuntimeException e) {
+                    d.badRows++;
+                    continue;
+                }
+                if (known) d.updates++; else d.inserts++;
+                if (dryRun) continue;
+
+                CsvImporter.bind(ps, table, row);
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) ps.executeBatch();
+        }
+        return dbHashes;
+    }
+
+    private long deleteStale(Connection c, CsvImporter.Table table, IntLongMap dbHashes, boolean dryRun) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        dbHashes.forEach((id, h) -> { if (h != SEEN) ids.add(id); });
+        if (dryRun || ids.isEmpty()) return ids.size();
+
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + table.name + " WHERE id=?")) {
+            int pending = 0;
+            for (int id : ids) {
+                ps.setInt(1, id);
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) ps.executeBatch();
+        }
+        return ids.size();
+    }
+
+    /** id -> hash of the row exactly as the exporter would write it */
+    private IntLongMap loadHashes(Connection c, CsvImporter.Table table) throws SQLException {
+        IntLongMap map = new IntLongMap(1024);
+        try (PreparedStatement ps = c.prepareStatement(table.selectSql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(Integer.MIN_VALUE); // stream
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = table.exportRow.map(rs);
+                    String[] values = new String[row.length];
+                    for (int i = 0; i < row.length; i++) values[i] = String.valueOf(row[i]).trim();
+                    map.put(rs.getInt("id"), hash(values));
+                }
+            }
+        }
+        return map;
+    }
+
+    private static String upsertSql(CsvImporter.Table table) {
+        StringBuilder sb = new StringBuilder(table.insertSql).append(" ON DUPLICATE KEY UPDATE ");
+        for (int i = 1; i < table.headers.length; i++) { // headers[0] is id
+            if (i > 1) sb.append(", ");
+            sb.append(table.headers[i]).append("=VALUES(").append(table.headers[i]).append(')');
+        }
+        return sb.toString();
+    }
+
+    /** 64-bit FNV-1a over the UTF-8 bytes of all fields (field separator included) */
+    static long hash(String[] values) {
+        long h = 0xcbf29ce484222325L;
+        for (String v : values) {
+            byte[] b = (v == null ? "" : v).getBytes(StandardCharsets.UTF_8);
+            for (byte x : b) {
+                h ^= (x & 0xff);
+                h *= 0x100000001b3L;
+            }
+            h ^= 0x1f;
+            h *= 0x100000001b3L;
+        }
+        return h == SEEN ? h + 1 : h;
+    }
+}
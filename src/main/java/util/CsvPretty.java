@@ -13,10 +13,15 @@ public final class CsvPretty {
 
 
     public static CSVPrinter openWriter(File file, String... headers) throws IOException {
-        OutputStream out = new FileOutputStream(file);
+        return openWriter(file, 8192, headers);
+    }
+
+    /** Same format, with an explicit write buffer (large exports use ~1 MB) */
+    public static CSVPrinter openWriter(File file, int bufferSize, String... headers) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), bufferSize);
 
         out.write(new byte[]{(byte)0xEF,(byte)0xBB,(byte)0xBF});
-        Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize);
 
         CSVFormat fmt = CSVFormat.DEFAULT.builder()
                 .setHeader(headers)
@@ -28,7 +33,9 @@ public final class CsvPretty {
     }
 
     public static CSVParser openReader(File file) throws IOException {
-        Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        PushbackReader r = new PushbackReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        int first = r.read();
+        if (first != -1 && first != '\uFEFF') r.unread(first); // openWriter writes a BOM; it is not part of the first header
         CSVFormat fmt = CSVFormat.DEFAULT.builder()
                 .setHeader()
                 .setSkipHeaderRecord(true)
@@ -38,40 +45,32 @@ public final class CsvPretty {
     }
 
 
+    // field conversions are hand-written in CsvCodec (same results, no intermediate strings)
+
     public static String sanitizeText(String s) {
-        if (s == null) return "";
-        return s.replace("\r", "").replace("\n", "\\n").trim();
+        return CsvCodec.sanitizeText(s);
     }
 
     public static String fmtTs(LocalDateTime ldt) {
-        return ldt == null ? "" : DTF.format(ldt);
+        return CsvCodec.fmtTs(ldt);
     }
     public static String fmtTs(LocalDate ld) {
-        return ld == null ? "" : DTF.format(ld.atStartOfDay());
+        return CsvCodec.fmtTs(ld);
     }
 
     public static LocalDateTime parseLdt(String v) {
-        if (v == null || v.isBlank()) return null;
-        String s = v.trim();
-        try { return LocalDateTime.parse(s, DTF); } catch (Exception ignore) {}
-        try { return LocalDateTime.parse(s); } catch (Exception ignore) {}
-        try { return LocalDate.parse(s).atStartOfDay(); } catch (Exception ignore) {}
-        return null;
+        return CsvCodec.parseLdt(v);
     }
 
     public static Integer toInt(String s) {
         if (s == null || s.isBlank()) return null;
-        return Integer.valueOf(s.trim());
+        return CsvCodec.parseTrimmedInt(s);
     }
     public static Double toDouble(String s) {
         if (s == null || s.isBlank()) return null;
-        return Double.valueOf(s.trim());
+        return CsvCodec.parseDouble(s, 0, s.length());
     }
     public static Boolean toBool(String s) {
-        if (s == null) return null;
-        String v = s.trim().toLowerCase();
-        if (v.equals("true") || v.equals("1") || v.equals("yes")) return true;
-        if (v.equals("false") || v.equals("0") || v.equals("no")) return false;
-        return null;
+        return CsvCodec.toBool(s);
     }
 }
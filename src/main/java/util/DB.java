@@ -4,9 +4,98 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
+/**
+ * Connection pools, configured from db.properties.
+ * Settings are read from the classpath db.properties, then ~/.srsfx/db.properties
+ * (or the file named by -Dsrsfx.db.config), then -Ddb.* system properties; later sources win.
+ * The interactive pool uses db.profile (desktop or server), bulk loads always use bulk-import.
+ */
 public final class DB {
+    private static final String DEFAULT_URL =
+            "jdbc:mysql://localhost:3006/recallloop?serverTimezone=Europe/Berlin&useSSL=false&allowPublicKeyRetrieval=true";
+
+    /**
+     * Pool size plus Connector/J properties per workload.
+     * Any value can be overridden with db.&lt;profile&gt;.maximumPoolSize / .minimumIdle / .ds.&lt;driverProperty&gt;.
+     */
+    public enum Profile {
+        /**
+         * One user, few connections; cache server-side prepared statements of the review loop.
+         * Fixed size (minimumIdle = maximumPoolSize), so the warmed-up connections are not retired when idle.
+         */
+        DESKTOP("desktop", 5, 5,
+                "cachePrepStmts", "true",
+                "prepStmtCacheSize", "250",
+                "prepStmtCacheSqlLimit", "2048",
+                "useServerPrepStmts", "true",
+                "cacheResultSetMetadata", "true",
+                "cacheServerConfiguration", "true",
+                "useLocalSessionState", "true",
+                "elideSetAutoCommits", "true",
+                "maintainTimeStats", "false"),
+        /**
+         * Import/merge: client-side prepares so rewriteBatchedStatements can turn executeBatch()
+         * into multi-row INSERTs; result sets are streamed row by row (setFetchSize(Integer.MIN_VALUE))
+         */
+        BULK_IMPORT("bulk-import", 2, 0,
+                "rewriteBatchedStatements", "true",
+                "useServerPrepStmts", "false",
+                "cachePrepStmts", "true",
+                "prepStmtCacheSqlLimit", "4096",
+                "useLocalSessionState", "true",
+                "elideSetAutoCommits", "true",
+                "maintainTimeStats", "false"),
+        /** Many concurrent users: larger pool and statement cache, cursor fetch for large reads */
+        SERVER("server", 20, 5,
+                "cachePrepStmts", "true",
+                "prepStmtCacheSize", "500",
+                "prepStmtCacheSqlLimit", "2048",
+                "useServerPrepStmts", "true",
+                "cacheResultSetMetadata", "true",
+                "cacheServerConfiguration", "true",
+                "useLocalSessionState", "true",
+                "elideSetAutoCommits", "true",
+                "maintainTimeStats", "false",
+                "rewriteBatchedStatements", "true",
+                "useCursorFetch", "true",
+                "defaultFetchSize", "1000");
+
+        final String key;
+        final int poolSize;
+        final int minIdle;
+        final String[] dsProps;
+
+        Profile(String key, int poolSize, int minIdle, String... dsProps) {
+            this.key = key;
+            this.poolSize = poolSize;
+            this.minIdle = minIdle;
+            this.dsProps = dsProps;
+        }
+
+        static Profile of(String key) {
+            for (Profile p : values()) {
+                if (p.key.equalsIgnoreCase(key.trim())) return p;
+            }
+            throw new IllegalArgumentException("Unknown db.profile '" + key + "' (desktop, server, bulk-import)");
+        }
+    }
+
+    private static Properties config;
     private static HikariDataSource ds;
+    private static HikariDataSource bulkDs;
 
     private DB() {}
 
@@ -14,17 +103,96 @@ public final class DB {
         if (ds == null) {
             synchronized (DB.class) {
                 if (ds == null) {
-                    HikariConfig cfg = new HikariConfig();
-                    cfg.setJdbcUrl("jdbc:mysql://localhost:3006/recallloop?serverTimezone=Europe/Berlin&useSSL=false&allowPublicKeyRetrieval=true");
-                    cfg.setUsername("root");
-                    cfg.setPassword("root");
-                    cfg.setMaximumPoolSize(5);
-                    cfg.setMinimumIdle(1);
-                    cfg.setPoolName("SRSFX-Pool");
-                    ds = new HikariDataSource(cfg);
+                    Profile p = Profile.of(config().getProperty("db.profile", Profile.DESKTOP.key));
+                    ds = create(p, "SRSFX-Pool");
                 }
             }
         }
         return ds;
     }
-}
\ No newline at end of file
+
+    /**
+     * Separate small pool for bulk loads: batch rewriting turns executeBatch()
+     * into multi-row INSERTs, which the interactive pool does not need.
+     */
+    public static DataSource getBulkDataSource() {
+        if (bulkDs == null) {
+            synchronized (DB.class) {
+                if (bulkDs == null) bulkDs = create(Profile.BULK_IMPORT, "SRSFX-Bulk");
+            }
+        }
+        return bulkDs;
+    }
+
+    /** Upper bound for concurrent DB work (background executors are sized to it) */
+    public static int getMaximumPoolSize() {
+        getDataSource();
+        return ds.getMaximumPoolSize();
+    }
+
+    /**
+     * Open maximumPoolSize connections of the interactive pool at once (one per DbExecutor worker) and
+     * prepare the given statements on each, so no review pays for a connect or a server-side prepare.
+     * Connections above minimumIdle are retired again after Hikari's idle timeout.
+     * @return number of connections warmed up
+     */
+    public static int warmUp(List<String> hotSql) throws Exception {
+        HikariDataSource pool = (HikariDataSource) getDataSource();
+        int n = Math.max(1, pool.getMaximumPoolSize());
+        List<Connection> held = new ArrayList<>(n);
+        try {
+            for (int i = 0; i < n; i++) held.add(pool.getConnection());
+            for (Connection c : held) {
+                for (String sql : hotSql) {
+                    // prepared on the server now; closing a cached statement returns it to the
+                    // per-connection cache, where later prepareStatement calls find it
+                    c.prepareStatement(sql).close();
+                }
+            }
+            return held.size();
+        } finally {
+            for (Connection c : held) c.close();
+        }
+    }
+
+    private static HikariDataSource create(Profile p, String poolName) {
+        Properties cfg = config();
+        String prefix = "db." + p.key + ".";
+        HikariConfig hc = new HikariConfig();
+        hc.setJdbcUrl(cfg.getProperty("db.url", DEFAULT_URL));
+        hc.setUsername(cfg.getProperty("db.username", "root"));
+        hc.setPassword(cfg.getProperty("db.password", "root"));
+        hc.setMaximumPoolSize(Integer.parseInt(cfg.getProperty(prefix + "maximumPoolSize", String.valueOf(p.poolSize)).trim()));
+        hc.setMinimumIdle(Integer.parseInt(cfg.getProperty(prefix + "minimumIdle", String.valueOf(p.minIdle)).trim()));
+        hc.setPoolName(poolName);
+        for (int i = 0; i < p.dsProps.length; i += 2) hc.addDataSourceProperty(p.dsProps[i], p.dsProps[i + 1]);
+        String dsPrefix = prefix + "ds.";
+        for (String name : cfg.stringPropertyNames()) {
+            if (name.startsWith(dsPrefix)) hc.addDataSourceProperty(name.substring(dsPrefix.length()), cfg.getProperty(name));
+        }
+        return new HikariDataSource(hc);
+    }
+
+    private static synchronized Properties config() {
+        if (config == null) {
+            Properties p = new Properties();
+            try (InputStream in = DB.class.getResourceAsStream("/db.properties")) {
+                if (in != null) p.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            } catch (IOException e) { e.printStackTrace(); }
+
+            Path file = Paths.get(System.getProperty("srsfx.db.config",
+                    Paths.get(System.getProperty("user.home"), ".srsfx", "db.properties").toString()));
+            if (Files.isRegularFile(file)) {
+                try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    p.load(r);
+                } catch (IOException e) { e.printStackTrace(); }
+            }
+
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("db.")) p.setProperty(name, System.getProperty(name));
+            }
+            config = p;
+        }
+        return config;
+    }
+}
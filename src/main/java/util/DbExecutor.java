@@ -0,0 +1,54 @@
+package util;
+
+import dao.Repositories;
+import javafx.application.Platform;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Background executor for DAO calls, so queries never run on the JavaFX Application Thread.
+ * Bounded to the Hikari pool size (more threads would only wait for a connection);
+ * the embedded store needs no connections, so it gets a small fixed pool.
+ * Plain platform threads: the build targets Java 17, which has no virtual threads.
+ */
+public final class DbExecutor {
+    private static ExecutorService pool;
+
+    private DbExecutor() {}
+
+    private static synchronized ExecutorService pool() {
+        if (pool == null) {
+            int n = Repositories.isEmbedded() ? 2 : Math.max(1, DB.getMaximumPoolSize());
+            AtomicInteger seq = new AtomicInteger();
+            pool = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "db-worker-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            ((ThreadPoolExecutor) pool).allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    /**
+     * Run the task on a DB worker; the returned future completes on the FX thread
+     * (normally or exceptionally), so callbacks may touch the UI directly.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(task, pool()).whenComplete((v, ex) -> Platform.runLater(() -> {
+            if (ex != null) result.completeExceptionally(ex instanceof CompletionException ? ex.getCause() : ex);
+            else result.complete(v);
+        }));
+        return result;
+    }
+
+    public static CompletableFuture<Void> runAsync(Runnable task) {
+        return supplyAsync(() -> {
+            task.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package util;
+
+/**
+ * Open-addressing int -> long hash map (linear probing, no boxing).
+ * Meant for id-keyed bookkeeping over millions of rows; no removal.
+ */
+public final class IntLongMap {
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public IntLongMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        alloc(cap);
+    }
+
+    private void alloc(int cap) {
+        keys = new int[cap];
+        values = new long[cap];
+        used = new boolean[cap];
+        mask = cap - 1;
+    }
+
+    private static int mix(int k) {
+        int h = k * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public void put(int key, long value) {
+        if ((size + 1) * 2 > keys.length) grow();
+        int i = mix(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /** Value for key, or dflt if absent */
+    public long get(int key, long dflt) {
+        int i = mix(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return values[i];
+            i = (i + 1) & mask;
+        }
+        return dflt;
+    }
+
+    public boolean containsKey(int key) {
+        int i = mix(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() { return size; }
+
+    /** Visit every entry (order unspecified) */
+    public void forEach(Visitor v) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) v.visit(keys[i], values[i]);
+        }
+    }
+
+    public interface Visitor {
+        void visit(int key, long value);
+    }
+
+    private void grow() {
+        int[] k = keys;
+        long[] v = values;
+        boolean[] u = used;
+        alloc(k.length * 2);
+        size = 0;
+        for (int i = 0; i < k.length; i++) {
+            if (u[i]) put(k[i], v[i]);
+        }
+    }
+}
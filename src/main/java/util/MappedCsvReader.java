@@ -0,0 +1,395 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel reader for large exports, reading the same format as CsvPretty.openReader.
+ * That format is UTF-8, an optional BOM, a header line, RFC 4180 quoting, CRLF or LF line ends,
+ * trimmed values, and skipped empty lines. The file is memory-mapped and cut into chunks of about
+ * {@link #CHUNK_BYTES}. Each chunk is parsed and converted on a fork/join pool, and the converted
+ * rows come back to the caller chunk by chunk, in file order.
+ * <p>
+ * Cut points must fall between records, never inside a quoted field. A first parallel pass counts
+ * the quote characters of every chunk. The running count then tells, for any offset, whether it
+ * lies inside quotes, so each cut moves to the next line break outside quotes.
+ * This only holds for files in which quotes appear solely around quoted fields, which is what
+ * CsvExporter writes. A quote inside an unquoted value is reported as a malformed file.
+ */
+public final class MappedCsvReader {
+    /** Nominal chunk size; chunks end at the next record boundary */
+    static final long CHUNK_BYTES = 8L << 20;
+    /** Mapping size used when searching a cut point */
+    private static final long SCAN_WINDOW = 1L << 16;
+
+    /** Converts one record; an exception rejects that record only */
+    public interface RowMapper<T> {
+        T map(Row row);
+    }
+
+    /** Receives the converted rows on the thread that called {@link #read} */
+    public interface Sink<T> {
+        /** Rows of one chunk in file order; bytesRead = end of the chunk. @return false to stop reading */
+        boolean accept(List<T> rows, long bytesRead);
+
+        /** The mapper threw for this record (numbered like CSVRecord.getRecordNumber) */
+        void failed(long recordNumber, RuntimeException e);
+    }
+
+    /** One record; reused for the next record of the chunk, so mappers must not keep it */
+    public static final class Row {
+        private final Map<String, Integer> index;
+        private String[] values = new String[16];
+        private int size;
+
+        private Row(Map<String, Integer> index) {
+            this.index = index;
+        }
+
+        /** Value of the named column; same exceptions as CSVRecord.get(String) */
+        public String get(String name) {
+            Integer i = index.get(name);
+            if (i == null) throw new IllegalArgumentException("Mapping for " + name + " not found, expected one of " + index.keySet());
+            if (i >= size) {
+                throw new IllegalArgumentException("Index for header '" + name + "' is " + i
+                        + " but CSVRecord only has " + size + " values!");
+            }
+            return values[i];
+        }
+
+        public String get(int i) {
+            if (i >= size) throw new ArrayIndexOutOfBoundsException(i);
+            return values[i];
+        }
+
+        public int size() { return size; }
+
+        private void add(String v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+
+    private final File file;
+    private final ForkJoinPool pool;
+    private final long size;
+    private final String[] headers;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final long dataStart;
+
+    public MappedCsvReader(File file) throws IOException {
+        this(file, ForkJoinPool.commonPool());
+    }
+
+    /** Reads the header line; the body is only read by {@link #read} */
+    public MappedCsvReader(File file, ForkJoinPool pool) throws IOException {
+        this.file = file;
+        this.pool = pool;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = ch.size();
+            long start = hasBom(ch) ? 3 : 0;
+            long end = boundary(ch, size, start, false);
+            Row header = new Row(index);
+            Cursor c = new Cursor(map(ch, start, end), start);
+            if (!c.next(header)) throw new IOException(file.getName() + ": no header line");
+            headers = Arrays.copyOf(header.values, header.size);
+            for (int i = 0; i < headers.length; i++) index.putIfAbsent(headers[i], i);
+            dataStart = end;
+        }
+    }
+
+    public String[] headers() { return headers.clone(); }
+
+    /**
+     * Parse and convert all records on the pool and hand them to sink in file order.
+     * At most two chunks per worker are in flight, so a slow sink holds back the parsing.
+     * @return records passed to sink (rejected ones not counted)
+     */
+    public <T> long read(RowMapper<T> mapper, Sink<T> sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] cuts = cuts(ch);
+            int chunks = cuts.length - 1;
+            int maxInFlight = 2 * pool.getParallelism();
+            ArrayDeque<ForkJoinTask<Chunk<T>>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            long record = 0; // data records so far (CSVRecord numbering skips the header)
+            long delivered = 0;
+            try {
+                while (next < chunks || !inFlight.isEmpty()) {
+                    while (next < chunks && inFlight.size() < maxInFlight) {
+                        inFlight.add(pool.submit(new ParseChunk<>(ch, cuts[next], cuts[next + 1], index, mapper)));
+                        next++;
+                    }
+                    Chunk<T> chunk = join(inFlight.poll());
+                    for (int i = 0; i < chunk.failedAt.size(); i++) {
+                        sink.failed(record + 1 + chunk.failedAt.get(i), chunk.failures.get(i));
+                    }
+                    record += chunk.records;
+                    delivered += chunk.rows.size();
+                    if (!sink.accept(chunk.rows, chunk.end)) break;
+                }
+            } finally {
+                for (ForkJoinTask<Chunk<T>> t : inFlight) t.cancel(false);
+            }
+            return delivered;
+        }
+    }
+
+    /** Chunk borders: dataStart, one record boundary at or after every CHUNK_BYTES step, size */
+    private long[] cuts(FileChannel ch) throws IOException {
+        long body = size - dataStart;
+        int chunks = (int) Math.max(1, (body + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        long[] quotes = new long[chunks];
+        invoke(new CountQuotes(ch, dataStart, size, quotes, 0, chunks));
+
+        long[] cuts = new long[chunks + 1];
+        cuts[0] = dataStart;
+        cuts[chunks] = size;
+        long seen = 0;
+        for (int k = 1; k < chunks; k++) {
+            seen += quotes[k - 1];
+            long nominal = dataStart + k * CHUNK_BYTES;
+            cuts[k] = Math.max(cuts[k - 1], boundary(ch, size, nominal, (seen & 1) != 0));
+        }
+        return cuts;
+    }
+
+    // ===== fork/join tasks =====
+
+    /** Quote characters per chunk; the parity of their running sum says whether an offset is inside quotes */
+    private static final class CountQuotes extends RecursiveAction {
+        private final FileChannel ch;
+        private final long start, size;
+        private final long[] quotes;
+        private final int from, to;
+
+        CountQuotes(FileChannel ch, long start, long size, long[] quotes, int from, int to) {
+            this.ch = ch;
+            this.start = start;
+            this.size = size;
+            this.quotes = quotes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CountQuotes(ch, start, size, quotes, from, mid),
+                          new CountQuotes(ch, start, size, quotes, mid, to));
+                return;
+            }
+            long off = start + from * CHUNK_BYTES;
+            try {
+                quotes[from] = countQuotes(map(ch, off, Math.min(size, off + CHUNK_BYTES)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Converted rows of one chunk, plus the records the mapper rejected (chunk-relative index) */
+    private static final class Chunk<T> {
+        final List<T> rows = new ArrayList<>();
+        final List<Integer> failedAt = new ArrayList<>();
+        final List<RuntimeException> failures = new ArrayList<>();
+        long end;
+        int records;
+    }
+
+    private static final class ParseChunk<T> extends RecursiveTask<Chunk<T>> {
+        private final FileChannel ch;
+        private final long from, to;
+        private final Map<String, Integer> index;
+        private final RowMapper<T> mapper;
+
+        ParseChunk(FileChannel ch, long from, long to, Map<String, Integer> index, RowMapper<T> mapper) {
+            this.ch = ch;
+            this.from = from;
+            this.to = to;
+            this.index = index;
+            this.mapper = mapper;
+        }
+
+        @Override
+        protected Chunk<T> compute() {
+            Chunk<T> chunk = new Chunk<>();
+            chunk.end = to;
+            if (from >= to) return chunk;
+            try {
+                Cursor c = new Cursor(map(ch, from, to), from);
+                Row row = new Row(index);
+                while (c.next(row)) {
+                    try {
+                        chunk.rows.add(mapper.map(row));
+                    } catch (RuntimeException e) {
+                        chunk.failedAt.add(chunk.records);
+                        chunk.failures.add(e);
+                    }
+                    chunk.records++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return chunk;
+        }
+    }
+
+    private void invoke(ForkJoinTask<?> task) throws IOException {
+        join(pool.submit(task));
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ===== bytes =====
+
+    /** Record parser over one mapped range: fields split at ',', records at LF (a CR before it is dropped) */
+    private static final class Cursor {
+        private final MappedByteBuffer buf;
+        private final long base;
+        private final int end;
+        private int pos;
+        private byte[] scratch = new byte[256];
+
+        Cursor(MappedByteBuffer buf, long base) {
+            this.buf = buf;
+            this.base = base;
+            this.end = buf.limit();
+        }
+
+        /** Next non-empty record into row; false at the end of the range */
+        boolean next(Row row) throws IOException {
+            while (pos < end) {
+                byte b = buf.get(pos);
+                if (b == '\n') pos++;
+                else if (b == '\r' && pos + 1 < end && buf.get(pos + 1) == '\n') pos += 2;
+                else break;
+            }
+            if (pos >= end) return false;
+            row.size = 0;
+            while (field(row)) {
+                // more fields in this record
+            }
+            return true;
+        }
+
+        /** Reads one field; @return true if a ',' followed (the record goes on) */
+        private boolean field(Row row) throws IOException {
+            if (pos >= end) { // "a," at the very end
+                row.add("");
+                return false;
+            }
+            int n = 0;
+            if (buf.get(pos) == '"') {
+                long open = base + pos;
+                pos++;
+                while (true) {
+                    if (pos >= end) throw new IOException("Unterminated quoted field starting at byte " + open);
+                    byte b = buf.get(pos++);
+                    if (b == '"') {
+                        if (pos < end && buf.get(pos) == '"') pos++;
+                        else break;
+                    }
+                    if (n == scratch.length) scratch = Arrays.copyOf(scratch, n * 2);
+                    scratch[n++] = b;
+                }
+                while (pos < end && isBlank(buf.get(pos))) pos++;
+                row.add(value(n));
+                if (pos >= end) return false;
+                byte b = buf.get(pos++);
+                if (b == ',') return true;
+                if (b == '\n') return false;
+                throw new IOException("Invalid character after quoted field at byte " + (base + pos - 1));
+            }
+            int start = pos;
+            byte b = 0;
+            while (pos < end) {
+                b = buf.get(pos);
+                if (b == ',' || b == '\n') break;
+                if (b == '"') throw new IOException("Quote inside an unquoted field at byte " + (base + pos));
+                pos++;
+            }
+            n = pos - start;
+            if (n > scratch.length) scratch = new byte[Math.max(n, scratch.length * 2)];
+            buf.get(start, scratch, 0, n);
+            row.add(value(n));
+            if (pos >= end) return false;
+            pos++;
+            return b == ',';
+        }
+
+        /** scratch[0, n) trimmed like String.trim(), decoded as UTF-8 */
+        private String value(int n) {
+            int lo = 0, hi = n;
+            while (lo < hi && (scratch[lo] & 0xFF) <= ' ') lo++;
+            while (hi > lo && (scratch[hi - 1] & 0xFF) <= ' ') hi--;
+            return lo == hi ? "" : new String(scratch, lo, hi - lo, StandardCharsets.UTF_8);
+        }
+
+        private static boolean isBlank(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+        }
+    }
+
+    /** Quote bytes in buf, eight at a time: a byte equal to '"' becomes 0 after the xor, and zero bytes are counted exactly */
+    static long countQuotes(MappedByteBuffer buf) {
+        final long quotes = 0x2222222222222222L, low7 = 0x7F7F7F7F7F7F7F7FL;
+        int n = buf.limit(), i = 0;
+        long count = 0;
+        for (; i + 8 <= n; i += 8) {
+            long v = buf.getLong(i) ^ quotes;
+            long t = ~(((v & low7) + low7) | v | low7);
+            count += Long.bitCount(t);
+        }
+        for (; i < n; i++) if (buf.get(i) == '"') count++;
+        return count;
+    }
+
+    /** First record start at or after pos; inQuote = whether pos lies inside a quoted field */
+    private static long boundary(FileChannel ch, long size, long pos, boolean inQuote) throws IOException {
+        if (pos >= size) return size;
+        if (!inQuote && pos > 0 && map(ch, pos - 1, pos).get(0) == '\n') return pos;
+        for (long off = pos; off < size; off += SCAN_WINDOW) {
+            MappedByteBuffer w = map(ch, off, Math.min(size, off + SCAN_WINDOW));
+            for (int i = 0, n = w.limit(); i < n; i++) {
+                byte b = w.get(i);
+                if (b == '"') inQuote = !inQuote;
+                else if (b == '\n' && !inQuote) return off + i + 1;
+            }
+        }
+        return size;
+    }
+
+    private static boolean hasBom(FileChannel ch) throws IOException {
+        if (ch.size() < 3) return false;
+        MappedByteBuffer b = map(ch, 0, 3);
+        return b.get(0) == (byte) 0xEF && b.get(1) == (byte) 0xBB && b.get(2) == (byte) 0xBF;
+    }
+
+    private static MappedByteBuffer map(FileChannel ch, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE) throw new IOException("Record range over 2 GB at byte " + from);
+        return ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+}
@@ -0,0 +1,155 @@
+package util;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned schema migrations from the classpath (/db/migration/V&lt;n&gt;__&lt;name&gt;.sql).
+ * Applied versions are recorded in schema_version; at startup every newer script runs in order.
+ * MySQL DDL is not transactional, so a script that failed halfway must be able to run again: scripts check
+ * information_schema before each ALTER (see V3), and "already exists" / "already dropped" errors count as applied.
+ */
+public final class SchemaMigrator {
+    /** In version order; add new scripts at the end */
+    private static final String[] SCRIPTS = {
+            "V1__baseline.sql",
+            "V2__card_stats.sql",
+            "V3__covering_indexes.sql",
+            "V4__review_journal_applied.sql",
+    };
+
+    // ER_TABLE_EXISTS_ERROR, ER_DUP_KEYNAME, ER_DUP_FIELDNAME, ER_CANT_DROP_FIELD_OR_KEY
+    private static final int[] IDEMPOTENT_ERRORS = {1050, 1061, 1060, 1091};
+
+    private SchemaMigrator() {}
+
+    /**
+     * Bring the database up to the newest version. A named lock keeps two app instances
+     * from migrating at the same time.
+     * @return number of scripts applied
+     */
+    public static int migrate(DataSource ds) throws Exception {
+        try (Connection c = ds.getConnection()) {
+            lock(c);
+            try {
+                createVersionTable(c);
+                Map<Integer, Long> applied = appliedVersions(c);
+                int count = 0;
+                for (String script : SCRIPTS) {
+                    int version = versionOf(script);
+                    String sql = load(script);
+                    long checksum = checksum(sql);
+                    Long known = applied.get(version);
+                    if (known != null) {
+                        if (known != checksum) System.err.println("Migration " + script + " changed after it was applied");
+                        continue;
+                    }
+                    long start = System.currentTimeMillis();
+                    for (String stmt : split(sql)) execute(c, stmt);
+                    record(c, version, script, checksum, System.currentTimeMillis() - start);
+                    count++;
+                }
+                return count;
+            } finally {
+                unlock(c);
+            }
+        }
+    }
+
+    private static void createVersionTable(Connection c) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version int NOT NULL PRIMARY KEY, " +
+                    "script varchar(200) NOT NULL, " +
+                    "checksum bigint NOT NULL, " +
+                    "installed_on datetime NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                    "execution_ms bigint NOT NULL) ENGINE=InnoDB");
+        }
+    }
+
+    private static Map<Integer, Long> appliedVersions(Connection c) throws SQLException {
+        Map<Integer, Long> map = new HashMap<>();
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) map.put(rs.getInt(1), rs.getLong(2));
+        }
+        return map;
+    }
+
+    private static void record(Connection c, int version, String script, long checksum, long ms) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, script, checksum, execution_ms) VALUES (?,?,?,?)";
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, version);
+            ps.setString(2, script);
+            ps.setLong(3, checksum);
+            ps.setLong(4, ms);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void execute(Connection c, String stmt) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute(stmt);
+        } catch (SQLException e) {
+            for (int code : IDEMPOTENT_ERRORS) {
+                if (e.getErrorCode() == code) return;
+            }
+            throw e;
+        }
+    }
+
+    private static void lock(Connection c) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT GET_LOCK('srsfx_migrate', 60)")) {
+            if (!rs.next() || rs.getInt(1) != 1) throw new SQLException("Timed out waiting for the migration lock");
+        }
+    }
+
+    private static void unlock(Connection c) {
+        try (Statement st = c.createStatement()) {
+            st.execute("DO RELEASE_LOCK('srsfx_migrate')");
+        } catch (SQLException e) { e.printStackTrace(); }
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static String load(String script) throws IOException {
+        try (InputStream in = SchemaMigrator.class.getResourceAsStream("/db/migration/" + script)) {
+            if (in == null) throw new IOException("Missing migration " + script);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /** Statements end with ';' at the end of a line; "--" comment lines are skipped */
+    static List<String> split(String sql) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        for (String line : sql.split("\r?\n")) {
+            String t = line.trim();
+            if (t.isEmpty() || t.startsWith("--")) continue;
+            cur.append(line).append('\n');
+            if (t.endsWith(";")) {
+                String stmt = cur.toString().trim();
+                out.add(stmt.substring(0, stmt.length() - 1));
+                cur.setLength(0);
+            }
+        }
+        if (!cur.toString().isBlank()) out.add(cur.toString().trim());
+        return out;
+    }
+}
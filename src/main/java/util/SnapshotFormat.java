@@ -0,0 +1,164 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Binary backup of card / review_plan / review_statistic in one ".srsnap" file: the compact,
+ * CPU-cheap alternative to the three CSV files. Written by SnapshotWriter, read by SnapshotReader.
+ * <pre>
+ * file   = "SRSN" version:int table* 0:byte
+ * table  = id:byte block* 0:int
+ * block  = rows:int bytes:int crc32c:int payload      (rows &gt; 0, at most BLOCK_ROWS)
+ * payload = one column after the other, in the table's column order
+ * </pre>
+ * Ints are big-endian. A block does not depend on any other block. Columns are encoded as follows:
+ * <ul>
+ *   <li>INT, DATE (epoch day), DATETIME (epoch second of the local time): one varint per row,
+ *       0 for null, else zigzag(value - previous value in the block) + 1 for delta columns (ids, dates),
+ *       or zigzag(value) + 1 for the others</li>
+ *   <li>BOOL: 2 bits per row (0 null, 1 false, 2 true), four rows per byte</li>
+ *   <li>DOUBLE: varint 0 for null, 2 + 2 * zigzag(value * 100) when that is exact (ease factors),
+ *       else 1 followed by the 8 raw bytes</li>
+ *   <li>TEXT: per row varint 0 for null or UTF-8 length + 1, then the bytes; the whole column is stored
+ *       as method:byte (0 stored, 1 deflate) rawLength:varint length:varint data</li>
+ * </ul>
+ */
+final class SnapshotFormat {
+    static final byte[] MAGIC = {'S', 'R', 'S', 'N'};
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 65_536;
+    /** Upper bound for one block's payload; anything larger is a corrupt file */
+    static final int MAX_BLOCK_BYTES = 256 << 20;
+
+    static final int INT = 0, DATE = 1, DATETIME = 2, BOOL = 3, DOUBLE = 4, TEXT = 5;
+    static final int STORED = 0, DEFLATED = 1;
+
+    /** Column layout of one table; same column order as the CsvExporter queries and CsvImporter inserts */
+    static final class TableDef {
+        final int id;
+        final String name;
+        final int[] types;
+        final boolean[] delta;
+
+        TableDef(int id, String name, int[] types, boolean[] delta) {
+            this.id = id;
+            this.name = name;
+            this.types = types;
+            this.delta = delta;
+        }
+
+        int columns() { return types.length; }
+    }
+
+    static final TableDef CARD = new TableDef(1, "card",
+            new int[] {INT, TEXT, TEXT, DATE},
+            new boolean[] {true, false, false, true});
+    static final TableDef PLAN = new TableDef(2, "review_plan",
+            new int[] {INT, INT, DATE, DATE, INT, INT, INT, DOUBLE},
+            new boolean[] {true, true, true, true, false, false, false, false});
+    static final TableDef STAT = new TableDef(3, "review_statistic",
+            new int[] {INT, INT, DATETIME, INT, BOOL, INT, TEXT},
+            new boolean[] {true, true, true, false, false, false, false});
+
+    /** In file order */
+    static final TableDef[] TABLES = {CARD, PLAN, STAT};
+
+    private SnapshotFormat() {}
+
+    static TableDef table(int id) {
+        for (TableDef t : TABLES) if (t.id == id) return t;
+        return null;
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Growable byte array with the varint/fixed-width writes of the format */
+    static final class Out {
+        byte[] buf;
+        int size;
+
+        Out(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void clear() { size = 0; }
+
+        void ensure(int extra) {
+            if (size + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(size + extra, buf.length * 2));
+        }
+
+        void write(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void write(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, buf, size, len);
+            size += len;
+        }
+
+        /** Unsigned LEB128 */
+        void varint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        void fixed64(long v) {
+            ensure(8);
+            for (int s = 56; s >= 0; s -= 8) buf[size++] = (byte) (v >>> s);
+        }
+    }
+
+    /** Reading side of {@link Out} over one payload; running past the end is reported as corruption */
+    static final class In {
+        final byte[] buf;
+        int pos;
+        final int end;
+
+        In(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        int read() {
+            if (pos >= end) throw new IllegalStateException("Snapshot block ends early");
+            return buf[pos++] & 0xFF;
+        }
+
+        long varint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                v |= (long) (b & 0x7F) << shift;
+                if (b < 0x80) return v;
+            }
+            throw new IllegalStateException("Malformed varint in snapshot block");
+        }
+
+        long fixed64() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | read();
+            return v;
+        }
+
+        /** Advance past len bytes; @return their start */
+        int skip(int len) {
+            if (len < 0 || len > end - pos) throw new IllegalStateException("Snapshot block ends early");
+            int at = pos;
+            pos += len;
+            return at;
+        }
+    }
+}
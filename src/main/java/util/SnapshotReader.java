@@ -0,0 +1,217 @@
+package util;
+
+import util.SnapshotFormat.In;
+import util.SnapshotFormat.TableDef;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static util.SnapshotFormat.*;
+
+/**
+ * Streaming reader of the binary snapshot format (see {@link SnapshotFormat}), one block at a time.
+ * Rows come back as the same bind values the CSV import's row parsers produce (Integer, Timestamp,
+ * Boolean, Double, String), so they go through CsvImporter's writer unchanged.
+ * Every block's checksum is verified before it is decoded.
+ */
+public final class SnapshotReader implements Closeable {
+    private static final int READ_BUFFER = 1 << 20;
+
+    private final DataInputStream in;
+    private final CRC32C crc = new CRC32C();
+    private final Inflater inflater = new Inflater();
+    private byte[] block = new byte[1 << 16];
+    private byte[] raw = new byte[1 << 16];
+    private TableDef table;
+    private long position;
+    private int blockNo;
+
+    public SnapshotReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            this.in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not an srsfx snapshot");
+            int version = this.in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Snapshot version " + version + " is not supported (this version reads up to " + VERSION + ")");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Not an srsfx snapshot (file too short)");
+        }
+        position = MAGIC.length + 4;
+    }
+
+    public static SnapshotReader open(File file) throws IOException {
+        return new SnapshotReader(new BufferedInputStream(new FileInputStream(file), READ_BUFFER));
+    }
+
+    /** Bytes consumed so far (for progress) */
+    public long position() { return position; }
+
+    /** Move to the next table; @return its name ("card", "review_plan", "review_statistic") or null at the end */
+    public String nextTable() throws IOException {
+        if (table != null) throw new IllegalStateException("Table " + table.name + " not read to the end");
+        int id = in.read();
+        if (id < 0) throw new IOException("Snapshot is truncated (no end marker)");
+        position++;
+        if (id == 0) return null;
+        table = SnapshotFormat.table(id);
+        if (table == null) throw new IOException("Unknown table id " + id + " in snapshot");
+        blockNo = 0;
+        return table.name;
+    }
+
+    /** Rows of the next block of the current table, or null after its last block */
+    public List<Object[]> nextBlock() throws IOException {
+        if (table == null) throw new IllegalStateException("No current table");
+        int rows, size, sum;
+        try {
+            rows = in.readInt();
+            position += 4;
+            if (rows == 0) {
+                table = null;
+                return null;
+            }
+            size = in.readInt();
+            sum = in.readInt();
+            if (rows < 0 || rows > size || size > MAX_BLOCK_BYTES) throw corrupt("bad block header"); // ids take >= 1 byte per row
+            if (size > block.length) block = new byte[Math.max(size, block.length * 2)];
+            in.readFully(block, 0, size);
+            position += 8 + size;
+        } catch (EOFException e) {
+            throw new IOException("Snapshot is truncated in table " + table.name + ", block " + blockNo);
+        }
+        crc.reset();
+        crc.update(block, 0, size);
+        if ((int) crc.getValue() != sum) throw corrupt("checksum mismatch");
+        try {
+            return decode(new In(block, 0, size), rows);
+        } catch (IllegalStateException | DataFormatException e) {
+            throw corrupt(e.getMessage());
+        } finally {
+            blockNo++;
+        }
+    }
+
+    private IOException corrupt(String why) {
+        return new IOException("Snapshot is corrupt in table " + table.name + ", block " + blockNo + ": " + why);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    // ===== decoding =====
+
+    private List<Object[]> decode(In p, int rows) throws DataFormatException {
+        int cols = table.columns();
+        Object[][] out = new Object[rows][cols];
+        for (int c = 0; c < cols; c++) {
+            switch (table.types[c]) {
+                case BOOL: decodeBools(p, out, c); break;
+                case DOUBLE: decodeDoubles(p, out, c); break;
+                case TEXT: decodeTexts(p, out, c); break;
+                default: decodeLongs(p, out, c, table.types[c], table.delta[c]);
+            }
+        }
+        if (p.pos != p.end) throw new IllegalStateException("trailing bytes");
+        return Arrays.asList(out);
+    }
+
+    private static void decodeLongs(In p, Object[][] out, int c, int type, boolean delta) {
+        long prev = 0;
+        long lastDay = Long.MIN_VALUE;
+        Timestamp lastDate = null;
+        for (Object[] row : out) {
+            long code = p.varint();
+            if (code == 0) continue; // NULL
+            long v = unzigzag(code - 1);
+            if (delta) {
+                v += prev;
+                prev = v;
+            }
+            if (type == INT) {
+                row[c] = (int) v;
+            } else if (type == DATE) {
+                if (v != lastDay) { // runs of equal dates share one object
+                    lastDay = v;
+                    lastDate = Timestamp.valueOf(LocalDate.ofEpochDay(v).atStartOfDay());
+                }
+                row[c] = lastDate;
+            } else {
+                row[c] = Timestamp.valueOf(LocalDateTime.ofEpochSecond(v, 0, ZoneOffset.UTC));
+            }
+        }
+    }
+
+    private static void decodeBools(In p, Object[][] out, int c) {
+        int acc = 0;
+        for (int r = 0; r < out.length; r++) {
+            if ((r & 3) == 0) acc = p.read();
+            int code = (acc >>> ((r & 3) * 2)) & 3;
+            if (code == 3) throw new IllegalStateException("bad boolean");
+            if (code != 0) out[r][c] = code == 2;
+        }
+    }
+
+    private static void decodeDoubles(In p, Object[][] out, int c) {
+        for (Object[] row : out) {
+            long code = p.varint();
+            if (code == 0) continue;
+            row[c] = code == 1 ? Double.longBitsToDouble(p.fixed64()) : unzigzag((code - 2) >>> 1) / 100.0;
+        }
+    }
+
+    private void decodeTexts(In p, Object[][] out, int c) throws DataFormatException {
+        int method = p.read();
+        long rawLen = p.varint(), len = p.varint();
+        if (rawLen > MAX_BLOCK_BYTES || len > rawLen) throw new IllegalStateException("bad text column");
+        int at = p.skip((int) len);
+        byte[] data;
+        int pos, end;
+        if (method == STORED) {
+            if (len != rawLen) throw new IllegalStateException("bad text column");
+            data = p.buf;
+            pos = at;
+            end = at + (int) len;
+        } else if (method == DEFLATED) {
+            if (raw.length < rawLen) raw = new byte[(int) Math.max(rawLen, raw.length * 2L)];
+            inflater.reset();
+            inflater.setInput(p.buf, at, (int) len);
+            int n = inflater.inflate(raw, 0, (int) rawLen);
+            if (n != rawLen || !inflater.finished()) throw new IllegalStateException("bad compressed text");
+            data = raw;
+            pos = 0;
+            end = n;
+        } else {
+            throw new IllegalStateException("unknown text method " + method);
+        }
+        In t = new In(data, pos, end);
+        for (Object[] row : out) {
+            long code = t.varint();
+            if (code == 0) continue;
+            int n = (int) (code - 1);
+            row[c] = new String(data, t.skip(n), n, StandardCharsets.UTF_8);
+        }
+        if (t.pos != t.end) throw new IllegalStateException("trailing text bytes");
+    }
+}
@@ -0,0 +1,273 @@
+package util;
+
+import util.SnapshotFormat.Out;
+import util.SnapshotFormat.TableDef;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+import static util.SnapshotFormat.*;
+
+/**
+ * Streaming writer of the binary snapshot format (see {@link SnapshotFormat}).
+ * Rows are collected column by column and written as one block every BLOCK_ROWS rows,
+ * so heap use does not depend on the table size.
+ * Usage: beginTable("card"), addRow(...) per row, endTable(), ... for the three tables in order, close().
+ */
+public final class SnapshotWriter implements Closeable {
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final DataOutputStream out;
+    private final Out payload = new Out(1 << 20);
+    private final Out text = new Out(1 << 16);
+    private final Out packed = new Out(1 << 16);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32C crc = new CRC32C();
+    private int nextTable;
+
+    // the current block, one array per column (by type)
+    private TableDef table;
+    private long[][] longs;
+    private double[][] doubles;
+    private String[][] texts;
+    private boolean[][] nulls;
+    private int rows;
+
+    public SnapshotWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.write(MAGIC);
+        this.out.writeInt(VERSION);
+    }
+
+    public static SnapshotWriter open(File file) throws IOException {
+        return new SnapshotWriter(new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER));
+    }
+
+    /** Start the next table: "card", "review_plan", "review_statistic", in this order */
+    public void beginTable(String name) throws IOException {
+        if (table != null) endTable();
+        if (nextTable >= TABLES.length || !TABLES[nextTable].name.equals(name)) {
+            throw new IllegalStateException("Snapshot tables must be written in the order card, review_plan, review_statistic");
+        }
+        table = TABLES[nextTable++];
+        int n = table.columns();
+        longs = new long[n][];
+        doubles = new double[n][];
+        texts = new String[n][];
+        nulls = new boolean[n][BLOCK_ROWS];
+        for (int c = 0; c < n; c++) {
+            switch (table.types[c]) {
+                case DOUBLE: doubles[c] = new double[BLOCK_ROWS]; break;
+                case TEXT: texts[c] = new String[BLOCK_ROWS]; break;
+                default: longs[c] = new long[BLOCK_ROWS];
+            }
+        }
+        rows = 0;
+        out.writeByte(table.id);
+    }
+
+    /** Current row of a result set whose columns are in the table's order (CsvExporter's *_SQL queries) */
+    public void addRow(ResultSet rs) throws SQLException, IOException {
+        int r = rows;
+        for (int c = 0; c < table.columns(); c++) {
+            int col = c + 1;
+            boolean isNull;
+            switch (table.types[c]) {
+                case INT:
+                    longs[c][r] = rs.getInt(col);
+                    isNull = rs.wasNull();
+                    break;
+                case DATE:
+                    java.sql.Date d = rs.getDate(col);
+                    isNull = d == null;
+                    if (!isNull) longs[c][r] = d.toLocalDate().toEpochDay();
+                    break;
+                case DATETIME:
+                    Timestamp t = rs.getTimestamp(col);
+                    isNull = t == null;
+                    if (!isNull) longs[c][r] = t.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+                    break;
+                case BOOL:
+                    longs[c][r] = rs.getBoolean(col) ? 1 : 0;
+                    isNull = rs.wasNull();
+                    break;
+                case DOUBLE:
+                    doubles[c][r] = rs.getDouble(col);
+                    isNull = rs.wasNull();
+                    break;
+                default:
+                    texts[c][r] = rs.getString(col);
+                    isNull = texts[c][r] == null;
+            }
+            nulls[c][r] = isNull;
+        }
+        endRow();
+    }
+
+    /**
+     * One row as plain values in column order: numbers, Boolean, String, and for date columns
+     * LocalDate / LocalDateTime / java.sql.Date / Timestamp; null for NULL.
+     */
+    public void addRow(Object... values) throws IOException {
+        if (values.length != table.columns()) {
+            throw new IllegalArgumentException(table.name + " has " + table.columns() + " columns, got " + values.length);
+        }
+        int r = rows;
+        for (int c = 0; c < values.length; c++) {
+            Object v = values[c];
+            nulls[c][r] = v == null;
+            if (v == null) continue;
+            switch (table.types[c]) {
+                case INT: longs[c][r] = ((Number) v).longValue(); break;
+                case DATE: longs[c][r] = toDateTime(v).toLocalDate().toEpochDay(); break;
+                case DATETIME: longs[c][r] = toDateTime(v).toEpochSecond(ZoneOffset.UTC); break;
+                case BOOL: longs[c][r] = (Boolean) v ? 1 : 0; break;
+                case DOUBLE: doubles[c][r] = ((Number) v).doubleValue(); break;
+                default: texts[c][r] = v.toString();
+            }
+        }
+        endRow();
+    }
+
+    private static LocalDateTime toDateTime(Object v) {
+        if (v instanceof LocalDateTime) return (LocalDateTime) v;
+        if (v instanceof LocalDate) return ((LocalDate) v).atStartOfDay();
+        if (v instanceof Timestamp) return ((Timestamp) v).toLocalDateTime();
+        if (v instanceof java.sql.Date) return ((java.sql.Date) v).toLocalDate().atStartOfDay();
+        throw new IllegalArgumentException("Not a date: " + v.getClass().getName());
+    }
+
+    private void endRow() throws IOException {
+        if (++rows == BLOCK_ROWS) flushBlock();
+    }
+
+    /** Write the remaining rows and the end-of-table marker */
+    public void endTable() throws IOException {
+        if (table == null) return;
+        if (rows > 0) flushBlock();
+        out.writeInt(0);
+        table = null;
+        longs = null;
+        doubles = null;
+        texts = null;
+        nulls = null;
+    }
+
+    /** Ends the open table and the file; a snapshot without all three tables is still readable */
+    @Override
+    public void close() throws IOException {
+        try {
+            endTable();
+            out.writeByte(0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        payload.clear();
+        for (int c = 0; c < table.columns(); c++) {
+            switch (table.types[c]) {
+                case BOOL: encodeBools(longs[c], nulls[c]); break;
+                case DOUBLE: encodeDoubles(doubles[c], nulls[c]); break;
+                case TEXT: encodeTexts(texts[c], nulls[c]); break;
+                default: encodeLongs(longs[c], nulls[c], table.delta[c]);
+            }
+        }
+        crc.reset();
+        crc.update(payload.buf, 0, payload.size);
+        out.writeInt(rows);
+        out.writeInt(payload.size);
+        out.writeInt((int) crc.getValue());
+        out.write(payload.buf, 0, payload.size);
+        for (String[] t : texts) if (t != null) Arrays.fill(t, 0, rows, null); // let the strings go
+        rows = 0;
+    }
+
+    private void encodeLongs(long[] v, boolean[] isNull, boolean delta) {
+        long prev = 0;
+        for (int r = 0; r < rows; r++) {
+            if (isNull[r]) {
+                payload.varint(0);
+            } else if (delta) {
+                payload.varint(zigzag(v[r] - prev) + 1);
+                prev = v[r];
+            } else {
+                payload.varint(zigzag(v[r]) + 1);
+            }
+        }
+    }
+
+    private void encodeBools(long[] v, boolean[] isNull) {
+        int acc = 0;
+        for (int r = 0; r < rows; r++) {
+            int code = isNull[r] ? 0 : (int) v[r] + 1;
+            acc |= code << ((r & 3) * 2);
+            if ((r & 3) == 3) {
+                payload.write(acc);
+                acc = 0;
+            }
+        }
+        if ((rows & 3) != 0) payload.write(acc);
+    }
+
+    private void encodeDoubles(double[] v, boolean[] isNull) {
+        for (int r = 0; r < rows; r++) {
+            if (isNull[r]) {
+                payload.varint(0);
+                continue;
+            }
+            double d = v[r];
+            long cents = Math.round(d * 100);
+            if (Math.abs(d) < 1e15 && Double.compare(cents / 100.0, d) == 0) { // exact, -0.0 and NaN excluded
+                payload.varint(2 + 2 * zigzag(cents));
+            } else {
+                payload.varint(1);
+                payload.fixed64(Double.doubleToRawLongBits(d));
+            }
+        }
+    }
+
+    private void encodeTexts(String[] v, boolean[] isNull) {
+        text.clear();
+        for (int r = 0; r < rows; r++) {
+            if (isNull[r]) {
+                text.varint(0);
+                continue;
+            }
+            byte[] b = v[r].getBytes(StandardCharsets.UTF_8);
+            text.varint(b.length + 1L);
+            text.write(b, 0, b.length);
+        }
+        packed.clear();
+        deflater.reset();
+        deflater.setInput(text.buf, 0, text.size);
+        deflater.finish();
+        while (!deflater.finished() && packed.size < text.size) {
+            packed.ensure(8192);
+            packed.size += deflater.deflate(packed.buf, packed.size, packed.buf.length - packed.size);
+        }
+        boolean deflated = deflater.finished() && packed.size < text.size;
+        Out data = deflated ? packed : text;
+        payload.write(deflated ? DEFLATED : STORED);
+        payload.varint(text.size);
+        payload.varint(data.size);
+        payload.write(data.buf, 0, data.size);
+    }
+}
@@ -0,0 +1,176 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * One trend line of a card (rating or time per review) reduced to a fixed point budget.
+ * The moving average of the values is plotted and downsampled with largest-triangle-three-buckets:
+ * the first and the last review are always kept, the reviews in between fall into buckets of equal
+ * width and each bucket is represented by the point spanning the largest triangle with the point
+ * chosen for the previous bucket and the average of the next one.
+ * <p>
+ * The moving average and the bucket sums are updated as each value arrives, so a new review costs
+ * O(bucket width) and only moves the last few points; when the buckets exceed the budget their
+ * width doubles (adjacent sums are merged) and the points are chosen again.
+ * Not thread-safe; the stats view uses it on the FX thread only.
+ */
+public final class TrendSeries {
+    private final int window;
+    private final int budget;
+
+    private double[] values = new double[64];
+    private double[] ma = new double[64];
+    private int n;
+    private double windowSum;
+
+    private int width = 1;       // reviews per bucket
+    private double[] bucketSum = new double[16];
+    private int[] chosen = new int[16];
+    private int buckets;         // buckets holding at least one review (the last review is never in one)
+    private int stable;          // buckets whose chosen point can no longer change
+    private boolean dirty;       // chosen[stable..buckets) still to be computed
+
+    /**
+     * @param window moving average window (1 = raw values), same trailing average as StatsUtil.movingAverage
+     * @param budget maximum number of plotted points, at least 3
+     */
+    public TrendSeries(int window, int budget) {
+        if (budget < 3) throw new IllegalArgumentException("budget must be at least 3, got " + budget);
+        this.window = Math.max(1, window);
+        this.budget = budget;
+    }
+
+    /** Series over a whole history, oldest value first */
+    public static TrendSeries of(double[] history, int window, int budget) {
+        TrendSeries t = new TrendSeries(window, budget);
+        t.values = new double[Math.max(64, history.length)];
+        t.ma = new double[t.values.length];
+        for (double v : history) t.push(v);
+        t.choose();
+        return t;
+    }
+
+    /**
+     * Append the next review's value.
+     * @return index of the first plotted point that changed or was added; 0 means all points moved
+     */
+    public int add(double value) {
+        int before = stable;
+        boolean compacted = push(value);
+        choose();
+        return compacted ? 0 : Math.min(before + 1, points() - 1);
+    }
+
+    /** Number of reviews seen */
+    public int size() { return n; }
+
+    /** Number of plotted points, never more than the budget */
+    public int points() {
+        return n <= 1 ? n : buckets + 2;
+    }
+
+    /** Review number (1-based) of plotted point i */
+    public int x(int i) {
+        return index(i) + 1;
+    }
+
+    /** Moving average at plotted point i */
+    public double y(int i) {
+        return ma[index(i)];
+    }
+
+    private int index(int i) {
+        if (i < 0 || i >= points()) throw new IndexOutOfBoundsException("point " + i + " of " + points());
+        if (i == 0) return 0;
+        if (i == points() - 1) return n - 1;
+        return chosen[i - 1];
+    }
+
+    // ===== streaming part: moving average and bucket sums =====
+
+    /** @return true if the bucket width doubled */
+    private boolean push(double v) {
+        if (n == values.length) {
+            values = Arrays.copyOf(values, n * 2);
+            ma = Arrays.copyOf(ma, n * 2);
+        }
+        values[n] = v;
+        windowSum += v;
+        if (n >= window) windowSum -= values[n - window];
+        ma[n] = windowSum / Math.min(n + 1, window);
+
+        boolean compacted = false;
+        if (n >= 2) {
+            // the previous last review moves into the buckets
+            int b = (n - 2) / width;
+            if (b == buckets) {
+                if (buckets + 3 > budget) { // one more bucket would exceed the budget
+                    merge();
+                    compacted = true;
+                    b = (n - 2) / width;
+                }
+                if (b == buckets) {
+                    if (buckets == bucketSum.length) {
+                        bucketSum = Arrays.copyOf(bucketSum, buckets * 2);
+                        chosen = Arrays.copyOf(chosen, buckets * 2);
+                    }
+                    bucketSum[buckets++] = 0;
+                }
+            }
+            bucketSum[b] += ma[n - 1];
+        }
+        n++;
+        dirty = true;
+        return compacted;
+    }
+
+    /** Double the bucket width by folding pairs of buckets together */
+    private void merge() {
+        int merged = 0;
+        for (int b = 0; b < buckets; b += 2) {
+            bucketSum[merged++] = bucketSum[b] + (b + 1 < buckets ? bucketSum[b + 1] : 0);
+        }
+        buckets = merged;
+        width *= 2;
+        stable = 0;
+    }
+
+    // ===== selection part: largest triangle per bucket =====
+
+    private void choose() {
+        if (!dirty) return;
+        dirty = false;
+        int last = n - 1;
+        for (int b = stable; b < buckets; b++) {
+            int a = b == 0 ? 0 : chosen[b - 1];
+            double ax = a, ay = ma[a];
+            double cx, cy;
+            if (b + 1 < buckets) {
+                int from = start(b + 1), to = end(b + 1);
+                cx = (from + to - 1) / 2.0;
+                cy = bucketSum[b + 1] / (to - from);
+            } else {
+                cx = last;
+                cy = ma[last];
+            }
+            int best = start(b);
+            double bestArea = -1;
+            for (int i = start(b), to = end(b); i < to; i++) {
+                // twice the triangle area; the factor does not change the maximum
+                double area = Math.abs((ax - cx) * (ma[i] - ay) - (ax - i) * (cy - ay));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            chosen[b] = best;
+        }
+        // a bucket is final once it and the next one are full, i.e. no new review can enter either
+        int full = (last - 1) / width;  // buckets with all `width` reviews
+        stable = Math.max(stable, Math.max(0, full - 1));
+    }
+
+    private int start(int b) { return 1 + b * width; }
+
+    private int end(int b) { return Math.min(1 + (b + 1) * width, n - 1); }
+}
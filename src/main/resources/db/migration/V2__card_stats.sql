@@ -0,0 +1,19 @@
+-- running per-card totals (see ReviewStatisticDAO.upsertCardStats)
+CREATE TABLE IF NOT EXISTS `card_stats` (
+  `card_id` int unsigned NOT NULL,
+  `review_count` int NOT NULL DEFAULT '0',
+  `sum_duration_ms` bigint NOT NULL DEFAULT '0',
+  `sum_rating` bigint NOT NULL DEFAULT '0',
+  `correct_count` int NOT NULL DEFAULT '0',
+  `first_reviewed_at` datetime DEFAULT NULL,
+  `last_reviewed_at` datetime DEFAULT NULL,
+  PRIMARY KEY (`card_id`),
+  CONSTRAINT `fk_cstats_card` FOREIGN KEY (`card_id`) REFERENCES `card` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+
+-- fill it for databases that had review logs before the table existed
+INSERT IGNORE INTO card_stats (card_id, review_count, sum_duration_ms, sum_rating, correct_count,
+                               first_reviewed_at, last_reviewed_at)
+SELECT card_id, COUNT(*), SUM(duration_ms), SUM(rating), SUM(CASE WHEN correct THEN 1 ELSE 0 END),
+       MIN(reviewed_at), MAX(reviewed_at)
+FROM review_statistic GROUP BY card_id;
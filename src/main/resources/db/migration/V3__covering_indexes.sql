@@ -0,0 +1,46 @@
+-- MySQL has no ADD/DROP INDEX IF [NOT] EXISTS: every step checks information_schema first and runs
+-- its ALTER through a prepared statement (or DO 0), so a script that stopped halfway can run again.
+
+-- getTodayPlans / loadTodaySession / countDue: range on planned_on, all plan columns in the index
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'review_plan' AND index_name = 'idx_plan_due') = 0,
+    'ALTER TABLE review_plan ADD INDEX idx_plan_due (planned_on, id, card_id, reviewed_on, rating, interval_days, repeats, ease_factor)',
+    'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'review_plan' AND index_name = 'idx_planned_on') > 0,
+    'ALTER TABLE review_plan DROP INDEX idx_planned_on',
+    'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- findByCardAsc (card_id = ? ORDER BY reviewed_at) and the card_stats rebuild (GROUP BY card_id);
+-- also serves fk_stat_card, so the single-column index goes away
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'review_statistic' AND index_name = 'idx_stat_card_time') = 0,
+    'ALTER TABLE review_statistic ADD INDEX idx_stat_card_time (card_id, reviewed_at, rating, duration_ms, correct)',
+    'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'review_statistic' AND index_name = 'idx_stat_card') > 0,
+    'ALTER TABLE review_statistic DROP INDEX idx_stat_card',
+    'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
+
+-- COUNT(*) FROM card walks this small index instead of the clustered rows with their texts
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.statistics
+               WHERE table_schema = DATABASE() AND table_name = 'card' AND index_name = 'idx_card_created') = 0,
+    'ALTER TABLE card ADD INDEX idx_card_created (created_at)',
+    'DO 0');
+PREPARE ddl FROM @ddl;
+EXECUTE ddl;
+DEALLOCATE PREPARE ddl;
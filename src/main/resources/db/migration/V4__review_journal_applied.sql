@@ -0,0 +1,7 @@
+-- highest write-behind journal entry applied per journal (see ReviewStatisticDAO.recordJournaled):
+-- updated in the same transaction as the rows, so a replayed journal entry is never written twice
+CREATE TABLE IF NOT EXISTS `review_journal_applied` (
+  `journal_id` char(36) NOT NULL,
+  `seq` bigint NOT NULL,
+  PRIMARY KEY (`journal_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=ascii;
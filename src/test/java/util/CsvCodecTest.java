@@ -0,0 +1,167 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** Every CsvCodec method against the plain JDK code it replaced: same value, or the same exception type */
+class CsvCodecTest {
+    private static final String[] INTS = {
+            "0", "-0", "+0", "7", "-7", "+7", "42", "007", "2147483647", "-2147483648", "2147483648",
+            "-2147483649", "99999999999", "00000000000000000012", "", "-", "+", "--1", "1-", "12a", "a12",
+            " 5", "5 ", "1.0", "1e3", "٣", "１２", "1_000"};
+
+    private static final String[] DOUBLES = {
+            "0", "-0", "0.0", "-0.0", "+0.5", "1", "1.5", "-1.5", "2.5", "0.1", "0.2", "0.3", "3.14159",
+            "123456789012345", "1234567890123456", "12345678901234567890", "0.000000000000001",
+            "0.0000000000000000000001", "0.00000000000000000000001", "999999999999999.9", "1.25",
+            ".5", "5.", ".", "-.", "", " ", " 2.25 ", "\t-3\n", "1e5", "1E-3", "-1.5e+2", "NaN", "-Infinity",
+            "Infinity", "0x1p3", "1.0d", "2f", "1,5", "1..5", "1.5.", "+", "-", "++1", "٣", "1 5"};
+
+    @Test
+    void parseIntMatchesIntegerParseInt() {
+        for (String s : INTS) {
+            same(s, () -> Integer.parseInt(s), () -> CsvCodec.parseInt(s));
+            String framed = "x," + s + ",y";
+            same(s, () -> Integer.parseInt(s), () -> CsvCodec.parseInt(framed, 2, 2 + s.length()));
+        }
+        SplittableRandom rnd = new SplittableRandom(1);
+        for (int k = 0; k < 100_000; k++) {
+            String s = Integer.toString(rnd.nextInt());
+            same(s, () -> Integer.parseInt(s), () -> CsvCodec.parseInt(s));
+        }
+    }
+
+    @Test
+    void trimmedIntsMatchTheJdk() {
+        for (String s : INTS) {
+            for (String t : new String[] {s, " " + s + " ", "\t" + s + "\r\n"}) {
+                same(t, () -> Integer.parseInt(t.trim()), () -> CsvCodec.parseTrimmedInt(t));
+                same(t, () -> t.isBlank() ? 0 : Integer.parseInt(t.trim()), () -> CsvCodec.intOrZero(t));
+            }
+        }
+        assertEquals(0, CsvCodec.intOrZero(null));
+    }
+
+    @Test
+    void parseDoubleMatchesDoubleParseDouble() {
+        for (String s : DOUBLES) {
+            same(s, () -> Double.parseDouble(s), () -> CsvCodec.parseDouble(s, 0, s.length()));
+            String framed = "x," + s + ",y";
+            same(s, () -> Double.parseDouble(s), () -> CsvCodec.parseDouble(framed, 2, 2 + s.length()));
+            same(s, () -> s.isBlank() ? 0.0 : Double.parseDouble(s.trim()), () -> CsvCodec.doubleOrZero(s));
+        }
+        assertEquals(0.0, CsvCodec.doubleOrZero(null));
+        SplittableRandom rnd = new SplittableRandom(2);
+        for (int k = 0; k < 200_000; k++) {
+            long m = rnd.nextLong(1_000_000_000_000_000L);
+            String digits = Long.toString(m);
+            int point = rnd.nextInt(digits.length() + 1);
+            String s = (rnd.nextBoolean() ? "-" : "") + digits.substring(0, point) + "." + digits.substring(point);
+            same(s, () -> Double.parseDouble(s), () -> CsvCodec.parseDouble(s, 0, s.length()));
+        }
+    }
+
+    @Test
+    void toBoolMatchesTheOldLookup() {
+        String[] cases = {"true", "TRUE", "True", " yes ", "YES", "1", "0", "no", "No", "false", "FALSE\r",
+                "\tfalse", "", " ", "y", "n", "2", "01", "truee", "tru", "yess", "nope", "ja", "İ", "t rue"};
+        for (String s : cases) {
+            String v = s.trim().toLowerCase(Locale.ROOT);
+            Boolean expected = v.equals("true") || v.equals("1") || v.equals("yes") ? Boolean.TRUE
+                    : v.equals("false") || v.equals("0") || v.equals("no") ? Boolean.FALSE : null;
+            assertEquals(expected, CsvCodec.toBool(s), () -> "toBool(\"" + s + "\")");
+        }
+        assertEquals(null, CsvCodec.toBool(null));
+    }
+
+    @Test
+    void parseLdtMatchesTheThreeJdkParsers() {
+        String[] cases = {
+                "2025-03-14 09:26:53", "2025-03-14T09:26:53", "2025-03-14T09:26", "2025-03-14",
+                " 2025-03-14 09:26:53 ", "2025-03-14T09:26:53.123", "2025-03-14T09:26:53Z", "2025-03-14 09:26",
+                "2025-03-14 9:26:53", "2025-03-14 24:00:00", "2025-03-14 23:60:00", "2025-03-14 23:59:60",
+                "2025-03-14T24:00", "2024-02-29", "2023-02-29", "2100-02-29", "2000-02-29", "2025-04-31",
+                "2025-13-01", "2025-00-10", "2025-01-00", "0000-01-01 00:00:00", "0000-01-01T00:00",
+                "0000-01-01", "+12025-01-01", "-0001-01-01", "2025/03/14", "2025-3-14", "20250314", "",
+                "   ", "x", "2025-03-14 09:26:53 extra", "2025-03-14X09:26:53", "٢025-03-14"};
+        for (String s : cases) assertEquals(jdkParseLdt(s), CsvCodec.parseLdt(s), () -> "parseLdt(\"" + s + "\")");
+        assertEquals(null, CsvCodec.parseLdt(null));
+
+        SplittableRandom rnd = new SplittableRandom(3);
+        for (LocalDate d = LocalDate.of(2023, 1, 1); d.isBefore(LocalDate.of(2025, 1, 1)); d = d.plusDays(1)) {
+            for (String s : new String[] {d.toString(), d + "T" + time(rnd, false), d + " " + time(rnd, true),
+                    d.getYear() + "-" + two(d.getMonthValue()) + "-" + two(d.getDayOfMonth() + 2)}) {
+                assertEquals(jdkParseLdt(s), CsvCodec.parseLdt(s), () -> "parseLdt(\"" + s + "\")");
+            }
+        }
+    }
+
+    @Test
+    void fmtTsMatchesTheFormatter() {
+        SplittableRandom rnd = new SplittableRandom(4);
+        int[] years = {1, 9, 99, 999, 1000, 1970, 2025, 9999, 10_000, 0, -1, -2025};
+        for (int y : years) {
+            for (int k = 0; k < 200; k++) {
+                LocalDateTime t = LocalDateTime.of(y, 1 + rnd.nextInt(12), 1 + rnd.nextInt(28),
+                        rnd.nextInt(24), rnd.nextInt(60), rnd.nextInt(60), rnd.nextInt(1_000_000_000));
+                assertEquals(CsvPretty.DTF.format(t), CsvCodec.fmtTs(t));
+                assertEquals(CsvPretty.DTF.format(t.toLocalDate().atStartOfDay()), CsvCodec.fmtTs(t.toLocalDate()));
+            }
+        }
+        assertEquals("", CsvCodec.fmtTs((LocalDateTime) null));
+        assertEquals("", CsvCodec.fmtTs((LocalDate) null));
+    }
+
+    @Test
+    void textHelpersMatchChainedReplace() {
+        String[] cases = {"", " ", "plain", "  padded  ", "a\nb", "a\r\nb", "\r\n", "\nlead", "trail\n",
+                " \n x \n ", "a\\nb", "\\n", "\\", "a\\", "\\\\n", "tab\tend\t", "\r", "äß\n€",
+                "line1\r\nline2\r\n\r\nline4"};
+        for (String s : cases) {
+            assertEquals(s.replace("\r", "").replace("\n", "\\n").trim(), CsvCodec.sanitizeText(s));
+            assertEquals(s.replace("\\n", "\n"), CsvCodec.unsanitize(s));
+        }
+        assertEquals("", CsvCodec.sanitizeText(null));
+        assertEquals(null, CsvCodec.unsanitize(null));
+    }
+
+    /** CsvPretty.parseLdt before CsvCodec */
+    private static LocalDateTime jdkParseLdt(String v) {
+        if (v == null || v.isBlank()) return null;
+        String s = v.trim();
+        try { return LocalDateTime.parse(s, CsvPretty.DTF); } catch (Exception ignore) {}
+        try { return LocalDateTime.parse(s); } catch (Exception ignore) {}
+        try { return LocalDate.parse(s).atStartOfDay(); } catch (Exception ignore) {}
+        return null;
+    }
+
+    private static String time(SplittableRandom rnd, boolean seconds) {
+        String t = two(rnd.nextInt(25)) + ":" + two(rnd.nextInt(61));
+        return seconds || rnd.nextBoolean() ? t + ":" + two(rnd.nextInt(61)) : t;
+    }
+
+    private static String two(int v) {
+        return v < 10 ? "0" + v : Integer.toString(v);
+    }
+
+    /** Both calls return equal values (Double.equals tells -0.0 from 0.0) or throw the same exception type */
+    private static void same(String input, Callable<?> jdk, Callable<?> codec) {
+        assertEquals(outcome(jdk), outcome(codec), () -> "input \"" + input + "\"");
+    }
+
+    private static Object outcome(Callable<?> call) {
+        try {
+            return Objects.requireNonNull(call.call());
+        } catch (Exception e) {
+            return e.getClass();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package util;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** MappedCsvReader returns the same records, in the same order, as Commons CSV via CsvPretty.openReader */
+class MappedCsvReaderTest {
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void handWrittenEdgeCases() throws IOException {
+        String csv = "\uFEFFid,question,answer\r\n"
+                + "1,plain,value\r\n"
+                + "2,\"with, comma\",\"with \"\"quotes\"\"\"\n"
+                + "\n"
+                + "3,\"multi\r\nline\",\"multi\nline\"\n"
+                + "\r\n"
+                + "4,  padded  ,\"  quoted padded  \"\n"
+                + "5,,\n"
+                + "6,\"\",\"\"\"\"\n"
+                + "7,umlaut äöü ß,emoji 😀 €\n"
+                + "8,short\n"
+                + "9,a,b,extra\n"
+                + "10,last,no newline";
+        assertSameRecords(write("edge.csv", csv));
+    }
+
+    @Test
+    void noBomAndOnlyAHeader() throws IOException {
+        assertSameRecords(write("header.csv", "id,question,answer\n"));
+        assertSameRecords(write("plain.csv", "id,question,answer\n1,a,b\n2,c,d\n"));
+    }
+
+    /** Several chunks, with quoted line breaks everywhere a cut point could fall */
+    @Test
+    void exportSpanningManyChunks() throws IOException {
+        File file = dir.resolve("cards.csv").toFile();
+        SplittableRandom rnd = new SplittableRandom(5);
+        try (CSVPrinter p = CsvPretty.openWriter(file, CsvExporter.CARD_HEADERS)) {
+            long written = 0;
+            for (int id = 1; written < 3 * MappedCsvReader.CHUNK_BYTES; id++) {
+                String q = text(rnd), a = text(rnd);
+                p.printRecord(id, q, a, "2025-03-14 09:26:53");
+                written += q.length() + a.length() + 30;
+            }
+        }
+        assertSameRecords(file);
+    }
+
+    @Test
+    void rejectedRecordsAreNumberedLikeCommonsCsv() throws IOException {
+        File file = write("bad.csv", "id,n\n1,10\n\n2,x\n3,\"multi\nline\"\n4,40\n5,y\n");
+        List<Long> expected = new ArrayList<>();
+        try (CSVParser parser = CsvPretty.openReader(file)) {
+            for (CSVRecord r : parser) {
+                if (!r.get("n").matches("\\d+")) expected.add(r.getRecordNumber());
+            }
+        }
+        List<Long> failed = new ArrayList<>();
+        new MappedCsvReader(file, pool).read(row -> Integer.parseInt(row.get("n")), new MappedCsvReader.Sink<Integer>() {
+            @Override
+            public boolean accept(List<Integer> rows, long bytesRead) { return true; }
+
+            @Override
+            public void failed(long recordNumber, RuntimeException e) { failed.add(recordNumber); }
+        });
+        assertEquals(expected, failed);
+    }
+
+    private static String text(SplittableRandom rnd) {
+        StringBuilder sb = new StringBuilder();
+        int n = rnd.nextInt(60);
+        for (int i = 0; i < n; i++) {
+            int k = rnd.nextInt(40);
+            sb.append(k == 0 ? '\n' : k == 1 ? '"' : k == 2 ? ',' : k == 3 ? ' ' : k == 4 ? 'ä' : (char) ('a' + k));
+        }
+        return sb.toString();
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path file = dir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static void assertSameRecords(File file) throws IOException {
+        List<List<String>> expected = new ArrayList<>();
+        String[] headers;
+        try (CSVParser parser = CsvPretty.openReader(file)) {
+            headers = parser.getHeaderNames().toArray(new String[0]);
+            for (CSVRecord r : parser) expected.add(r.toList());
+        }
+        MappedCsvReader reader = new MappedCsvReader(file, pool);
+        assertArrayEquals(headers, reader.headers());
+        List<List<String>> actual = new ArrayList<>();
+        long count = reader.read(row -> {
+            String[] values = new String[row.size()];
+            for (int i = 0; i < values.length; i++) values[i] = row.get(i);
+            return Arrays.asList(values);
+        }, new MappedCsvReader.Sink<List<String>>() {
+            @Override
+            public boolean accept(List<List<String>> rows, long bytesRead) {
+                actual.addAll(rows);
+                return true;
+            }
+
+            @Override
+            public void failed(long recordNumber, RuntimeException e) {
+                throw new AssertionError("record " + recordNumber, e);
+            }
+        });
+        assertEquals(expected.size(), count);
+        assertTrue(expected.equals(actual), () -> firstDifference(expected, actual));
+    }
+
+    private static String firstDifference(List<List<String>> expected, List<List<String>> actual) {
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            if (!expected.get(i).equals(actual.get(i))) {
+                return "record " + (i + 1) + ": expected " + expected.get(i) + " but was " + actual.get(i);
+            }
+        }
+        return "expected " + expected.size() + " records but was " + actual.size();
+    }
+}
@@ -0,0 +1,131 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** SnapshotWriter output read back by SnapshotReader gives exactly the rows that went in, as bind values */
+class SnapshotRoundTripTest {
+    private static final String[] TABLES = {"card", "review_plan", "review_statistic"};
+    /** More than one block per table for the two big ones */
+    private static final int ROWS = SnapshotFormat.BLOCK_ROWS + 1234;
+
+    @Test
+    void everyValueSurvivesTheRoundTrip() throws IOException {
+        List<List<Object[]>> written = rows(new SplittableRandom(6));
+        List<List<Object[]>> read = read(write(written));
+        for (int t = 0; t < TABLES.length; t++) {
+            List<Object[]> in = written.get(t), out = read.get(t);
+            assertEquals(in.size(), out.size(), TABLES[t]);
+            for (int r = 0; r < in.size(); r++) {
+                String where = TABLES[t] + " row " + r;
+                assertArrayEquals(bindValues(in.get(r)), out.get(r), where);
+            }
+        }
+    }
+
+    @Test
+    void emptyTablesAndEmptySnapshot() throws IOException {
+        List<List<Object[]>> empty = List.of(List.of(), List.of(), List.of());
+        assertEquals(empty, read(write(empty)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new SnapshotWriter(bytes).close();
+        try (SnapshotReader in = new SnapshotReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertNull(in.nextTable());
+        }
+    }
+
+    @Test
+    void damagedOrTruncatedFilesAreRejected() throws IOException {
+        byte[] good = write(rows(new SplittableRandom(7)));
+        for (int at : new int[] {40, good.length / 2, good.length - 20}) {
+            byte[] bad = good.clone();
+            bad[at] ^= 0x10;
+            assertThrows(IOException.class, () -> read(bad), "flipped bit at byte " + at);
+        }
+        assertThrows(IOException.class, () -> read(Arrays.copyOf(good, good.length - 1)));
+        assertThrows(IOException.class, () -> read(Arrays.copyOf(good, good.length / 3)));
+    }
+
+    /** Rows in SnapshotWriter.addRow's input types, with nulls, extremes and out-of-order ids */
+    private static List<List<Object[]>> rows(SplittableRandom rnd) {
+        String longText = "Wiederholung ".repeat(200);
+        String[] texts = {null, "", "plain", "  blanks  ", "multi\nline", "äöü ß € 😀", longText, "\\n literal"};
+        double[] eases = {2.5, 1.3, 3.0, 0.1 + 0.2, -0.0, 0.0, Double.NaN, 1e300, Double.MIN_VALUE, -2.75, 123456.78};
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 8, 0);
+
+        List<Object[]> cards = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int id = i == 3 ? Integer.MAX_VALUE : i == 4 ? Integer.MIN_VALUE : i * 3 + 1;
+            cards.add(new Object[] {id, texts[i % texts.length], texts[(i / 3) % texts.length],
+                    i % 17 == 0 ? null : LocalDate.of(1970, 1, 1).plusDays(rnd.nextInt(40_000))});
+        }
+        List<Object[]> plans = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            boolean reviewed = i % 5 != 0;
+            plans.add(new Object[] {i + 1, rnd.nextInt(1_000_000), LocalDate.of(2025, 3, 14).plusDays(rnd.nextInt(400) - 200),
+                    reviewed ? java.sql.Date.valueOf(LocalDate.of(2025, 1, 1).minusDays(rnd.nextInt(3000))) : null,
+                    rnd.nextInt(36_500), rnd.nextInt(50), reviewed ? rnd.nextInt(6) : null,
+                    i % 13 == 0 ? null : eases[rnd.nextInt(eases.length)]});
+        }
+        List<Object[]> stats = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            LocalDateTime at = base.plusSeconds(rnd.nextLong(-2_000_000_000L, 2_000_000_000L));
+            stats.add(new Object[] {ROWS - i, rnd.nextInt(100_000), i % 2 == 0 ? at : Timestamp.valueOf(at),
+                    i % 11 == 0 ? null : rnd.nextInt(-5, 600_000), i % 3 == 0 ? null : rnd.nextBoolean(),
+                    i % 7 == 0 ? null : rnd.nextInt(6), texts[rnd.nextInt(texts.length)]});
+        }
+        return List.of(cards, plans, stats);
+    }
+
+    /** What the reader (and the CSV import's row parsers) produce for these inputs */
+    private static Object[] bindValues(Object[] row) {
+        Object[] out = row.clone();
+        for (int c = 0; c < out.length; c++) {
+            Object v = out[c];
+            if (v instanceof LocalDate) out[c] = Timestamp.valueOf(((LocalDate) v).atStartOfDay());
+            else if (v instanceof java.sql.Date) out[c] = Timestamp.valueOf(((java.sql.Date) v).toLocalDate().atStartOfDay());
+            else if (v instanceof LocalDateTime) out[c] = Timestamp.valueOf((LocalDateTime) v);
+        }
+        return out;
+    }
+
+    private static byte[] write(List<List<Object[]>> tables) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SnapshotWriter out = new SnapshotWriter(bytes)) {
+            for (int t = 0; t < TABLES.length; t++) {
+                out.beginTable(TABLES[t]);
+                for (Object[] row : tables.get(t)) out.addRow(row);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<List<Object[]>> read(byte[] snapshot) throws IOException {
+        List<List<Object[]>> tables = new ArrayList<>();
+        try (SnapshotReader in = new SnapshotReader(new ByteArrayInputStream(snapshot))) {
+            for (String name; (name = in.nextTable()) != null; ) {
+                assertEquals(TABLES[tables.size()], name);
+                List<Object[]> rows = new ArrayList<>();
+                for (List<Object[]> block; (block = in.nextBlock()) != null; ) rows.addAll(block);
+                tables.add(rows);
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,101 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A series fed one review at a time plots exactly what TrendSeries.of builds from the whole history */
+class TrendSeriesTest {
+    private static final int[] WINDOWS = {1, 2, 7};
+    private static final int[] BUDGETS = {3, 4, 10, 300};
+
+    @Test
+    void incrementalMatchesBulkAfterEveryReview() {
+        SplittableRandom rnd = new SplittableRandom(8);
+        for (int window : WINDOWS) {
+            for (int budget : BUDGETS) {
+                double[] history = history(rnd, 1500);
+                TrendSeries live = new TrendSeries(window, budget);
+                for (int n = 1; n <= history.length; n++) {
+                    int[] xs = xs(live);
+                    double[] ys = ys(live);
+                    int changed = live.add(history[n - 1]);
+                    String where = "window " + window + ", budget " + budget + ", after " + n + " reviews";
+                    assertSamePoints(TrendSeries.of(Arrays.copyOf(history, n), window, budget), live, where);
+                    for (int i = 0; i < Math.min(changed, xs.length); i++) {
+                        assertEquals(xs[i], live.x(i), where + ": point " + i + " before " + changed + " moved");
+                        assertEquals(ys[i], live.y(i), where + ": point " + i + " before " + changed + " moved");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void largeHistoryStaysWithinTheBudgetAndOnTheMovingAverage() {
+        double[] history = history(new SplittableRandom(9), 100_000);
+        for (int window : WINDOWS) {
+            TrendSeries live = new TrendSeries(window, 300);
+            for (double v : history) live.add(v);
+            TrendSeries bulk = TrendSeries.of(history, window, 300);
+            assertSamePoints(bulk, live, "window " + window);
+
+            double[] ma = StatsUtil.movingAverage(history, window);
+            assertTrue(bulk.points() <= 300, "points within the budget");
+            assertEquals(1, bulk.x(0));
+            assertEquals(history.length, bulk.x(bulk.points() - 1));
+            for (int i = 0; i < bulk.points(); i++) {
+                if (i > 0) assertTrue(bulk.x(i) > bulk.x(i - 1), "x must increase");
+                assertEquals(ma[bulk.x(i) - 1], bulk.y(i), 1e-9, "point " + i);
+            }
+        }
+    }
+
+    @Test
+    void emptyAndTinySeries() {
+        TrendSeries t = TrendSeries.of(new double[0], 7, 300);
+        assertEquals(0, t.points());
+        assertThrows(IndexOutOfBoundsException.class, () -> t.x(0));
+        t.add(4);
+        assertEquals(1, t.points());
+        assertEquals(4, t.y(0));
+        t.add(2);
+        assertEquals(2, t.points());
+        assertEquals(3, t.y(1));
+        assertThrows(IllegalArgumentException.class, () -> new TrendSeries(7, 2));
+    }
+
+    /** Ratings 0..5 or review times in ms, like the stats view plots */
+    private static double[] history(SplittableRandom rnd, int n) {
+        double[] h = new double[n];
+        boolean times = rnd.nextBoolean();
+        for (int i = 0; i < n; i++) h[i] = times ? rnd.nextInt(500, 60_000) : rnd.nextInt(6);
+        return h;
+    }
+
+    private static void assertSamePoints(TrendSeries expected, TrendSeries actual, String where) {
+        assertEquals(expected.size(), actual.size(), where);
+        assertEquals(expected.points(), actual.points(), where);
+        for (int i = 0; i < expected.points(); i++) {
+            assertEquals(expected.x(i), actual.x(i), where + ": x of point " + i);
+            assertEquals(expected.y(i), actual.y(i), where + ": y of point " + i);
+        }
+    }
+
+    private static int[] xs(TrendSeries t) {
+        int[] x = new int[t.points()];
+        for (int i = 0; i < x.length; i++) x[i] = t.x(i);
+        return x;
+    }
+
+    private static double[] ys(TrendSeries t) {
+        double[] y = new double[t.points()];
+        for (int i = 0; i < y.length; i++) y[i] = t.y(i);
+        return y;
+    }
+}